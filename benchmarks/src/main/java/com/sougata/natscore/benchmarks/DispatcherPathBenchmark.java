@@ -0,0 +1,91 @@
+package com.sougata.natscore.benchmarks;
+
+import com.sougata.natscore.benchmarks.support.BenchmarkSupport;
+import com.sougata.natscore.benchmarks.support.InMemoryConnection;
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.PublishPipelineConfig;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.dispatcher.ConsumerDispatcher;
+import com.sougata.natscore.dispatcher.FunctionDispatcher;
+import com.sougata.natscore.dispatcher.FunctionFanoutDispatcher;
+import com.sougata.natscore.enums.HandlerType;
+import com.sougata.natscore.model.PayloadHeader;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.nats.client.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of one delivery: {@code extractAndLogIncomingMessage}, the handler call and, for
+ * functions, {@code publish} of every result, for each read-side handler type and payload size.
+ * <p>
+ * Run with {@code -prof gc} to get the allocation rate per operation.
+ * </p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatcherPathBenchmark {
+
+    @Param({"CONSUMER", "FUNCTION", "FUNCTION_FANOUT"})
+    public HandlerType handlerType;
+
+    @Param({"64", "1024", "16384", "262144", "1048576"})
+    public int payloadSize;
+
+    @Param({"8"})
+    public int fanoutWidth;
+
+    @Param({"true"})
+    public boolean metricsEnabled;
+
+    private InMemoryConnection inMemory;
+    private Message message;
+    private PayloadWrapper<byte[]> lastConsumed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inMemory = new InMemoryConnection();
+        message = BenchmarkSupport.incomingMessage(BenchmarkSupport.randomPayload(payloadSize));
+
+        NatsMetricsRecorder metricsRecorder = BenchmarkSupport.metricsRecorder(metricsEnabled);
+        List<TopicBinding> readTopics = List.of(BenchmarkSupport.readBinding());
+
+        switch (handlerType) {
+            case CONSUMER -> new ConsumerDispatcher(NatsConnectionPool.of(inMemory.connection()), metricsRecorder)
+                    .register(readTopics, input -> lastConsumed = input);
+            case FUNCTION -> new FunctionDispatcher(NatsConnectionPool.of(inMemory.connection()), BenchmarkSupport.config(handlerType), metricsRecorder, new PublishPipelineConfig())
+                    .register(readTopics, DispatcherPathBenchmark::respond);
+            case FUNCTION_FANOUT -> new FunctionFanoutDispatcher(NatsConnectionPool.of(inMemory.connection()), BenchmarkSupport.config(handlerType), metricsRecorder, new PublishPipelineConfig())
+                    .register(readTopics, request -> {
+                        List<PayloadWrapper<byte[]>> responses = new ArrayList<>(fanoutWidth);
+                        for (int i = 0; i < fanoutWidth; i++) {
+                            responses.add(respond(request));
+                        }
+                        return responses;
+                    });
+            default -> throw new IllegalArgumentException("Not a read-side handler type: " + handlerType);
+        }
+    }
+
+    @Benchmark
+    public long deliver() throws InterruptedException {
+        inMemory.deliver(message);
+        return inMemory.publishedBytes() + (lastConsumed == null ? 0 : lastConsumed.getPayload().length);
+    }
+
+    private static PayloadWrapper<byte[]> respond(PayloadWrapper<byte[]> request) {
+        return PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(request.getPayload())
+                .setPayloadType(BenchmarkSupport.RESPONSE_TYPE)
+                .setCorrelationId(request.getHeader(PayloadHeader.CORRELATION_ID))
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.sougata.natscore.benchmarks;
+
+import com.sougata.natscore.benchmarks.support.BenchmarkSupport;
+import com.sougata.natscore.benchmarks.support.DispatcherProbe;
+import com.sougata.natscore.benchmarks.support.InMemoryConnection;
+import com.sougata.natscore.model.PayloadWrapper;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The individual stages of the per-message path, so a regression in {@link DispatcherPathBenchmark}
+ * can be attributed to the incoming side, header encoding or the publish side.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatcherStagesBenchmark {
+
+    @Param({"64", "1024", "16384", "262144", "1048576"})
+    public int payloadSize;
+
+    private InMemoryConnection inMemory;
+    private DispatcherProbe probe;
+    private Message message;
+    private PayloadWrapper<byte[]> outgoing;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inMemory = new InMemoryConnection();
+        probe = new DispatcherProbe(inMemory.connection(), BenchmarkSupport.metricsRecorder(true),
+                Map.of(BenchmarkSupport.RESPONSE_TYPE, BenchmarkSupport.WRITE_TOPIC));
+
+        byte[] data = BenchmarkSupport.randomPayload(payloadSize);
+        message = BenchmarkSupport.incomingMessage(data);
+        outgoing = PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(data)
+                .setPayloadType(BenchmarkSupport.RESPONSE_TYPE)
+                .build();
+    }
+
+    @Benchmark
+    public PayloadWrapper<byte[]> extractIncoming() {
+        return probe.extract(BenchmarkSupport.REQUEST_TYPE, BenchmarkSupport.READ_TOPIC, message);
+    }
+
+    @Benchmark
+    public Headers toHeaders() {
+        return probe.encodeHeaders(outgoing);
+    }
+
+    @Benchmark
+    public long publish() {
+        probe.publishNow(outgoing);
+        return inMemory.publishedBytes();
+    }
+}
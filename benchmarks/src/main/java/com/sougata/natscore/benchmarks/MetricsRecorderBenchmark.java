@@ -0,0 +1,73 @@
+package com.sougata.natscore.benchmarks;
+
+import com.sougata.natscore.benchmarks.support.BenchmarkSupport;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message metrics overhead, single-threaded and with several threads hitting the same topic: looking the meter
+ * up by topic name on every call versus the {@link TopicMeters} handle the dispatchers resolve once per binding, with
+ * counters incremented directly or striped.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsRecorderBenchmark {
+
+    @Param({"false", "true"})
+    public boolean striped;
+
+    private NatsMetricsRecorder metricsRecorder;
+    private TopicMeters readMeters;
+    private TopicMeters writeMeters;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metricsRecorder = BenchmarkSupport.metricsRecorder(true, striped);
+        readMeters = metricsRecorder.forTopic(BenchmarkSupport.READ_TOPIC);
+        writeMeters = metricsRecorder.forTopic(BenchmarkSupport.WRITE_TOPIC);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        metricsRecorder.close();
+    }
+
+    @Benchmark
+    public void incrementReceived() {
+        metricsRecorder.incrementReceived(BenchmarkSupport.READ_TOPIC);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void incrementReceivedContended() {
+        metricsRecorder.incrementReceived(BenchmarkSupport.READ_TOPIC);
+    }
+
+    @Benchmark
+    public void incrementSent() {
+        metricsRecorder.incrementSent(BenchmarkSupport.WRITE_TOPIC);
+    }
+
+    @Benchmark
+    public void incrementReceivedResolved() {
+        readMeters.incrementReceived();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void incrementReceivedResolvedContended() {
+        readMeters.incrementReceived();
+    }
+
+    @Benchmark
+    public void incrementSentResolved() {
+        writeMeters.incrementSent();
+    }
+}
@@ -0,0 +1,62 @@
+package com.sougata.natscore.benchmarks;
+
+import com.sougata.natscore.benchmarks.support.BenchmarkSupport;
+import com.sougata.natscore.model.PayloadWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building wrappers, the way handlers and the incoming path do for every message.
+ * The payload array is shared, so the numbers are independent of payload size.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadWrapperBenchmark {
+
+    private byte[] data;
+    private String correlationId;
+    private String creationTs;
+    private PayloadWrapper<byte[]> existing;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkSupport.randomPayload(1024);
+        correlationId = UUID.randomUUID().toString();
+        creationTs = String.valueOf(System.currentTimeMillis());
+        existing = PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(data)
+                .setPayloadType(BenchmarkSupport.REQUEST_TYPE)
+                .build();
+    }
+
+    @Benchmark
+    public PayloadWrapper<byte[]> buildAllHeadersSet() {
+        return PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(data)
+                .setPayloadType(BenchmarkSupport.REQUEST_TYPE)
+                .setCorrelationId(correlationId)
+                .setCreationTimestamp(creationTs)
+                .build();
+    }
+
+    @Benchmark
+    public PayloadWrapper<byte[]> buildWithGeneratedHeaders() {
+        return PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(data)
+                .setPayloadType(BenchmarkSupport.REQUEST_TYPE)
+                .build();
+    }
+
+    @Benchmark
+    public PayloadWrapper<byte[]> toBuilderBuild() {
+        return existing.toBuilder()
+                .setPayloadType(BenchmarkSupport.RESPONSE_TYPE)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.sougata.natscore.benchmarks.support;
+
+import com.sougata.natscore.config.EventComponentConfig;
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.MetricsDistributionConfig;
+import com.sougata.natscore.config.StripedMetricsConfig;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.HandlerType;
+import com.sougata.natscore.model.PayloadHeader;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Wiring shared by the benchmarks: bindings, configs and incoming messages shaped the way the
+ * dispatchers see them in production, plus a metrics recorder backed by a {@link SimpleMeterRegistry}.
+ */
+public final class BenchmarkSupport {
+    public static final String READ_TOPIC = "bench.request.v1";
+    public static final String WRITE_TOPIC = "bench.response.v1";
+    public static final String REQUEST_TYPE = "com.sougata.bench.BenchRequest";
+    public static final String RESPONSE_TYPE = "com.sougata.bench.BenchResponse";
+
+    private BenchmarkSupport() {}
+
+    public static TopicBinding readBinding() {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName(READ_TOPIC);
+        binding.setMessageType(REQUEST_TYPE);
+        return binding;
+    }
+
+    public static TopicBinding writeBinding() {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName(WRITE_TOPIC);
+        binding.setMessageType(RESPONSE_TYPE);
+        return binding;
+    }
+
+    public static EventComponentConfig config(HandlerType handlerType) {
+        EventComponentEntry entry = new EventComponentEntry();
+        entry.setHandlerType(handlerType);
+        entry.setHandlerClass("bench");
+        entry.setReadTopics(List.of(readBinding()));
+        entry.setWriteTopics(List.of(writeBinding()));
+        return new EventComponentConfig(List.of(entry));
+    }
+
+    public static NatsMetricsRecorder metricsRecorder(boolean enabled) {
+        return metricsRecorder(enabled, false);
+    }
+
+    /**
+     * @param striped count into LongAdders flushed to the registry in the background instead of into the counters
+     */
+    public static NatsMetricsRecorder metricsRecorder(boolean enabled, boolean striped) {
+        StripedMetricsConfig stripedConfig = new StripedMetricsConfig();
+        stripedConfig.setEnabled(striped);
+        NatsMetricsRecorder recorder = new NatsMetricsRecorder(new SimpleMeterRegistry(), enabled, new MetricsDistributionConfig(), stripedConfig);
+        recorder.start();
+        return recorder;
+    }
+
+    public static byte[] randomPayload(int size) {
+        byte[] data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        return data;
+    }
+
+    public static Message incomingMessage(byte[] data) {
+        Headers headers = new Headers();
+        headers.add(PayloadHeader.PAYLOAD_TYPE.getKey(), REQUEST_TYPE);
+        headers.add(PayloadHeader.CORRELATION_ID.getKey(), UUID.randomUUID().toString());
+        headers.add(PayloadHeader.CREATION_TS.getKey(), String.valueOf(System.currentTimeMillis()));
+        return NatsMessage.builder()
+                .subject(READ_TOPIC)
+                .headers(headers)
+                .data(data)
+                .build();
+    }
+}
@@ -0,0 +1,33 @@
+package com.sougata.natscore.benchmarks.support;
+
+import com.sougata.natscore.dispatcher.AbstractDispatcher;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+
+import java.util.Map;
+
+/**
+ * Exposes the protected per-message stages of {@link AbstractDispatcher} so each one can be measured on its own.
+ */
+public final class DispatcherProbe extends AbstractDispatcher {
+
+    public DispatcherProbe(Connection connection, NatsMetricsRecorder metricsRecorder, Map<String, String> writeTopicMap) {
+        super(connection, metricsRecorder);
+        this.writeTopicMap = writeTopicMap;
+    }
+
+    public PayloadWrapper<byte[]> extract(String messageType, String topicName, Message msg) {
+        return extractAndLogIncomingMessage(messageType, topicName, msg);
+    }
+
+    public Headers encodeHeaders(PayloadWrapper<byte[]> wrapper) {
+        return toHeaders(wrapper);
+    }
+
+    public void publishNow(PayloadWrapper<byte[]> payload) {
+        publish(payload);
+    }
+}
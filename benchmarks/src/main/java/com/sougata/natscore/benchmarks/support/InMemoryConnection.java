@@ -0,0 +1,107 @@
+package com.sougata.natscore.benchmarks.support;
+
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import io.nats.client.MessageHandler;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory stand-in for {@link Connection} so the dispatchers can be driven without a NATS server.
+ * <p>
+ * {@code createDispatcher(handler)} returns a {@link Dispatcher} whose {@code subscribe(subject[, queue])}
+ * binds the handler to the subject; {@link #deliver(Message)} then invokes that handler on the calling thread.
+ * Every {@code publish} variant is swallowed and only counted, so the measured cost is the library's own work.
+ * Methods the dispatchers do not use return {@code null}/zero/false.
+ * </p>
+ */
+public final class InMemoryConnection {
+    private final Map<String, MessageHandler> handlersBySubject = new HashMap<>();
+    private final Connection connection;
+
+    private long publishedMessages;
+    private long publishedBytes;
+
+    public InMemoryConnection() {
+        this.connection = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "publish" -> {
+                        onPublish(args);
+                        yield null;
+                    }
+                    case "createDispatcher" -> newDispatcher(args == null ? null : (MessageHandler) args[0]);
+                    case "getStatus" -> Connection.Status.CONNECTED;
+                    case "createInbox" -> "_INBOX.bench";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryConnection";
+                    default -> defaultValue(method.getReturnType());
+                });
+    }
+
+    public Connection connection() {
+        return connection;
+    }
+
+    public void deliver(Message msg) throws InterruptedException {
+        MessageHandler handler = handlersBySubject.get(msg.getSubject());
+        if (handler == null) {
+            throw new IllegalStateException("No subscription for subject: " + msg.getSubject());
+        }
+        handler.onMessage(msg);
+    }
+
+    public long publishedMessages() {
+        return publishedMessages;
+    }
+
+    public long publishedBytes() {
+        return publishedBytes;
+    }
+
+    private void onPublish(Object[] args) {
+        publishedMessages++;
+        Object last = args[args.length - 1];
+        if (last instanceof byte[] data) {
+            publishedBytes += data.length;
+        } else if (last instanceof Message msg && msg.getData() != null) {
+            publishedBytes += msg.getData().length;
+        }
+    }
+
+    private Dispatcher newDispatcher(MessageHandler handler) {
+        return (Dispatcher) Proxy.newProxyInstance(
+                Dispatcher.class.getClassLoader(),
+                new Class<?>[]{Dispatcher.class},
+                (proxy, method, args) -> {
+                    if ("subscribe".equals(method.getName()) && method.getReturnType() == Dispatcher.class) {
+                        handlersBySubject.put((String) args[0], handler);
+                        return proxy;
+                    }
+                    return switch (method.getName()) {
+                        case "isActive" -> true;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        case "toString" -> "InMemoryDispatcher";
+                        default -> defaultValue(method.getReturnType());
+                    };
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        if (type == int.class) return 0;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return '\0';
+    }
+}
@@ -0,0 +1,90 @@
+package com.sougata.natscore.client;
+
+import com.sougata.natscore.config.TopicBinding;
+import io.nats.client.Connection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * The NATS connections shared by all dispatchers ({@code nats.connections}, default 1).
+ * <p>
+ * Publishes go to the connection picked by hashing the subject, so every message on a subject leaves through the same
+ * socket and keeps its order. Subscriptions are spread the same way by topic, unless the binding pins one with
+ * {@code connectionIndex}. With a single connection every lookup returns it.
+ * </p>
+ */
+@Slf4j
+public final class NatsConnectionPool implements AutoCloseable {
+    private final Connection[] connections;
+    private final List<Connection> connectionList;
+
+    private NatsConnectionPool(Connection[] connections) {
+        if (connections.length == 0) {
+            throw new IllegalArgumentException("A connection pool needs at least one connection");
+        }
+        this.connections = connections;
+        this.connectionList = List.of(connections);
+    }
+
+    public static NatsConnectionPool of(Connection... connections) {
+        return new NatsConnectionPool(connections.clone());
+    }
+
+    public static NatsConnectionPool of(List<Connection> connections) {
+        return new NatsConnectionPool(connections.toArray(new Connection[0]));
+    }
+
+    /**
+     * The first connection, used for anything not tied to a subject (e.g. request inboxes).
+     */
+    public Connection primary() {
+        return connections[0];
+    }
+
+    public List<Connection> connections() {
+        return connectionList;
+    }
+
+    public int size() {
+        return connections.length;
+    }
+
+    /**
+     * The connection that publishes to {@code subject}.
+     */
+    public Connection forSubject(String subject) {
+        if (connections.length == 1) return connections[0];
+        int h = subject.hashCode();
+        return connections[Math.floorMod(h ^ (h >>> 16), connections.length)];
+    }
+
+    /**
+     * The connection that carries the binding's subscription: its {@code connectionIndex} when set, otherwise the
+     * connection its topic hashes to.
+     */
+    public Connection forSubscription(TopicBinding binding) {
+        Integer index = binding.getConnectionIndex();
+        if (index != null) {
+            if (index < 0 || index >= connections.length) {
+                throw new IllegalStateException("Topic [" + binding.getTopicName() + "] has connectionIndex " + index
+                        + " but the pool has " + connections.length + " connection(s)");
+            }
+            return connections[index];
+        }
+        return forSubject(binding.getTopicName());
+    }
+
+    @Override
+    public void close() {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Failed to close NATS connection: {}", e.getMessage());
+            }
+        }
+    }
+}
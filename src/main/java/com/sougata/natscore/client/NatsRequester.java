@@ -0,0 +1,134 @@
+package com.sougata.natscore.client;
+
+import com.sougata.natscore.dispatcher.AbstractDispatcher;
+import com.sougata.natscore.enums.MDCLoggingEnum;
+import com.sougata.natscore.model.PayloadHeader;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side of request-reply against FUNCTION handlers.
+ * <p>
+ * All requests share one inbox subscription, created on first use. Each request is published with that inbox as its
+ * reply subject, and the reply is matched back to the caller's future by the {@code correlationId} header, which
+ * {@code FunctionDispatcher} copies from the request onto the reply. Futures complete exceptionally with a
+ * {@link java.util.concurrent.TimeoutException} when no reply arrives in time. Replies are client traffic, so they are
+ * not counted as messages received on the request subject; {@code nats.requester.reply.duration} times each round trip
+ * and {@code nats.requester.reply.error} counts replies that could not be decoded, both by request subject.
+ * </p>
+ */
+@Slf4j
+@Component
+@DependsOn("connection")
+public class NatsRequester extends AbstractDispatcher {
+
+    private record Pending(String subject, CompletableFuture<PayloadWrapper<byte[]>> future, long startNanos) {}
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    @Value("${nats.request.timeout:5s}")
+    private Duration defaultTimeout = Duration.ofSeconds(5);
+
+    private volatile String inbox;
+
+    public NatsRequester(NatsConnectionPool connectionPool, NatsMetricsRecorder metricsRecorder) {
+        super(connectionPool, metricsRecorder);
+    }
+
+    public CompletableFuture<PayloadWrapper<byte[]>> request(String subject, PayloadWrapper<byte[]> request) {
+        return request(subject, request, defaultTimeout);
+    }
+
+    public CompletableFuture<PayloadWrapper<byte[]>> request(String subject, PayloadWrapper<byte[]> request, Duration timeout) {
+        String correlationId = request.getHeader(PayloadHeader.CORRELATION_ID);
+        CompletableFuture<PayloadWrapper<byte[]>> future = new CompletableFuture<>();
+
+        if (pending.putIfAbsent(correlationId, new Pending(subject, future, System.nanoTime())) != null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("A request with correlationId " + correlationId + " is already in flight"));
+        }
+        future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                .whenComplete((reply, error) -> pending.remove(correlationId));
+
+        try {
+            MDC.put(MDCLoggingEnum.CORRELATION_ID.getLoggingKey(), correlationId);
+            Headers headers = toHeaders(request);
+            log.debug("Sending request on topic: {}", subject);
+            connectionPool.forSubject(subject).publish(subject, inbox(), headers, request.getPayload());
+            metricsRecorder.incrementSent(subject);
+        } catch (Exception e) {
+            log.error("Error while publishing request to topic {}", subject, e);
+            metricsRecorder.incrementError(subject);
+            future.completeExceptionally(e);
+        } finally {
+            MDC.remove(MDCLoggingEnum.CORRELATION_ID.getLoggingKey());
+        }
+        return future;
+    }
+
+    private String inbox() {
+        String current = inbox;
+        if (current == null) {
+            synchronized (this) {
+                current = inbox;
+                if (current == null) {
+                    current = connection.createInbox();
+                    Dispatcher dispatcher = connection.createDispatcher(this::onReply);
+                    dispatcher.subscribe(current);
+                    registerDispatcher(dispatcher);
+                    inbox = current;
+                    log.info("NatsRequester listening for replies on {}", current);
+                }
+            }
+        }
+        return current;
+    }
+
+    private void onReply(Message msg) {
+        Headers headers = msg.getHeaders();
+        String correlationId = headers == null ? null : headers.getFirst(PayloadHeader.CORRELATION_ID.getKey());
+        Pending request = correlationId == null ? null : pending.remove(correlationId);
+        if (request == null) {
+            log.debug("Dropping reply without a waiting request, correlationId={}", correlationId);
+            return;
+        }
+
+        try {
+            MDC.put(MDCLoggingEnum.CORRELATION_ID.getLoggingKey(), correlationId);
+            log.debug("Received reply for request on topic: {}", request.subject());
+            String payloadType = headers.getFirst(PayloadHeader.PAYLOAD_TYPE.getKey());
+            request.future().complete(decode(payloadType, metricsRecorder.forTopic(request.subject()), msg));
+            metricsRecorder.recordRequesterReply(request.subject(), System.nanoTime() - request.startNanos());
+        } catch (Exception e) {
+            log.error("Error while decoding reply for request on topic {}", request.subject(), e);
+            metricsRecorder.incrementRequesterReplyError(request.subject());
+            request.future().completeExceptionally(e);
+        } finally {
+            MDC.remove(MDCLoggingEnum.CORRELATION_ID.getLoggingKey());
+        }
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        pending.values().forEach(p -> p.future().completeExceptionally(new CancellationException("NatsRequester is shutting down")));
+        pending.clear();
+    }
+}
@@ -0,0 +1,10 @@
+package com.sougata.natscore.config;
+
+import lombok.Data;
+
+@Data
+public class ClaimCheckBinding {
+    private String bucket; // Optional - JetStream Object Store bucket holding offloaded payloads, created when missing, defaults to nats-claim-check; on a read topic, the bucket incoming claim checks may be fetched from
+    private Integer thresholdBytes; // Optional - payloads larger than this are offloaded, defaults to the server's max_payload less 8 KB for headers
+    private Long ttlMs; // Optional - how long offloaded payloads are kept when the bucket is created here, defaults to 24 hours
+}
@@ -1,5 +1,8 @@
 package com.sougata.natscore.config;
 
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.monitoring.MetricsErrorListener;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
 import com.sougata.natscore.util.NatsSslUtils;
 import io.nats.client.Connection;
 import io.nats.client.Nats;
@@ -14,6 +17,8 @@ import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 @Configuration
@@ -24,12 +29,45 @@ public class ConnectionConfig {
     private String url;
     private String credsFile;
     private boolean devMode = false;
+    private int connections = 1; // Optional - size of the connection pool shared by all dispatchers
 
     @Bean(destroyMethod = "close")
-    public Connection connection() throws Exception {
+    public NatsConnectionPool natsConnectionPool(NatsMetricsRecorder metricsRecorder) throws Exception {
+        if (connections < 1) {
+            throw new IllegalStateException("nats.connections must be at least 1, got " + connections);
+        }
+        List<Connection> pooled = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                pooled.add(connect(i, metricsRecorder));
+            }
+        } catch (Exception e) {
+            if (!pooled.isEmpty()) NatsConnectionPool.of(pooled).close();
+            throw e;
+        }
+        log.info("Opened {} NATS connection(s) to {}", connections, url);
+
+        NatsConnectionPool pool = NatsConnectionPool.of(pooled);
+        metricsRecorder.registerConnectionPool(pool);
+        return pool;
+    }
+
+    /**
+     * The pool's primary connection, kept as a bean for components that need a single connection. Closed with the pool.
+     */
+    @Bean(destroyMethod = "")
+    public Connection connection(NatsConnectionPool natsConnectionPool) {
+        return natsConnectionPool.primary();
+    }
+
+    private Connection connect(int index, NatsMetricsRecorder metricsRecorder) throws Exception {
         Options.Builder builder = new Options.Builder()
                 .server(url)
-                .connectionTimeout(Duration.ofSeconds(5));
+                .connectionTimeout(Duration.ofSeconds(5))
+                .errorListener(new MetricsErrorListener(metricsRecorder));
+        if (connections > 1) {
+            builder.connectionName("nats-core-" + index);
+        }
 
         if (!devMode) {
             log.info("NATS devMode=false → Secure connection (creds + TLS)");
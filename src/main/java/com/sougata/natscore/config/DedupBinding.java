@@ -0,0 +1,10 @@
+package com.sougata.natscore.config;
+
+import lombok.Data;
+
+@Data
+public class DedupBinding {
+    private String header; // Optional - header carrying the message id, defaults to correlationId; messages without it are not deduplicated
+    private Long ttlMs; // Optional - how long an id is remembered, defaults to 10 minutes
+    private Integer maxEntries; // Optional - ids remembered at once (about 32 bytes each, allocated up front); the oldest go first, defaults to 100000
+}
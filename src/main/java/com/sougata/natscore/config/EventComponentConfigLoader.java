@@ -2,14 +2,18 @@ package com.sougata.natscore.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sougata.natscore.enums.HandlerType;
+import com.sougata.natscore.enums.JetStreamAckPolicy;
+import com.sougata.natscore.enums.OverflowPolicy;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.support.CronExpression;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -30,6 +34,22 @@ import java.util.stream.Collectors;
  *         </ul>
  *     </li>
  *     <li><b>No topic may be both published to and subscribed to</b> within the same application. This avoids the app processing its own messages unintentionally.</li>
+ *     <li><b>Read topic concurrency must be at least 1</b> and a worker queue capacity, when set, must not be negative.</li>
+ *     <li><b>Batch size and byte limits must be at least 1</b> and the batch linger must not be negative. Batch options
+ *     apply to CONSUMER_BATCH handlers only, which in turn take no concurrency, executor, queue capacity or ordering.</li>
+ *     <li><b>JetStream read topics need a durable name</b> and no queue group or pending limits, and are only supported for CONSUMER,
+ *     FUNCTION and FUNCTION_FANOUT handlers; the ALL ack policy requires concurrency 1.</li>
+ *     <li><b>Overflow policies apply to core CONSUMER, FUNCTION and FUNCTION_FANOUT read topics only</b>; spill options
+ *     need the SPILL policy and segments of at least 4 KB.</li>
+ *     <li><b>Dedup applies to CONSUMER, FUNCTION and FUNCTION_FANOUT read topics only</b>, with a positive TTL and
+ *     between 1 and 2^29 entries.</li>
+ *     <li><b>Result caches apply to FUNCTION read topics only</b> and their limits must be positive.</li>
+ *     <li><b>JetStream publish settings apply to write topics only</b> and must be positive (retries may be 0).</li>
+ *     <li><b>Compression settings apply to write topics only</b>, need a codec, and the level must be 1 to 9.</li>
+ *     <li><b>Claim checks apply to write topics only</b>, with a valid bucket name and a positive threshold and TTL.</li>
+ *     <li><b>Rate limits apply to SUPPLIER and SUPPLIER_FANOUT components only</b> and must be positive.</li>
+ *     <li><b>Schedules apply to SUPPLIER and SUPPLIER_FANOUT components only</b>; FIXED_RATE and FIXED_DELAY need a
+ *     positive periodMs and CRON a valid cron expression and zone.</li>
  * </ul>
  */
 @Slf4j
@@ -57,6 +77,10 @@ public class EventComponentConfigLoader {
             config.setComponents(config.getComponents().stream().filter(c -> !c.isDisabled()).collect(Collectors.toList()));
 
             // do validation on the enabled ones
+            applyReadTopicDefaults(config);
+            validateWriteTopicBindings(config);
+            validateRateLimits(config);
+            validateSupplierSchedules(config);
             validateReadTopicBindings(config);
             validateReadWriteConflicts(config);
             log.info("event-config validation is successful.");
@@ -64,6 +88,264 @@ public class EventComponentConfigLoader {
         }
     }
 
+    /**
+     * Copies component-level {@code concurrency} and {@code executorType} onto read topics that don't set their own,
+     * and rejects values the worker stage or batching cannot honour.
+     *
+     * @param config the event component config to update in place
+     */
+    private void applyReadTopicDefaults(EventComponentConfig config) {
+        for (EventComponentEntry entry : config.getComponents()) {
+            if (entry.getReadTopics() == null) continue;
+
+            for (TopicBinding binding : entry.getReadTopics()) {
+                validateBatchSettings(entry, binding);
+                if (entry.getHandlerType() != HandlerType.CONSUMER_BATCH) {
+                    if (binding.getConcurrency() == null) binding.setConcurrency(entry.getConcurrency());
+                    if (binding.getExecutorType() == null) binding.setExecutorType(entry.getExecutorType());
+                }
+
+                if (binding.getConcurrency() != null && binding.getConcurrency() < 1) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] has concurrency < 1: " + binding.getConcurrency());
+                }
+                if (binding.getQueueCapacity() != null && binding.getQueueCapacity() < 0) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] has negative queueCapacity: " + binding.getQueueCapacity());
+                }
+                if ((binding.getBatchMaxSize() != null && binding.getBatchMaxSize() < 1)
+                        || (binding.getBatchMaxBytes() != null && binding.getBatchMaxBytes() < 1)
+                        || (binding.getBatchLingerMs() != null && binding.getBatchLingerMs() < 0)) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] has an invalid batch setting: size="
+                            + binding.getBatchMaxSize() + ", bytes=" + binding.getBatchMaxBytes() + ", lingerMs=" + binding.getBatchLingerMs());
+                }
+                if (binding.getJetStream() != null) {
+                    validateJetStreamBinding(entry.getHandlerType(), binding);
+                }
+                if (binding.getOverflow() != null) {
+                    validateOverflowBinding(entry.getHandlerType(), binding);
+                }
+                if (binding.getDedup() != null) {
+                    validateDedupBinding(entry.getHandlerType(), binding);
+                }
+                if (binding.getResultCache() != null) {
+                    validateResultCacheBinding(entry.getHandlerType(), binding);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rejects batch settings on anything but CONSUMER_BATCH bindings, and worker stage settings on CONSUMER_BATCH
+     * bindings: their messages are buffered on the NATS dispatcher thread and handed over a batch at a time.
+     */
+    private void validateBatchSettings(EventComponentEntry entry, TopicBinding binding) {
+        String topic = binding.getTopicName();
+        if (entry.getHandlerType() != HandlerType.CONSUMER_BATCH) {
+            if (binding.getBatchMaxSize() != null || binding.getBatchMaxBytes() != null || binding.getBatchLingerMs() != null) {
+                throw new IllegalStateException("Topic [" + topic + "] sets batch options, which only apply to CONSUMER_BATCH handlers, not " + entry.getHandlerType());
+            }
+            return;
+        }
+        if (entry.getConcurrency() != null || entry.getExecutorType() != null || binding.getConcurrency() != null
+                || binding.getExecutorType() != null || binding.getQueueCapacity() != null
+                || binding.getOrdering() != null || binding.getOrderingKeyHeader() != null) {
+            throw new IllegalStateException("Topic [" + topic + "] sets concurrency, executorType, queueCapacity or ordering, "
+                    + "which are not supported for CONSUMER_BATCH handlers; batches are handed over one at a time");
+        }
+    }
+
+    /**
+     * Rejects overflow settings on bindings without a per-message subscription to buffer, and sizes the stage cannot honour.
+     */
+    private void validateOverflowBinding(HandlerType handlerType, TopicBinding binding) {
+        String topic = binding.getTopicName();
+        OverflowBinding overflow = binding.getOverflow();
+        if (handlerType != HandlerType.CONSUMER && handlerType != HandlerType.FUNCTION && handlerType != HandlerType.FUNCTION_FANOUT) {
+            throw new IllegalStateException("Topic [" + topic + "] sets an overflow policy, which is not supported for handler type " + handlerType);
+        }
+        if (binding.getJetStream() != null) {
+            throw new IllegalStateException("Topic [" + topic + "] sets an overflow policy on a JetStream binding; the pull consumer only fetches what it can handle");
+        }
+        if (overflow.getPolicy() == null) {
+            throw new IllegalStateException("Topic [" + topic + "] has an overflow section without a policy");
+        }
+        if (overflow.getPolicy() != OverflowPolicy.SPILL
+                && (overflow.getSpillDirectory() != null || overflow.getSpillSegmentBytes() != null || overflow.getSpillMaxBytes() != null)) {
+            throw new IllegalStateException("Topic [" + topic + "] sets spill options without the SPILL overflow policy");
+        }
+        if ((overflow.getCapacity() != null && overflow.getCapacity() < 1)
+                || (overflow.getSpillSegmentBytes() != null && overflow.getSpillSegmentBytes() < 4096)
+                || (overflow.getSpillMaxBytes() != null && overflow.getSpillMaxBytes() < 1)) {
+            throw new IllegalStateException("Topic [" + topic + "] has an invalid overflow setting: " + overflow);
+        }
+    }
+
+    /**
+     * Rejects dedup settings on bindings that are not handled message by message, and sizes the cache cannot honour.
+     */
+    private void validateDedupBinding(HandlerType handlerType, TopicBinding binding) {
+        String topic = binding.getTopicName();
+        DedupBinding dedup = binding.getDedup();
+        if (handlerType != HandlerType.CONSUMER && handlerType != HandlerType.FUNCTION && handlerType != HandlerType.FUNCTION_FANOUT) {
+            throw new IllegalStateException("Topic [" + topic + "] sets dedup, which is not supported for handler type " + handlerType);
+        }
+        if ((dedup.getTtlMs() != null && dedup.getTtlMs() < 1)
+                || (dedup.getMaxEntries() != null && (dedup.getMaxEntries() < 1 || dedup.getMaxEntries() > (1 << 29)))) {
+            throw new IllegalStateException("Topic [" + topic + "] has an invalid dedup setting: " + dedup);
+        }
+    }
+
+    /**
+     * Rejects result caches on anything but single-response functions, and sizes the cache cannot honour.
+     */
+    private void validateResultCacheBinding(HandlerType handlerType, TopicBinding binding) {
+        String topic = binding.getTopicName();
+        ResultCacheBinding cache = binding.getResultCache();
+        if (handlerType != HandlerType.FUNCTION) {
+            throw new IllegalStateException("Topic [" + topic + "] sets a result cache, which is only supported for FUNCTION handlers, not " + handlerType);
+        }
+        if ((cache.getMaxEntries() != null && cache.getMaxEntries() < 1)
+                || (cache.getTtlMs() != null && cache.getTtlMs() < 1)
+                || (cache.getMaxBytes() != null && cache.getMaxBytes() < 1)) {
+            throw new IllegalStateException("Topic [" + topic + "] has an invalid result cache setting: " + cache);
+        }
+    }
+
+    /**
+     * Rejects JetStream settings the pull consumer cannot honour. The ALL ack policy acks a whole fetched batch at
+     * once, so its messages must be handled in order on the fetch thread.
+     */
+    private void validateJetStreamBinding(HandlerType handlerType, TopicBinding binding) {
+        String topic = binding.getTopicName();
+        JetStreamBinding js = binding.getJetStream();
+        if (handlerType != HandlerType.CONSUMER && handlerType != HandlerType.FUNCTION && handlerType != HandlerType.FUNCTION_FANOUT) {
+            throw new IllegalStateException("Topic [" + topic + "] uses JetStream, which is not supported for handler type " + handlerType);
+        }
+        if (js.getDurable() == null || js.getDurable().isBlank()) {
+            throw new IllegalStateException("Topic [" + topic + "] uses JetStream without a durable name");
+        }
+        if (binding.getQueueGroup() != null) {
+            throw new IllegalStateException("Topic [" + topic + "] sets both a queue group and JetStream; replicas share work through the durable instead");
+        }
+        if (binding.getPendingMessageLimit() != null || binding.getPendingByteLimit() != null) {
+            throw new IllegalStateException("Topic [" + topic + "] sets pending limits, which apply to core subscriptions only; JetStream buffers one fetch batch");
+        }
+        if (js.getAckPolicy() == JetStreamAckPolicy.ALL && binding.getConcurrency() != null && binding.getConcurrency() > 1) {
+            throw new IllegalStateException("Topic [" + topic + "] uses ackPolicy ALL, which requires concurrency 1");
+        }
+        if ((js.getFetchBatchSize() != null && js.getFetchBatchSize() < 1)
+                || (js.getFetchMaxWaitMs() != null && js.getFetchMaxWaitMs() < 1)
+                || (js.getMaxAckPending() != null && js.getMaxAckPending() < 1)
+                || (js.getAckWaitMs() != null && js.getAckWaitMs() < 1)) {
+            throw new IllegalStateException("Topic [" + topic + "] has an invalid JetStream setting: " + js);
+        }
+    }
+
+    /**
+     * Rejects {@code jetStreamPublish}, compression and claim check settings on read topics, JetStream window, retry or
+     * timeout values the publisher cannot honour, compression levels the codec does not have, and claim check buckets or
+     * limits the Object Store cannot take.
+     *
+     * @param config the event component config to validate
+     */
+    private void validateWriteTopicBindings(EventComponentConfig config) {
+        for (EventComponentEntry entry : config.getComponents()) {
+            for (TopicBinding binding : Optional.ofNullable(entry.getReadTopics()).orElse(List.of())) {
+                if (binding.getJetStreamPublish() != null) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] sets jetStreamPublish on a read topic");
+                }
+                if (binding.getCompression() != null || binding.getCompressionMinBytes() != null || binding.getCompressionLevel() != null) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] sets compression on a read topic; compressed messages are decompressed on any read topic");
+                }
+                if (binding.getClaimCheck() != null) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] sets claimCheck on a read topic; claim checks are fetched on any read topic");
+                }
+            }
+            for (TopicBinding binding : Optional.ofNullable(entry.getWriteTopics()).orElse(List.of())) {
+                JetStreamPublishBinding js = binding.getJetStreamPublish();
+                if (binding.getJetStream() != null) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] sets jetStream on a write topic; use jetStreamPublish");
+                }
+                if ((binding.getCompression() == null && (binding.getCompressionMinBytes() != null || binding.getCompressionLevel() != null))
+                        || (binding.getCompressionMinBytes() != null && binding.getCompressionMinBytes() < 0)
+                        || (binding.getCompressionLevel() != null && (binding.getCompressionLevel() < 1 || binding.getCompressionLevel() > 9))) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] has an invalid compression setting: codec="
+                            + binding.getCompression() + ", minBytes=" + binding.getCompressionMinBytes() + ", level=" + binding.getCompressionLevel());
+                }
+                ClaimCheckBinding claimCheck = binding.getClaimCheck();
+                if (claimCheck != null && ((claimCheck.getBucket() != null && !claimCheck.getBucket().matches("[A-Za-z0-9_-]+"))
+                        || (claimCheck.getThresholdBytes() != null && claimCheck.getThresholdBytes() < 1)
+                        || (claimCheck.getTtlMs() != null && claimCheck.getTtlMs() < 1))) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] has an invalid claim check setting: " + claimCheck);
+                }
+                if (js == null) continue;
+                if ((js.getMaxPendingAcks() != null && js.getMaxPendingAcks() < 1)
+                        || (js.getMaxRetries() != null && js.getMaxRetries() < 0)
+                        || (js.getAckTimeoutMs() != null && js.getAckTimeoutMs() < 1)
+                        || (js.getRetryBackoffMs() != null && js.getRetryBackoffMs() < 0)) {
+                    throw new IllegalStateException("Topic [" + binding.getTopicName() + "] has an invalid JetStream publish setting: " + js);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rejects rate limits on components that don't supply, and limits or thresholds that are not positive.
+     *
+     * @param config the event component config to validate
+     */
+    private void validateRateLimits(EventComponentConfig config) {
+        for (EventComponentEntry entry : config.getComponents()) {
+            SupplierRateLimit limit = entry.getRateLimit();
+            if (limit == null) continue;
+            if (entry.getHandlerType() != HandlerType.SUPPLIER && entry.getHandlerType() != HandlerType.SUPPLIER_FANOUT) {
+                throw new IllegalStateException("Component [" + entry.getHandlerClass() + "] sets a rateLimit, which only applies to suppliers");
+            }
+            if ((limit.getMessagesPerSecond() != null && limit.getMessagesPerSecond() <= 0)
+                    || (limit.getBytesPerSecond() != null && limit.getBytesPerSecond() <= 0)
+                    || (limit.getMaxPendingBytes() != null && limit.getMaxPendingBytes() <= 0)
+                    || (limit.getMaxReconnectBufferRatio() != null && (limit.getMaxReconnectBufferRatio() <= 0 || limit.getMaxReconnectBufferRatio() > 1))
+                    || (limit.getMaxPauseMs() != null && limit.getMaxPauseMs() <= 0)) {
+                throw new IllegalStateException("Component [" + entry.getHandlerClass() + "] has an invalid rateLimit: " + limit);
+            }
+        }
+    }
+
+    /**
+     * Rejects schedules on components that don't supply, schedules missing what their mode needs, and a prefetch below 1.
+     *
+     * @param config the event component config to validate
+     */
+    private void validateSupplierSchedules(EventComponentConfig config) {
+        for (EventComponentEntry entry : config.getComponents()) {
+            if (entry.getPrefetch() != null && entry.getPrefetch() < 1) {
+                throw new IllegalStateException("Component [" + entry.getHandlerClass() + "] has prefetch < 1: " + entry.getPrefetch());
+            }
+            SupplierSchedule schedule = entry.getSchedule();
+            if (schedule == null || schedule.getMode() == null) continue;
+            String component = entry.getHandlerClass();
+            if (entry.getHandlerType() != HandlerType.SUPPLIER && entry.getHandlerType() != HandlerType.SUPPLIER_FANOUT) {
+                throw new IllegalStateException("Component [" + component + "] sets a schedule, which only applies to suppliers");
+            }
+            switch (schedule.getMode()) {
+                case FIXED_RATE, FIXED_DELAY -> {
+                    if (schedule.getPeriodMs() == null || schedule.getPeriodMs() < 1
+                            || (schedule.getInitialDelayMs() != null && schedule.getInitialDelayMs() < 0)) {
+                        throw new IllegalStateException("Component [" + component + "] has an invalid " + schedule.getMode() + " schedule: " + schedule);
+                    }
+                }
+                case CRON -> {
+                    try {
+                        CronExpression.parse(schedule.getCron());
+                        if (schedule.getZone() != null) ZoneId.of(schedule.getZone());
+                    } catch (RuntimeException e) {
+                        throw new IllegalStateException("Component [" + component + "] has an invalid CRON schedule: " + schedule, e);
+                    }
+                }
+                default -> {}
+            }
+        }
+    }
+
     /**
      * Validates the rules surrounding which handlers can subscribe to the same topics.
      * <p>
@@ -1,5 +1,6 @@
 package com.sougata.natscore.config;
 
+import com.sougata.natscore.enums.ExecutorType;
 import com.sougata.natscore.enums.HandlerType;
 import lombok.Data;
 
@@ -12,4 +13,9 @@ public class EventComponentEntry {
     private List<TopicBinding> writeTopics;
     private String handlerClass;
     private boolean disabled;
+    private Integer concurrency; // Optional - default for readTopics that don't set their own
+    private ExecutorType executorType; // Optional - default for readTopics that don't set their own; VIRTUAL runs a supplier on virtual threads
+    private SupplierRateLimit rateLimit; // Optional - SUPPLIER/SUPPLIER_FANOUT only; paces the supply loop
+    private Integer prefetch; // Optional - PayloadPublisher suppliers only; items requested ahead of the publish path, defaults to 256
+    private SupplierSchedule schedule; // Optional - SUPPLIER/SUPPLIER_FANOUT only; when supply() is called, defaults to a busy loop
 }
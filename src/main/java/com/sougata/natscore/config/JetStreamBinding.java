@@ -0,0 +1,15 @@
+package com.sougata.natscore.config;
+
+import com.sougata.natscore.enums.JetStreamAckPolicy;
+import lombok.Data;
+
+@Data
+public class JetStreamBinding {
+    private String stream; // Optional - looked up from the topic when not set
+    private String durable; // Durable consumer name; replicas sharing it split the stream's messages between them
+    private JetStreamAckPolicy ackPolicy; // Optional - EXPLICIT (default) acks each message, ALL acks once per fetched batch
+    private Integer fetchBatchSize; // Optional - messages pulled per fetch, defaults to 100
+    private Long fetchMaxWaitMs; // Optional - how long a fetch waits to fill its batch, defaults to 500
+    private Long maxAckPending; // Optional - unacknowledged messages the server lets this consumer hold, defaults to 1000
+    private Long ackWaitMs; // Optional - redelivery delay for unacknowledged messages, server default when not set
+}
@@ -0,0 +1,12 @@
+package com.sougata.natscore.config;
+
+import lombok.Data;
+
+@Data
+public class JetStreamPublishBinding {
+    private String stream; // Optional - when set, the publish fails unless the topic is stored in this stream
+    private Integer maxPendingAcks; // Optional - publishes awaiting their ack before publishers block, defaults to 1024
+    private Integer maxRetries; // Optional - re-publishes of a message whose ack failed or timed out, defaults to 3
+    private Long ackTimeoutMs; // Optional - how long to wait for an ack before retrying, defaults to 5000
+    private Long retryBackoffMs; // Optional - delay before the first retry, doubled on each attempt, defaults to 100
+}
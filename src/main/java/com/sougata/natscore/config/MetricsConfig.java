@@ -2,10 +2,12 @@ package com.sougata.natscore.config;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties({MetricsDistributionConfig.class, StripedMetricsConfig.class})
 public class MetricsConfig {
     @Bean
     public MeterRegistryCustomizer<MeterRegistry> metricsCommonTags() {
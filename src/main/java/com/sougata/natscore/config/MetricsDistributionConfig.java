@@ -0,0 +1,15 @@
+package com.sougata.natscore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "nats.metrics")
+public class MetricsDistributionConfig {
+    private double[] percentiles = {}; // client-side percentiles published by the timers and payload size summaries, e.g. 0.5,0.99
+    private boolean percentileHistogram = false; // publish histogram buckets so percentiles can be aggregated server-side (e.g. Prometheus)
+    private long[] latencySloMs = {}; // extra timer buckets, in milliseconds
+    private double[] payloadSloBytes = {}; // extra payload size summary buckets, in bytes
+}
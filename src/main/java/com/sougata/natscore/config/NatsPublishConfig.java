@@ -0,0 +1,8 @@
+package com.sougata.natscore.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PublishPipelineConfig.class)
+public class NatsPublishConfig {}
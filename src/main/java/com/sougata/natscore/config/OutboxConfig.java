@@ -0,0 +1,17 @@
+package com.sougata.natscore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * {@code nats.publish.outbox.*}: local log for core publishes that cannot reach NATS.
+ */
+@Getter
+@Setter
+public class OutboxConfig {
+    private boolean enabled = false; // write publishes to disk while their connection is down or its reconnect buffer is full
+    private String directory = "nats-outbox"; // one sub-directory per dispatcher; keep it on a persistent volume
+    private int segmentBytes = 16 * 1024 * 1024; // size of each memory-mapped segment file
+    private long maxBytes = 1024L * 1024 * 1024; // segment files kept per dispatcher before publishes fail as before
+    private int replayMessagesPerSecond = 0; // pace of the replay after a reconnect (0 = as fast as the connection takes them)
+}
@@ -0,0 +1,20 @@
+package com.sougata.natscore.config;
+
+import com.sougata.natscore.enums.OverflowPolicy;
+import lombok.Data;
+
+/**
+ * Buffering between a core read topic's NATS dispatcher and its handler. The buffer is not durable: core NATS has no
+ * redelivery, so whatever is still buffered in memory or spilled to disk when {@code shutdownTimeoutMs} runs out at
+ * shutdown is lost, and counted as {@code nats.overflow.dropped}. Spill files are deleted on shutdown and not read back
+ * on restart. Use a JetStream topic where messages must survive a restart.
+ */
+@Data
+public class OverflowBinding {
+    private OverflowPolicy policy; // What happens once `capacity` messages wait for the handler: BLOCK, DROP_OLDEST, DROP_NEWEST or SPILL
+    private Integer capacity; // Optional - messages held in memory before the policy applies, defaults to 1024
+    private String spillDirectory; // Optional - SPILL only; where segment files go, defaults to <java.io.tmpdir>/nats-core-spill
+    private Integer spillSegmentBytes; // Optional - SPILL only; size of each memory-mapped segment file, defaults to 64 MB
+    private Long spillMaxBytes; // Optional - SPILL only; spilled bytes before the dispatcher blocks instead, defaults to 1 GB
+    private Long shutdownTimeoutMs; // Optional - how long shutdown waits for buffered messages to reach the handler before dropping the rest, defaults to 2000
+}
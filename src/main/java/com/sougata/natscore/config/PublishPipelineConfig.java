@@ -0,0 +1,17 @@
+package com.sougata.natscore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "nats.publish")
+public class PublishPipelineConfig {
+    private boolean async = false; // publish through a per-dispatcher queue and writer thread instead of on the handler thread
+    private int queueCapacity = 8192; // publishers block once this many messages are waiting for the writer
+    private int maxBatchMessages = 256; // the writer flushes after this many messages...
+    private int maxBatchBytes = 1024 * 1024; // ...or this many payload bytes...
+    private long maxDelayMicros = 0; // ...or once the first message of a batch has waited this long (0 = flush whatever is queued)
+    private OutboxConfig outbox = new OutboxConfig(); // nats.publish.outbox.*, used with or without async
+}
@@ -1,10 +1,12 @@
 package com.sougata.natscore.config;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
+@EnableConfigurationProperties(SchemaRegistryConfig.class)
 public class RestTemplateConfig {
 
     @Bean
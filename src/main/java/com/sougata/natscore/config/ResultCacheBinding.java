@@ -0,0 +1,10 @@
+package com.sougata.natscore.config;
+
+import lombok.Data;
+
+@Data
+public class ResultCacheBinding {
+    private Integer maxEntries; // Optional - responses kept at once, defaults to 10000
+    private Long ttlMs; // Optional - how long a response is reused, defaults to 60 seconds
+    private Long maxBytes; // Optional - budget for cached response payloads, unbounded (beyond maxEntries) when not set
+}
@@ -0,0 +1,18 @@
+package com.sougata.natscore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * {@code schema.registry.*}: how contracts are validated against the registry at startup ({@code url} is read by
+ * {@link com.sougata.natscore.schema.SchemaRegistryClient}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "schema.registry")
+public class SchemaRegistryConfig {
+    private int maxConcurrency = 8; // registry calls in flight at once during startup validation
+    private boolean batch = false; // register changed schemas in one POST to /api/schemas/batch (the registry must support it)
+    private String fingerprintFile = "nats-schema-fingerprints.properties"; // schemas registered before, by topic; empty to register every schema on every start
+}
@@ -0,0 +1,13 @@
+package com.sougata.natscore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "nats.metrics.striped")
+public class StripedMetricsConfig {
+    private boolean enabled = false; // count into per-meter LongAdders and push the totals to the MeterRegistry periodically
+    private long flushIntervalMs = 1000; // how often striped counts are pushed to the MeterRegistry
+}
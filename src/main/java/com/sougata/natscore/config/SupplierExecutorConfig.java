@@ -9,4 +9,5 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "nats.supplier")
 public class SupplierExecutorConfig {
     private int threadPoolSize = Runtime.getRuntime().availableProcessors() * 2; // default fallback
+    private int schedulerPoolSize = 2; // threads firing FIXED_RATE, FIXED_DELAY and CRON suppliers
 }
@@ -0,0 +1,13 @@
+package com.sougata.natscore.config;
+
+import lombok.Data;
+
+@Data
+public class SupplierRateLimit {
+    private Double messagesPerSecond; // Optional - token bucket refill rate for published messages, bursts up to one second's worth
+    private Long bytesPerSecond; // Optional - token bucket refill rate for published payload bytes, bursts up to one second's worth
+    private boolean adaptive; // Optional - pause while the connection's outgoing or reconnect buffer is over its threshold
+    private Long maxPendingBytes; // Optional - adaptive only; outgoing buffer bytes above which the supplier pauses, defaults to 4 MiB
+    private Double maxReconnectBufferRatio; // Optional - adaptive only; share of the reconnect buffer in use above which it pauses, defaults to 0.5
+    private Long maxPauseMs; // Optional - adaptive only; longest single backoff sleep, defaults to 100
+}
@@ -0,0 +1,13 @@
+package com.sougata.natscore.config;
+
+import com.sougata.natscore.enums.SupplierMode;
+import lombok.Data;
+
+@Data
+public class SupplierSchedule {
+    private SupplierMode mode; // Optional - LOOP (default) calls supply() back to back on a dedicated thread
+    private Long periodMs; // FIXED_RATE / FIXED_DELAY only - time between starts, or from one end to the next start
+    private Long initialDelayMs; // Optional - FIXED_RATE / FIXED_DELAY only, defaults to 0
+    private String cron; // CRON only - Spring cron expression with seconds, e.g. "0 */5 * * * *"
+    private String zone; // Optional - CRON only; time zone id for the expression, defaults to the system zone
+}
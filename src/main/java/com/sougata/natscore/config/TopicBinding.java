@@ -1,5 +1,8 @@
 package com.sougata.natscore.config;
 
+import com.sougata.natscore.enums.CompressionCodec;
+import com.sougata.natscore.enums.ExecutorType;
+import com.sougata.natscore.enums.OrderingMode;
 import lombok.Data;
 
 @Data
@@ -7,4 +10,24 @@ public class TopicBinding {
     private String topicName;
     private String messageType; // Fully-qualified class name for the expected message
     private String queueGroup; // Optional - can be null for publish topics
-}
\ No newline at end of file
+    private Integer concurrency; // Optional - read topics only; > 1 hands messages off to a worker stage, defaults to the entry's value
+    private ExecutorType executorType; // Optional - worker threads for concurrency > 1, defaults to the entry's value, then PLATFORM
+    private Integer queueCapacity; // Optional - messages waiting for a PLATFORM worker (per lane when KEYED) before the NATS dispatcher thread blocks
+    private OrderingMode ordering; // Optional - KEYED runs `concurrency` single-threaded lanes, keeping messages with the same key in order
+    private String orderingKeyHeader; // Optional - header hashed to pick a lane when ordering is KEYED, defaults to correlationId
+    private Integer batchMaxSize; // Optional - CONSUMER_BATCH only; flush once this many messages are buffered
+    private Integer batchMaxBytes; // Optional - CONSUMER_BATCH only; flush once buffered payloads reach this many bytes
+    private Long batchLingerMs; // Optional - CONSUMER_BATCH only; flush a non-empty batch this long after its first message
+    private JetStreamPublishBinding jetStreamPublish; // Optional - write topics only; publish through JetStream and wait for the stream's acks
+    private JetStreamBinding jetStream; // Optional - CONSUMER/FUNCTION/FUNCTION_FANOUT read topics; consume through a durable pull consumer instead of a core subscription
+    private Long pendingMessageLimit; // Optional - core read topics only; messages the client buffers for the subscription before dropping them (slow consumer), <= 0 for unlimited, defaults to the client's 524288
+    private Long pendingByteLimit; // Optional - core read topics only; bytes buffered for the subscription before dropping, <= 0 for unlimited, defaults to the client's 64 MB
+    private OverflowBinding overflow; // Optional - CONSUMER/FUNCTION/FUNCTION_FANOUT core read topics; buffer between the NATS dispatcher and the handler, and what to do when it is full
+    private CompressionCodec compression; // Optional - write topics only; compress payloads with this codec (receivers decompress whatever they get)
+    private Integer compressionMinBytes; // Optional - payloads smaller than this are sent as they are, defaults to 1024
+    private Integer compressionLevel; // Optional - 1 (fastest) to 9 (smallest), defaults to 6
+    private ClaimCheckBinding claimCheck; // Optional - write topics only; store payloads above a threshold in an Object Store bucket and publish a reference (receivers fetch whatever they get)
+    private DedupBinding dedup; // Optional - CONSUMER/FUNCTION/FUNCTION_FANOUT read topics; skip messages whose id header was already handled recently
+    private ResultCacheBinding resultCache; // Optional - FUNCTION read topics only; reuse the handler's response for identical request payloads
+    private Integer connectionIndex; // Optional - read topics only; pins the subscription to this pooled connection (nats.connections), defaults to the one the topic hashes to
+}
@@ -0,0 +1,9 @@
+package com.sougata.natscore.contract;
+
+import com.sougata.natscore.model.PayloadWrapper;
+
+import java.util.List;
+
+public interface PayloadBatchConsumer {
+    void consume(List<PayloadWrapper<byte[]>> messages);
+}
\ No newline at end of file
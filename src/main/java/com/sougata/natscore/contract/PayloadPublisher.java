@@ -0,0 +1,13 @@
+package com.sougata.natscore.contract;
+
+import com.sougata.natscore.model.PayloadWrapper;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Reactive variant of {@link PayloadSupplier}. The dispatcher subscribes once at startup and requests more items
+ * only as earlier ones are accepted by the publish path, so a slow connection or a full JetStream ack window slows
+ * the producer down instead of being buffered.
+ */
+public interface PayloadPublisher extends Flow.Publisher<PayloadWrapper<byte[]>> {
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.sougata.natscore.contract;
+
+import com.sougata.natscore.model.PayloadWrapper;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Reactive variant of {@link PayloadConsumer}. {@code onSubscribe} is called once with a subscription covering all
+ * of the component's read topics, and {@code onNext} is called serially, never beyond the requested demand. Without
+ * demand, messages wait in the NATS subscription's pending buffer (or on the server, for JetStream topics).
+ * {@code onComplete} is called on shutdown.
+ */
+public interface PayloadSubscriber extends Flow.Subscriber<PayloadWrapper<byte[]>> {
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.sougata.natscore.contract;
+
+import com.google.protobuf.Message;
+import com.sougata.natscore.model.TypedPayload;
+
+public interface TypedPayloadConsumer<I extends Message> {
+    void consume(TypedPayload<I> message);
+}
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.sougata.natscore.contract;
+
+import com.google.protobuf.Message;
+import com.sougata.natscore.model.TypedPayload;
+
+/**
+ * Typed variant of {@link PayloadFunction}. The response is published with its class name as payload type
+ * and the request's correlation id; returning {@code null} publishes nothing.
+ */
+public interface TypedPayloadFunction<I extends Message, O extends Message> {
+    O process(TypedPayload<I> request);
+}
\ No newline at end of file
@@ -1,64 +1,205 @@
 package com.sougata.natscore.dispatcher;
 
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.PublishPipelineConfig;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.JetStreamAckPolicy;
 import com.sougata.natscore.enums.MDCLoggingEnum;
+import com.sougata.natscore.model.NatsMessageView;
 import com.sougata.natscore.model.PayloadHeader;
 import com.sougata.natscore.model.PayloadWrapper;
 import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
 import io.nats.client.Message;
+import io.nats.client.MessageHandler;
+import io.nats.client.ObjectStore;
 import io.nats.client.impl.Headers;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.sougata.natscore.util.NatsUtil.headersToMap;
 
 @Slf4j
 public abstract class AbstractDispatcher {
+    private static final PayloadHeader[] PAYLOAD_HEADERS = PayloadHeader.values();
+
     protected final List<Dispatcher> dispatchers = new ArrayList<>();
-    protected final Connection connection;
+    private final List<WorkerStage> workerStages = new ArrayList<>();
+    private final List<OverflowStage> overflowStages = new ArrayList<>();
+    private final List<JetStreamPuller> jetStreamPullers = new ArrayList<>();
+    protected final NatsConnectionPool connectionPool;
+    protected final Connection connection; // the pool's primary connection
     protected final NatsMetricsRecorder metricsRecorder;
     protected Map<String, String> writeTopicMap = new HashMap<>();
+    private final PublishPipeline publishPipeline; // null when publishing inline on the calling thread
+    private final PublishOutbox publishOutbox; // null unless nats.publish.outbox.enabled
+    private final Map<String, WriteTarget> writeTargets = new ConcurrentHashMap<>(); // payloadType -> resolved writeTopicMap entry
+    private final Map<String, JetStreamPublisher> jetStreamPublishers = new ConcurrentHashMap<>(); // write topic -> persisted publisher
+    private final Map<String, PayloadCompressor> compressors = new ConcurrentHashMap<>(); // write topic -> compressor, when set
+    private final Map<String, ClaimCheck> claimChecks = new ConcurrentHashMap<>(); // write topic -> claim check, when set
+    private final Map<String, ObjectStore> claimCheckStores = new ConcurrentHashMap<>(); // bucket -> store incoming claim checks are fetched from
+    private final Set<String> claimCheckBuckets = ConcurrentHashMap.newKeySet(); // buckets named by this component's bindings
+
+    @Value("${nats.receive.max-payload-bytes:67108864}")
+    private int maxPayloadBytes = 64 * 1024 * 1024; // largest decompressed or claim-checked payload accepted
+
+    /**
+     * A write topic plus its pre-encoded, read-only headers that are the same for every message (the payload type),
+     * the pooled connection it publishes on, its meters, its JetStream publisher when the topic is persisted, and its
+     * compressor and claim check when the topic sets them.
+     */
+    private record WriteTarget(String topic, Headers staticHeaders, Connection connection, TopicMeters meters, JetStreamPublisher jetStream,
+                               PayloadCompressor compressor, ClaimCheck claimCheck) {}
+
+    /**
+     * Handles one delivery for {@link #subscribe(TopicBinding, Delivery)}.
+     */
+    @FunctionalInterface
+    protected interface Delivery {
+        /**
+         * @return {@code false} when the handler failed, so a JetStream message is nak'd for redelivery
+         */
+        boolean handle(Message msg);
+    }
 
     protected AbstractDispatcher(Connection connection, NatsMetricsRecorder metricsRecorder) {
-        this.connection = connection;
+        this(NatsConnectionPool.of(connection), metricsRecorder, null);
+    }
+
+    protected AbstractDispatcher(NatsConnectionPool connectionPool, NatsMetricsRecorder metricsRecorder) {
+        this(connectionPool, metricsRecorder, null);
+    }
+
+    protected AbstractDispatcher(NatsConnectionPool connectionPool, NatsMetricsRecorder metricsRecorder, PublishPipelineConfig publishConfig) {
+        this.connectionPool = connectionPool;
+        this.connection = connectionPool.primary();
         this.metricsRecorder = metricsRecorder;
+        this.publishOutbox = publishConfig != null && publishConfig.getOutbox().isEnabled()
+                ? openOutbox(publishConfig)
+                : null;
+        this.publishPipeline = publishConfig != null && publishConfig.isAsync()
+                ? new PublishPipeline(getClass().getSimpleName(), metricsRecorder, publishConfig, publishOutbox)
+                : null;
+    }
+
+    private PublishOutbox openOutbox(PublishPipelineConfig publishConfig) {
+        try {
+            return new PublishOutbox(getClass().getSimpleName(), connectionPool, metricsRecorder, publishConfig.getOutbox());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open publish outbox for " + getClass().getSimpleName(), e);
+        }
     }
 
     protected PayloadWrapper<byte[]> extractAndLogIncomingMessage(String messageType, String topicName, Message msg) {
-        String correlationId = msg.getHeaders().getFirst(PayloadHeader.CORRELATION_ID.getKey());
+        return extractAndLogIncomingMessage(messageType, metricsRecorder.forTopic(topicName), msg);
+    }
+
+    /**
+     * As above, with the topic's meters already resolved, for per-binding closures. A claim check is fetched and a
+     * compressed payload decompressed here; the received bytes metric counts the payload as it came over the wire.
+     */
+    protected PayloadWrapper<byte[]> extractAndLogIncomingMessage(String messageType, TopicMeters meters, Message msg) {
+        NatsMessageView input = decode(messageType, meters, msg);
+
+        MDC.put(MDCLoggingEnum.CORRELATION_ID.getLoggingKey(), input.getHeader(PayloadHeader.CORRELATION_ID));
+        logIncomingMessage(meters.topic(), msg.getHeaders());
+        meters.incrementReceived();
+        meters.recordReceivedBytes(msg.getData() == null ? 0 : msg.getData().length);
+        recordEndToEndLatency(meters, msg);
+
+        return input;
+    }
+
+    /**
+     * As above, for deliveries: a message that cannot be decoded (e.g. its claim check expired) is logged and counted
+     * as an error instead of thrown, so the delivery can report it as failed.
+     *
+     * @return the message, or {@code null} when it could not be decoded
+     */
+    protected PayloadWrapper<byte[]> tryExtractIncomingMessage(String messageType, TopicMeters meters, Message msg) {
+        try {
+            return extractAndLogIncomingMessage(messageType, meters, msg);
+        } catch (RuntimeException e) {
+            log.error("Cannot decode message on topic {}: ", meters.topic(), e);
+            meters.incrementError();
+            return null;
+        }
+    }
 
-        MDC.put(MDCLoggingEnum.CORRELATION_ID.getLoggingKey(), correlationId);
-        logIncomingMessage(topicName, msg.getHeaders());
-        metricsRecorder.incrementReceived(topicName);
+    /**
+     * Wraps {@code msg} for a handler, fetching its claim check and decompressing it, without recording it as received.
+     *
+     * @param meters where the claim check and codec timings go
+     * @throws IllegalStateException when either announces a size over {@code nats.receive.max-payload-bytes}, or fails,
+     * or the claim check names a bucket none of this component's bindings configure
+     */
+    protected NatsMessageView decode(String messageType, TopicMeters meters, Message msg) {
+        byte[] data = ClaimCheck.fetch(msg, this::claimCheckStore, maxPayloadBytes, meters);
+        return NatsMessageView.of(msg, messageType, PayloadCompressor.decompress(msg, data, maxPayloadBytes, meters));
+    }
 
-        return PayloadWrapper.<byte[]>newBuilder()
-                .setPayload(msg.getData())
-                .setPayloadType(messageType)
-                .setCorrelationId(correlationId)
-                .setCreationTimestamp(msg.getHeaders().getFirst(PayloadHeader.CREATION_TS.getKey()))
-                .build();
+    /**
+     * Measured from the raw header only, since {@link NatsMessageView} falls back to the current time when it is missing.
+     */
+    private void recordEndToEndLatency(TopicMeters meters, Message msg) {
+        String creationTs = msg.hasHeaders() ? msg.getHeaders().getFirst(PayloadHeader.CREATION_TS.getKey()) : null;
+        if (creationTs == null) return;
+        try {
+            meters.recordEndToEndLatency(System.currentTimeMillis() - Long.parseLong(creationTs));
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring non-numeric {} header on topic {}: {}", PayloadHeader.CREATION_TS.getKey(), meters.topic(), creationTs);
+        }
     }
 
 
     protected void publish(PayloadWrapper<byte[]> payload) {
         try {
-            String payloadType = payload.getHeader(PayloadHeader.PAYLOAD_TYPE);
-            String topic = writeTopicMap.get(payloadType);
+            WriteTarget target = writeTarget(payload.getHeader(PayloadHeader.PAYLOAD_TYPE));
 
-            if (topic != null) {
+            if (target != null) {
+                String topic = target.topic();
                 MDC.put(MDCLoggingEnum.CORRELATION_ID.getLoggingKey(), payload.getHeader(PayloadHeader.CORRELATION_ID));
-                logOutgoingMessage(topic, toHeaders(payload));
-                connection.publish(topic, toHeaders(payload), payload.getPayload());
-                metricsRecorder.incrementSent(topic);
+                Headers headers = toHeaders(target, payload);
+                byte[] data = target.compressor() == null ? payload.getPayload() : target.compressor().compress(headers, payload.getPayload());
+                if (target.claimCheck() != null) data = target.claimCheck().offload(headers, data);
+                logOutgoingMessage(topic, headers);
+                target.meters().recordSentBytes(data.length);
+                if (publishPipeline != null && target.jetStream() == null) {
+                    publishPipeline.enqueue(target.connection(), target.meters(), headers, data); // timed by the writer
+                    return;
+                }
+                long start = System.nanoTime();
+                if (target.jetStream() != null) {
+                    target.jetStream().publish(headers, data);
+                } else if (publishOutbox != null) {
+                    if (publishOutbox.publish(target.connection(), topic, headers, data)) {
+                        target.meters().incrementSent(); // otherwise counted when replayed
+                    }
+                } else {
+                    target.connection().publish(topic, headers, data);
+                    target.meters().incrementSent();
+                }
+                target.meters().recordPublishDuration(System.nanoTime() - start);
             }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while queueing message for publish");
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("Error while publishing message", e);
         } finally {
@@ -66,36 +207,279 @@ public abstract class AbstractDispatcher {
         }
     }
 
+    /**
+     * Publishes {@code result} straight to a request's reply subject, bypassing the write topic mapping and the
+     * async pipeline. The reply carries the request's correlation id so multiplexing requesters can match it.
+     */
+    protected void publishReply(TopicMeters requestMeters, String replyTo, String requestCorrelationId, PayloadWrapper<byte[]> result) {
+        try {
+            MDC.put(MDCLoggingEnum.CORRELATION_ID.getLoggingKey(), requestCorrelationId);
+            Headers headers = toHeaders(result);
+            if (requestCorrelationId != null) headers.put(PayloadHeader.CORRELATION_ID.getKey(), requestCorrelationId);
+            logOutgoingMessage(replyTo, headers);
+            connectionPool.forSubject(replyTo).publish(replyTo, headers, result.getPayload());
+            requestMeters.incrementReplied();
+        } catch (Exception e) {
+            log.error("Error while publishing reply for topic {}", requestMeters.topic(), e);
+            requestMeters.incrementError();
+        } finally {
+            MDC.remove(MDCLoggingEnum.CORRELATION_ID.getLoggingKey());
+        }
+    }
+
+    private WriteTarget writeTarget(String payloadType) {
+        if (payloadType == null) return null;
+        WriteTarget target = writeTargets.get(payloadType);
+        if (target != null) return target;
+
+        String topic = writeTopicMap.get(payloadType);
+        if (topic == null) return null;
+
+        Headers staticHeaders = new Headers().add(PayloadHeader.PAYLOAD_TYPE.getKey(), payloadType);
+        return writeTargets.computeIfAbsent(payloadType,
+                t -> new WriteTarget(topic, new Headers(staticHeaders, true, null), connectionPool.forSubject(topic), metricsRecorder.forTopic(topic), jetStreamPublishers.get(topic), compressors.get(topic), claimChecks.get(topic)));
+    }
+
+    /**
+     * Maps the binding's messageType to its topic for {@link #publish}, and sets up JetStream publishing for the
+     * topic when the binding has a {@code jetStreamPublish} section.
+     */
+    protected void addWriteTopic(TopicBinding binding) {
+        writeTopicMap.put(binding.getMessageType(), binding.getTopicName());
+        if (binding.getJetStreamPublish() != null) {
+            jetStreamPublishers.computeIfAbsent(binding.getTopicName(), t -> JetStreamPublisher.forBinding(connectionPool.forSubject(t), binding, metricsRecorder));
+        }
+        PayloadCompressor compressor = PayloadCompressor.forBinding(binding, metricsRecorder.forTopic(binding.getTopicName()));
+        if (compressor != null) compressors.put(binding.getTopicName(), compressor);
+        if (binding.getClaimCheck() != null) {
+            acceptClaimChecks(binding);
+            claimChecks.computeIfAbsent(binding.getTopicName(), t -> ClaimCheck.forBinding(connectionPool.forSubject(t), binding, metricsRecorder));
+        }
+    }
+
+    /**
+     * Lets incoming messages fetch their claim checks from the binding's bucket. A {@code claimCheck} header naming
+     * any other bucket fails the delivery, so a sender cannot make this component read buckets it was not given.
+     */
+    protected void acceptClaimChecks(TopicBinding binding) {
+        if (binding.getClaimCheck() != null) claimCheckBuckets.add(ClaimCheck.bucket(binding.getClaimCheck()));
+    }
+
+    private ObjectStore claimCheckStore(String bucket) {
+        if (!claimCheckBuckets.contains(bucket)) {
+            throw new IllegalStateException("Claim check bucket [" + bucket + "] is not configured on any binding of " + getClass().getSimpleName());
+        }
+        return claimCheckStores.computeIfAbsent(bucket, b -> {
+            try {
+                return connectionPool.forSubject(b).objectStore(b);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open claim check bucket [" + b + "]", e);
+            }
+        });
+    }
+
     protected Headers toHeaders(PayloadWrapper<byte[]> wrapper) {
         Headers headers = new Headers();
-        wrapper.getPayloadHeaders().forEach((k, v) -> headers.add(k.getKey(), v));
+        for (PayloadHeader header : PAYLOAD_HEADERS) {
+            String value = wrapper.getHeader(header);
+            if (value != null) headers.add(header.getKey(), value);
+        }
+        return headers;
+    }
+
+    /**
+     * Starts from a copy of the target's pre-encoded static headers, so only the per-message values are validated and added.
+     */
+    private Headers toHeaders(WriteTarget target, PayloadWrapper<byte[]> wrapper) {
+        Headers headers = new Headers(target.staticHeaders(), false, null);
+        for (PayloadHeader header : PAYLOAD_HEADERS) {
+            if (header == PayloadHeader.PAYLOAD_TYPE) continue;
+            String value = wrapper.getHeader(header);
+            if (value != null) headers.add(header.getKey(), value);
+        }
         return headers;
     }
 
     private void logIncomingMessage(String topicName, Headers headers) {
         log.debug("Received message on topic: {}", topicName);
-        log.trace("Message headers: {}", headersToMap(headers));
+        if (log.isTraceEnabled()) log.trace("Message headers: {}", headersToMap(headers));
     }
 
     private void logOutgoingMessage(String topicName, Headers headers) {
         log.debug("Sending message on topic: {}", topicName);
-        log.trace("Message headers: {}", headersToMap(headers));
+        if (log.isTraceEnabled()) log.trace("Message headers: {}", headersToMap(headers));
     }
 
     protected void registerDispatcher(Dispatcher dispatcher) {
         this.dispatchers.add(dispatcher);
     }
 
+    /**
+     * Registers a dispatcher that carries the binding's subscription: applies the binding's pending limits and exposes
+     * its pending, dropped and slow-consumer statistics under the binding's topic.
+     */
+    protected void registerDispatcher(TopicBinding binding, Dispatcher dispatcher) {
+        if (binding.getPendingMessageLimit() != null || binding.getPendingByteLimit() != null) {
+            dispatcher.setPendingLimits(
+                    binding.getPendingMessageLimit() != null ? binding.getPendingMessageLimit() : dispatcher.getPendingMessageLimit(),
+                    binding.getPendingByteLimit() != null ? binding.getPendingByteLimit() : dispatcher.getPendingByteLimit());
+        }
+        metricsRecorder.registerSubscription(binding.getTopicName(), dispatcher);
+        registerDispatcher(dispatcher);
+    }
+
+    /**
+     * Subscribes {@code delivery} to the binding's topic, through its worker stage when it has one, skipping
+     * duplicates when the binding has a {@code dedup} section.
+     * <p>
+     * Core bindings use a NATS dispatcher, with the binding's queue group when set, behind the binding's overflow stage
+     * when it has one. Bindings with a {@code jetStream}
+     * section are fed from a durable pull consumer instead; under the EXPLICIT ack policy each message is acked
+     * asynchronously once handled, or nak'd when {@code delivery} reports a failure; under ALL the fetcher acks up to
+     * the last message handled and naks the first failure. Either way the subscription lives on
+     * the pooled connection picked by {@link NatsConnectionPool#forSubscription}.
+     * </p>
+     */
+    protected void subscribe(TopicBinding binding, Delivery delivery) {
+        acceptClaimChecks(binding);
+        Connection connection = connectionPool.forSubscription(binding);
+        TopicMeters meters = metricsRecorder.forTopic(binding.getTopicName());
+        Delivery deduplicated = withDedup(binding, meters, delivery);
+        if (binding.getJetStream() != null) {
+            Delivery pulled = deduplicated; // ALL: handled on the fetch thread, which acks up to the last success
+            if (binding.getJetStream().getAckPolicy() != JetStreamAckPolicy.ALL) {
+                MessageHandler handler = withWorkerStage(binding, msg -> {
+                    if (deduplicated.handle(msg)) {
+                        msg.ack();
+                    } else {
+                        msg.nak();
+                        meters.incrementNacked();
+                    }
+                });
+                pulled = msg -> {
+                    try {
+                        handler.onMessage(msg);
+                        return true; // acked or nak'd by the handler itself
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                };
+            }
+            this.jetStreamPullers.add(JetStreamPuller.start(connection, binding, pulled, metricsRecorder));
+            return;
+        }
+
+        Dispatcher dispatcher = connection.createDispatcher(withOverflowStage(binding, withWorkerStage(binding, deduplicated::handle)));
+        if (StringUtils.isEmpty(binding.getQueueGroup()))
+            dispatcher.subscribe(binding.getTopicName());
+        else dispatcher.subscribe(binding.getTopicName(), binding.getQueueGroup());
+        registerDispatcher(binding, dispatcher);
+    }
+
+    /**
+     * Drops messages whose id header the binding's {@link DedupCache} already holds as handled, acking them. A copy
+     * that arrives while the first delivery of its id is still running reports a failure instead, so a JetStream
+     * copy is nak'd and comes back once the outcome is known rather than being acked before the original is. An id is
+     * forgotten again when its delivery fails or throws, so a redelivery or retry gets through.
+     */
+    Delivery withDedup(TopicBinding binding, TopicMeters meters, Delivery delivery) {
+        DedupCache cache = DedupCache.forBinding(binding, metricsRecorder);
+        if (cache == null) return delivery;
+
+        String idHeader = StringUtils.isEmpty(binding.getDedup().getHeader())
+                ? PayloadHeader.CORRELATION_ID.getKey()
+                : binding.getDedup().getHeader();
+        return msg -> {
+            String id = msg.hasHeaders() ? msg.getHeaders().getFirst(idHeader) : null;
+            if (id == null) return delivery.handle(msg);
+            switch (cache.add(id)) {
+                case HANDLED -> {
+                    meters.incrementDedupHit();
+                    log.debug("Skipping duplicate {} {} on topic {}", idHeader, id, meters.topic());
+                    return true;
+                }
+                case IN_FLIGHT -> {
+                    meters.incrementDedupHit();
+                    log.debug("Deferring duplicate {} {} on topic {}, the original is still being handled", idHeader, id, meters.topic());
+                    return false;
+                }
+                case NEW -> meters.incrementDedupMiss();
+            }
+            boolean handled = false;
+            try {
+                handled = delivery.handle(msg);
+                return handled;
+            } finally {
+                if (handled) cache.markHandled(id);
+                else cache.remove(id); // failed or threw
+            }
+        };
+    }
+
+    /**
+     * Runs {@code handler} on a bounded worker stage (optionally key-ordered lanes) when the binding asks for
+     * concurrency > 1, otherwise returns it unchanged so it runs on the NATS dispatcher thread.
+     */
+    protected MessageHandler withWorkerStage(TopicBinding binding, MessageHandler handler) {
+        WorkerStage stage = WorkerStage.forBinding(binding, metricsRecorder);
+        if (stage == null) return handler;
+
+        this.workerStages.add(stage);
+        return msg -> stage.submit(msg, () -> {
+            try {
+                handler.onMessage(msg);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Puts the binding's overflow stage in front of {@code handler} when it has an {@code overflow} section.
+     */
+    private MessageHandler withOverflowStage(TopicBinding binding, MessageHandler handler) {
+        OverflowStage stage = OverflowStage.forBinding(binding, handler, metricsRecorder);
+        if (stage == null) return handler;
+
+        this.overflowStages.add(stage);
+        return stage::submit;
+    }
+
     @PreDestroy
     public void shutdown() {
+        for (JetStreamPuller puller : jetStreamPullers) {
+            puller.stop(2000);
+        }
         log.info("Shutting down {} dispatcher(s)...", dispatchers.size());
         for (Dispatcher dispatcher : dispatchers) {
             try {
-                dispatcher.drain(Duration.ofSeconds(2));
-                log.info("Drained dispatcher cleanly.");
+                // Wait for the drain, so overflow stages below have all the messages the client had already buffered
+                if (dispatcher.drain(Duration.ofSeconds(2)).get(3, TimeUnit.SECONDS)) {
+                    log.info("Drained dispatcher cleanly.");
+                } else {
+                    log.warn("Dispatcher did not drain in 2 s.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception e) {
                 log.warn("Failed to drain dispatcher. Exception: {}", e.getMessage());
             }
         }
+        for (OverflowStage stage : overflowStages) {
+            stage.shutdown();
+        }
+        for (WorkerStage stage : workerStages) {
+            stage.shutdown(2000);
+        }
+        if (publishPipeline != null) {
+            publishPipeline.close(2000);
+        }
+        if (publishOutbox != null) {
+            publishOutbox.close(2000);
+        }
+        for (JetStreamPublisher publisher : jetStreamPublishers.values()) {
+            publisher.close(2000);
+        }
     }
 }
@@ -0,0 +1,179 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.ClaimCheckBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.nats.client.Connection;
+import io.nats.client.JetStreamApiException;
+import io.nats.client.Message;
+import io.nats.client.ObjectStore;
+import io.nats.client.ObjectStoreManagement;
+import io.nats.client.api.ObjectMeta;
+import io.nats.client.api.ObjectStoreConfiguration;
+import io.nats.client.api.StorageType;
+import io.nats.client.impl.Headers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Claim-check offload for one write topic, plus fetching offloaded payloads for incoming messages.
+ * <p>
+ * A payload larger than {@code thresholdBytes} is streamed in chunks into a JetStream Object Store bucket under a
+ * random name, and the message goes out with an empty payload and a {@code claimCheck} header of {@code bucket/name},
+ * so payloads over the server's max_payload can be published at all and large ones do not hold up small messages on
+ * the connection. Receivers stream the object back, chunk by chunk, into an array of the size announced in the
+ * {@code claimCheckSize} header, once that size is checked against the receiver's maximum payload. Objects are not
+ * deleted once fetched, as any number of subscribers may fetch them; the bucket's TTL removes them.
+ * </p>
+ */
+@Slf4j
+final class ClaimCheck {
+    static final String CLAIM_CHECK_HEADER = "claimCheck";
+    static final String SIZE_HEADER = "claimCheckSize";
+    static final String DEFAULT_BUCKET = "nats-claim-check";
+    static final long DEFAULT_TTL_MS = TimeUnit.HOURS.toMillis(24);
+    static final int HEADER_HEADROOM_BYTES = 8192;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ObjectStore store;
+    private final String bucket;
+    private final int thresholdBytes;
+    private final TopicMeters meters;
+
+    ClaimCheck(ObjectStore store, int thresholdBytes, TopicMeters meters) {
+        this.store = store;
+        this.bucket = store.getBucketName();
+        this.thresholdBytes = thresholdBytes;
+        this.meters = meters;
+    }
+
+    /**
+     * Opens the binding's bucket, creating it with the configured TTL when it does not exist yet.
+     *
+     * @return a claim check for the write topic, or {@code null} when it has no claimCheck section
+     */
+    static ClaimCheck forBinding(Connection connection, TopicBinding binding, NatsMetricsRecorder metricsRecorder) {
+        ClaimCheckBinding config = binding.getClaimCheck();
+        if (config == null) return null;
+
+        String bucket = bucket(config);
+        long ttlMillis = config.getTtlMs() == null ? DEFAULT_TTL_MS : config.getTtlMs();
+        int thresholdBytes;
+        if (config.getThresholdBytes() != null) {
+            thresholdBytes = config.getThresholdBytes();
+        } else if (connection.getMaxPayload() > HEADER_HEADROOM_BYTES) {
+            thresholdBytes = (int) Math.min(Integer.MAX_VALUE, connection.getMaxPayload() - HEADER_HEADROOM_BYTES);
+        } else {
+            throw new IllegalStateException("Topic [" + binding.getTopicName() + "] needs claimCheck.thresholdBytes: the server's max_payload is not known");
+        }
+
+        ObjectStore store;
+        try {
+            ObjectStoreManagement management = connection.objectStoreManagement();
+            if (!management.getBucketNames().contains(bucket)) {
+                management.create(ObjectStoreConfiguration.builder(bucket)
+                        .ttl(Duration.ofMillis(ttlMillis))
+                        .storageType(StorageType.File)
+                        .build());
+                log.info("Created claim check bucket [{}] keeping objects for {} ms", bucket, ttlMillis);
+            }
+            store = connection.objectStore(bucket);
+        } catch (IOException | JetStreamApiException e) {
+            throw new IllegalStateException("Cannot open claim check bucket [" + bucket + "] for topic [" + binding.getTopicName() + "]", e);
+        }
+        log.info("Topic [{}] offloads payloads over {} bytes to Object Store bucket [{}]", binding.getTopicName(), thresholdBytes, bucket);
+        return new ClaimCheck(store, thresholdBytes, metricsRecorder.forTopic(binding.getTopicName()));
+    }
+
+    static String bucket(ClaimCheckBinding config) {
+        return config.getBucket() == null ? DEFAULT_BUCKET : config.getBucket();
+    }
+
+    /**
+     * @return {@code data} itself, or an empty payload once {@code data} is stored and the reference headers are added
+     */
+    byte[] offload(Headers headers, byte[] data) throws IOException, JetStreamApiException, NoSuchAlgorithmException {
+        if (data.length <= thresholdBytes) return data;
+
+        long start = System.nanoTime();
+        String name = UUID.randomUUID().toString();
+        store.put(ObjectMeta.objectName(name), new ByteArrayInputStream(data));
+        meters.recordClaimCheckStoreDuration(System.nanoTime() - start);
+        headers.put(CLAIM_CHECK_HEADER, bucket + "/" + name);
+        headers.put(SIZE_HEADER, String.valueOf(data.length));
+        return EMPTY;
+    }
+
+    /**
+     * @param stores the bucket's store, by bucket name
+     * @param maxBytes the largest announced size accepted
+     * @return the message's payload, fetched from the Object Store when it carries a {@code claimCheck} header
+     * @throws IllegalStateException when the announced size is too large, or the object is gone (e.g. expired), does
+     * not match the announced size, or cannot be read
+     */
+    static byte[] fetch(Message msg, Function<String, ObjectStore> stores, int maxBytes, TopicMeters meters) {
+        String reference = msg.hasHeaders() ? msg.getHeaders().getFirst(CLAIM_CHECK_HEADER) : null;
+        if (reference == null) return msg.getData();
+        int slash = reference.indexOf('/');
+        if (slash <= 0 || slash == reference.length() - 1) {
+            throw new IllegalStateException("Malformed " + CLAIM_CHECK_HEADER + " " + reference + " on topic " + meters.topic());
+        }
+
+        long start = System.nanoTime();
+        ArrayOutput out;
+        try {
+            int size = Integer.parseInt(msg.getHeaders().getFirst(SIZE_HEADER));
+            if (size > maxBytes) {
+                throw new IllegalStateException(SIZE_HEADER + " " + size + " is over the limit of " + maxBytes);
+            }
+            out = new ArrayOutput(size);
+            stores.apply(reference.substring(0, slash)).get(reference.substring(slash + 1), out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching claim check " + reference + " on topic " + meters.topic(), e);
+        } catch (IOException | JetStreamApiException | NoSuchAlgorithmException | RuntimeException e) { // e.g. no such object, a bad size
+            throw new IllegalStateException("Cannot fetch claim check " + reference + " on topic " + meters.topic() + ": " + e.getMessage(), e);
+        }
+        if (out.count != out.buffer.length) {
+            throw new IllegalStateException("Claim check " + reference + " on topic " + meters.topic() + " has " + out.count
+                    + " bytes, not its " + SIZE_HEADER + " " + out.buffer.length);
+        }
+        meters.recordClaimCheckFetchDuration(System.nanoTime() - start);
+        return out.buffer;
+    }
+
+    /**
+     * Collects the fetched chunks straight into the payload array, without the copies of a growing buffer.
+     */
+    private static final class ArrayOutput extends OutputStream {
+        private final byte[] buffer;
+        private int count;
+
+        private ArrayOutput(int size) {
+            this.buffer = new byte[size];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.length - count) {
+                throw new IOException("object is larger than its " + SIZE_HEADER + " " + buffer.length);
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.contract.PayloadBatchConsumer;
+import com.sougata.natscore.enums.MDCLoggingEnum;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.nats.client.Dispatcher;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@DependsOn("connection")
+public class ConsumerBatchDispatcher extends AbstractDispatcher {
+    static final int DEFAULT_BATCH_MAX_SIZE = 500;
+    static final int DEFAULT_BATCH_MAX_BYTES = 4 * 1024 * 1024;
+    static final long DEFAULT_BATCH_LINGER_MS = 50;
+    static final int MAX_QUEUED_BATCHES = 2; // full batches waiting for the handler before the NATS dispatcher thread blocks
+    private static final long SHUTDOWN_TIMEOUT_MS = 2000;
+
+    private final List<Batcher> batchers = new ArrayList<>();
+
+    public ConsumerBatchDispatcher(NatsConnectionPool connectionPool, NatsMetricsRecorder metricsRecorder) {
+        super(connectionPool, metricsRecorder);
+    }
+
+    public void register(List<TopicBinding> topics, PayloadBatchConsumer handler) {
+        for (TopicBinding binding : topics) {
+            acceptClaimChecks(binding);
+            Batcher batcher = new Batcher(binding, handler, metricsRecorder.forTopic(binding.getTopicName()));
+            batchers.add(batcher);
+
+            Dispatcher dispatcher = connectionPool.forSubscription(binding).createDispatcher(msg -> {
+                try {
+                    PayloadWrapper<byte[]> input = tryExtractIncomingMessage(binding.getMessageType(), batcher.meters, msg);
+                    if (input != null) batcher.add(input); // an undecodable message is counted and skipped
+                } finally {
+                    MDC.remove(MDCLoggingEnum.CORRELATION_ID.getLoggingKey());
+                }
+            });
+
+            if (StringUtils.isEmpty(binding.getQueueGroup()))
+                dispatcher.subscribe(binding.getTopicName());
+            else dispatcher.subscribe(binding.getTopicName(), binding.getQueueGroup());
+            registerDispatcher(binding, dispatcher);
+        }
+        log.info("Bean of type PayloadBatchConsumer: {} registered", handler.getClass().getName());
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        for (Batcher batcher : batchers) {
+            batcher.close(SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Buffers one binding's messages and hands them to the handler once the batch reaches
+     * {@code batchMaxSize} messages or {@code batchMaxBytes} payload bytes, or {@code batchLingerMs} after its first message.
+     * <p>
+     * The handler runs on the binding's own flush thread, never under the buffer's lock, so a slow handler holds up
+     * neither other topics nor the NATS dispatcher thread adding to the next batch; batches reach it one at a time and
+     * in arrival order. Once {@link #MAX_QUEUED_BATCHES} full batches wait for it, {@link #add} blocks.
+     * </p>
+     */
+    static final class Batcher {
+        private final String topicName;
+        private final TopicMeters meters;
+        private final PayloadBatchConsumer handler;
+        private final int maxSize;
+        private final long maxBytes;
+        private final long lingerMs;
+        private final ScheduledThreadPoolExecutor flusher;
+        private final Semaphore queuedBatches = new Semaphore(MAX_QUEUED_BATCHES);
+
+        private List<PayloadWrapper<byte[]>> buffer;
+        private long bufferedBytes;
+        private ScheduledFuture<?> lingerFlush;
+        private long taken; // batches taken from the buffer so far
+
+        Batcher(TopicBinding binding, PayloadBatchConsumer handler, TopicMeters meters) {
+            this.topicName = binding.getTopicName();
+            this.meters = meters;
+            this.handler = handler;
+            this.maxSize = binding.getBatchMaxSize() == null ? DEFAULT_BATCH_MAX_SIZE : binding.getBatchMaxSize();
+            this.maxBytes = binding.getBatchMaxBytes() == null ? DEFAULT_BATCH_MAX_BYTES : binding.getBatchMaxBytes();
+            this.lingerMs = binding.getBatchLingerMs() == null ? DEFAULT_BATCH_LINGER_MS : binding.getBatchLingerMs();
+            this.buffer = new ArrayList<>(maxSize);
+            this.flusher = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r);
+                t.setName("ConsumerBatchDispatcher-" + topicName);
+                t.setDaemon(true);
+                return t;
+            });
+            this.flusher.setRemoveOnCancelPolicy(true);
+        }
+
+        void add(PayloadWrapper<byte[]> message) {
+            List<PayloadWrapper<byte[]>> batch;
+            synchronized (this) {
+                if (buffer.isEmpty()) {
+                    long batchNumber = taken;
+                    lingerFlush = flusher.schedule(() -> lingerExpired(batchNumber), lingerMs, TimeUnit.MILLISECONDS);
+                }
+                buffer.add(message);
+                bufferedBytes += message.getPayload().length;
+                if (buffer.size() < maxSize && bufferedBytes < maxBytes) return;
+                batch = takeBuffer();
+            }
+
+            boolean permitted = true;
+            try {
+                queuedBatches.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                permitted = false; // hand the batch over anyway rather than drop it
+            }
+            boolean release = permitted;
+            try {
+                flusher.execute(() -> {
+                    try {
+                        consume(batch);
+                    } finally {
+                        if (release) queuedBatches.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                if (release) queuedBatches.release();
+                log.warn("Dropping batch of {} message(s) on topic {}: batcher is closed", batch.size(), topicName);
+            }
+        }
+
+        /**
+         * Runs on the flush thread, behind any full batch handed over before it; a no-op when its batch already went.
+         */
+        private void lingerExpired(long batchNumber) {
+            List<PayloadWrapper<byte[]>> batch;
+            synchronized (this) {
+                if (batchNumber != taken) return;
+                batch = takeBuffer();
+            }
+            consume(batch);
+        }
+
+        private List<PayloadWrapper<byte[]>> takeBuffer() {
+            if (lingerFlush != null) {
+                lingerFlush.cancel(false);
+                lingerFlush = null;
+            }
+            List<PayloadWrapper<byte[]>> batch = buffer;
+            buffer = new ArrayList<>(maxSize);
+            bufferedBytes = 0;
+            taken++;
+            return batch;
+        }
+
+        private void consume(List<PayloadWrapper<byte[]>> batch) {
+            if (batch.isEmpty()) return;
+            long start = System.nanoTime();
+            try {
+                handler.consume(batch);
+            } catch (Exception e) {
+                log.error("Error while consuming batch of {} message(s) on topic {}: ", batch.size(), topicName, e);
+                meters.incrementError(batch.size());
+            } finally {
+                meters.recordHandlerDuration(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Hands the partial batch to the handler and waits up to {@code timeoutMillis} for every queued batch.
+         */
+        void close(long timeoutMillis) {
+            List<PayloadWrapper<byte[]>> batch;
+            synchronized (this) {
+                batch = takeBuffer();
+            }
+            try {
+                flusher.execute(() -> consume(batch));
+            } catch (RejectedExecutionException e) {
+                return; // already closed
+            }
+            flusher.shutdown();
+            try {
+                if (!flusher.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.warn("Batch handler for topic {} did not finish in {} ms, interrupting.", topicName, timeoutMillis);
+                    flusher.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                flusher.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,49 +1,112 @@
 package com.sougata.natscore.dispatcher;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.sougata.natscore.client.NatsConnectionPool;
 import com.sougata.natscore.config.TopicBinding;
 import com.sougata.natscore.contract.PayloadConsumer;
+import com.sougata.natscore.contract.PayloadSubscriber;
+import com.sougata.natscore.contract.TypedPayloadConsumer;
 import com.sougata.natscore.enums.MDCLoggingEnum;
 import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.model.TypedPayload;
 import com.sougata.natscore.monitoring.NatsMetricsRecorder;
-import io.nats.client.Connection;
-import io.nats.client.Dispatcher;
+import com.sougata.natscore.monitoring.TopicMeters;
+import com.sougata.natscore.util.ProtobufUtils;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.MDC;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
 @Component
 @DependsOn("connection")
 public class ConsumerDispatcher extends AbstractDispatcher {
+    private final List<DemandGate> demandGates = new ArrayList<>();
 
-    public ConsumerDispatcher(Connection connection, NatsMetricsRecorder metricsRecorder) {
-        super(connection, metricsRecorder);
+    public ConsumerDispatcher(NatsConnectionPool connectionPool, NatsMetricsRecorder metricsRecorder) {
+        super(connectionPool, metricsRecorder);
     }
 
     public void register(List<TopicBinding> topics, PayloadConsumer handler) {
         for (TopicBinding binding : topics) {
-            Dispatcher dispatcher = connection.createDispatcher(msg -> {
-                PayloadWrapper<byte[]> input = extractAndLogIncomingMessage(binding.getMessageType(), binding.getTopicName(), msg);
+            subscribeConsumer(binding, handler);
+        }
+        log.info("Bean of type PayloadConsumer: {} registered", handler.getClass().getName());
+    }
+
+    /**
+     * Registers a typed consumer; each topic's parser is resolved from its messageType once, here.
+     */
+    public <I extends Message> void registerTyped(List<TopicBinding> topics, TypedPayloadConsumer<I> handler) {
+        for (TopicBinding binding : topics) {
+            Parser<I> parser = ProtobufUtils.parserFor(binding.getMessageType());
+            subscribeConsumer(binding, input -> handler.consume(new TypedPayload<>(input, parser)));
+        }
+        log.info("Bean of type TypedPayloadConsumer: {} registered", handler.getClass().getName());
+    }
+
+    /**
+     * Registers a reactive consumer: it gets one subscription covering all {@code topics}, and messages are only
+     * delivered against its requested demand. JetStream messages are acked once {@code onNext} returns.
+     */
+    public void registerSubscriber(List<TopicBinding> topics, PayloadSubscriber subscriber) {
+        DemandGate gate = new DemandGate(subscriber);
+        demandGates.add(gate);
+        subscriber.onSubscribe(gate);
 
+        for (TopicBinding binding : topics) {
+            TopicMeters meters = metricsRecorder.forTopic(binding.getTopicName());
+            subscribe(binding, msg -> {
+                PayloadWrapper<byte[]> input = tryExtractIncomingMessage(binding.getMessageType(), meters, msg);
+                if (input == null) return false;
                 try {
-                    handler.consume(input);
+                    return gate.deliver(input);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
                 } catch (Exception e) {
                     log.error("Error while consuming message: ", e);
-                    metricsRecorder.incrementError(binding.getTopicName());
+                    meters.incrementError();
+                    return false;
                 } finally {
-                    MDC.remove(MDCLoggingEnum.CORRELATION_ID.getLoggingKey()); // ✅ safer than MDC.clear()
+                    MDC.remove(MDCLoggingEnum.CORRELATION_ID.getLoggingKey());
                 }
             });
-
-            if (StringUtils.isEmpty(binding.getQueueGroup()))
-                dispatcher.subscribe(binding.getTopicName());
-            else dispatcher.subscribe(binding.getTopicName(), binding.getQueueGroup());
-            registerDispatcher(dispatcher);
         }
-        log.info("Bean of type PayloadConsumer: {} registered", handler.getClass().getName());
+        log.info("Bean of type PayloadSubscriber: {} registered", subscriber.getClass().getName());
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        demandGates.forEach(DemandGate::cancel); // release delivery threads waiting for demand so the drain can finish
+        super.shutdown();
+        demandGates.forEach(gate -> gate.terminate(null));
+    }
+
+    private void subscribeConsumer(TopicBinding binding, PayloadConsumer handler) {
+        TopicMeters meters = metricsRecorder.forTopic(binding.getTopicName());
+        subscribe(binding, msg -> {
+            PayloadWrapper<byte[]> input = tryExtractIncomingMessage(binding.getMessageType(), meters, msg);
+            if (input == null) return false;
+
+            long start = System.nanoTime();
+            try {
+                handler.consume(input);
+                return true;
+            } catch (Exception e) {
+                log.error("Error while consuming message: ", e);
+                meters.incrementError();
+                return false;
+            } finally {
+                meters.recordHandlerDuration(System.nanoTime() - start);
+                MDC.remove(MDCLoggingEnum.CORRELATION_ID.getLoggingKey()); // ✅ safer than MDC.clear()
+            }
+        });
     }
 }
\ No newline at end of file
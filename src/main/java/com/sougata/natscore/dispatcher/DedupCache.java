@@ -0,0 +1,220 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.DedupBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message ids one binding has seen within the last {@code ttlMs}, at most {@code maxEntries} of them.
+ * <p>
+ * Ids are kept as 128 bits: a canonical UUID (the default correlation id) is parsed as is, anything else is hashed.
+ * They sit in a ring of primitive arrays in arrival order, so the oldest ids are the first to expire or to make room,
+ * indexed by an open-addressing table of ring positions (linear probing, backward-shift deletion, at most half full).
+ * Everything is allocated up front, about 33 bytes per entry, and nothing is allocated per message.
+ * </p>
+ * <p>
+ * An id is in flight from {@link #add} until {@link #markHandled} or {@link #remove}, so a duplicate that arrives while
+ * the first delivery is still running can be told apart from one whose original was handled.
+ * </p>
+ */
+@Slf4j
+final class DedupCache {
+    static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    static final int DEFAULT_MAX_ENTRIES = 100_000;
+    private static final int FREE = 0;
+
+    /**
+     * What {@link #add} found for an id.
+     */
+    enum Seen {
+        NEW, // not remembered; now in flight
+        IN_FLIGHT, // a delivery with this id is still being handled
+        HANDLED // a delivery with this id was handled
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long[] ids; // ring: [2p] high and [2p + 1] low bits of the id at position p
+    private final long[] addedAt; // ring: System.nanoTime() when position p was filled
+    private final boolean[] handled; // ring: whether the delivery of the id at position p completed
+    private final int[] table; // ring position + 1, or FREE
+    private final int mask;
+    private final TopicMeters meters;
+    private int oldest; // ring position of the oldest entry
+    private int count; // ring positions in use, including ids removed since
+    private volatile int size; // ids in the table
+    private long high; // the id being looked up, set by encode()
+    private long low;
+
+    DedupCache(int maxEntries, long ttlMillis, TopicMeters meters) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.ids = new long[2 * maxEntries];
+        this.addedAt = new long[maxEntries];
+        this.handled = new boolean[maxEntries];
+        this.table = new int[Integer.highestOneBit(Math.max(2, 2 * maxEntries - 1)) << 1];
+        this.mask = table.length - 1;
+        this.meters = meters;
+    }
+
+    /**
+     * @return a cache for the binding, or {@code null} when it has no dedup section
+     */
+    static DedupCache forBinding(TopicBinding binding, NatsMetricsRecorder metricsRecorder) {
+        DedupBinding config = binding.getDedup();
+        if (config == null) return null;
+
+        int maxEntries = config.getMaxEntries() == null ? DEFAULT_MAX_ENTRIES : config.getMaxEntries();
+        long ttlMillis = config.getTtlMs() == null ? DEFAULT_TTL_MS : config.getTtlMs();
+        DedupCache cache = new DedupCache(maxEntries, ttlMillis, metricsRecorder.forTopic(binding.getTopicName()));
+        metricsRecorder.registerDedup(binding.getTopicName(), cache::size);
+        log.info("Topic [{}] deduplicated on up to {} id(s) for {} ms", binding.getTopicName(), maxEntries, ttlMillis);
+        return cache;
+    }
+
+    /**
+     * Remembers {@code id} as in flight, unless it is already remembered.
+     */
+    synchronized Seen add(String id) {
+        long now = System.nanoTime();
+        expire(now);
+        encode(id);
+        int slot = find(high, low);
+        if (table[slot] != FREE) return handled[table[slot] - 1] ? Seen.HANDLED : Seen.IN_FLIGHT;
+
+        if (count == maxEntries) {
+            evictOldest();
+            meters.incrementDedupEvicted();
+        }
+        int position = (oldest + count) % maxEntries;
+        ids[2 * position] = high;
+        ids[2 * position + 1] = low;
+        addedAt[position] = now;
+        handled[position] = false;
+        count++;
+        table[find(high, low)] = position + 1;
+        size++;
+        return Seen.NEW;
+    }
+
+    /**
+     * Records that the delivery of {@code id} completed, so later copies are duplicates of a handled message.
+     */
+    synchronized void markHandled(String id) {
+        encode(id);
+        int slot = find(high, low);
+        if (table[slot] != FREE) handled[table[slot] - 1] = true;
+    }
+
+    /**
+     * Forgets {@code id}, so a redelivery of a message that failed is handled again.
+     */
+    synchronized void remove(String id) {
+        encode(id);
+        int slot = find(high, low);
+        if (table[slot] != FREE) delete(slot);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void expire(long now) {
+        while (count > 0 && now - addedAt[oldest] >= ttlNanos) {
+            evictOldest();
+            meters.incrementDedupEvicted();
+        }
+    }
+
+    private void evictOldest() {
+        int slot = find(ids[2 * oldest], ids[2 * oldest + 1]);
+        if (table[slot] == oldest + 1) delete(slot); // otherwise already removed, or re-added at a later position
+        oldest = (oldest + 1) % maxEntries;
+        count--;
+    }
+
+    /**
+     * @return the slot holding the id, or the free slot where it would go
+     */
+    private int find(long high, long low) {
+        int slot = home(high, low);
+        while (true) {
+            int entry = table[slot];
+            if (entry == FREE) return slot;
+            int position = entry - 1;
+            if (ids[2 * position] == high && ids[2 * position + 1] == low) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Backward-shift deletion: moves later entries of the probe run into the hole when that is closer to their home.
+     */
+    private void delete(int slot) {
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = table[next];
+            if (entry == FREE) break;
+            int position = entry - 1;
+            int home = home(ids[2 * position], ids[2 * position + 1]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = entry;
+                hole = next;
+            }
+        }
+        table[hole] = FREE;
+        size--;
+    }
+
+    private int home(long high, long low) {
+        return (int) mix(high ^ Long.rotateLeft(low, 32)) & mask;
+    }
+
+    private void encode(String id) {
+        if (id.length() == 36 && parseUuid(id)) return;
+
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x9e3779b97f4a7c15L ^ id.length();
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            h1 = (h1 ^ c) * 0x100000001b3L;
+            h2 = Long.rotateLeft(h2 ^ (c * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+        }
+        high = mix(h1 ^ h2);
+        low = mix(h2 + h1);
+    }
+
+    /**
+     * {@link UUID#fromString} has a fast path for the canonical form, and the UUID itself does not escape.
+     */
+    private boolean parseUuid(String id) {
+        if (id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') return false;
+        try {
+            UUID uuid = UUID.fromString(id);
+            high = uuid.getMostSignificantBits();
+            low = uuid.getLeastSignificantBits();
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer.
+     */
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,84 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.contract.PayloadSubscriber;
+import com.sougata.natscore.model.PayloadWrapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Flow;
+
+/**
+ * The {@link Flow.Subscription} handed to a {@link PayloadSubscriber}, shared by all of its topics.
+ * <p>
+ * Delivering threads (NATS dispatcher, worker stage or JetStream fetch threads) wait in {@link #deliver} until the
+ * subscriber has outstanding demand, so undemanded messages stay in the subscription's pending buffer, or on the
+ * server for pull consumers. Deliveries are serialised, as the Flow contract requires. After {@link #cancel()} the
+ * topics stay subscribed until shutdown but nothing more is delivered.
+ * </p>
+ */
+@Slf4j
+final class DemandGate implements Flow.Subscription {
+    private final PayloadSubscriber subscriber;
+    private final Object deliveryLock = new Object();
+    private long demand;
+    private boolean cancelled;
+    private boolean terminated;
+
+    DemandGate(PayloadSubscriber subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            cancel();
+            terminate(new IllegalArgumentException("request(n) requires n > 0, got " + n));
+            return;
+        }
+        synchronized (this) {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits for demand, then hands {@code payload} to the subscriber.
+     *
+     * @return {@code false} when the subscription was cancelled or the subscriber threw
+     */
+    boolean deliver(PayloadWrapper<byte[]> payload) throws InterruptedException {
+        synchronized (this) {
+            while (demand == 0 && !cancelled) {
+                wait();
+            }
+            if (cancelled) return false;
+            if (demand != Long.MAX_VALUE) demand--;
+        }
+        synchronized (deliveryLock) {
+            if (terminated) return false;
+            subscriber.onNext(payload);
+            return true;
+        }
+    }
+
+    /**
+     * Signals {@code onComplete}, or {@code onError} when {@code error} is set, unless already terminated.
+     */
+    void terminate(Throwable error) {
+        synchronized (deliveryLock) {
+            if (terminated) return;
+            terminated = true;
+        }
+        try {
+            if (error == null) subscriber.onComplete();
+            else subscriber.onError(error);
+        } catch (RuntimeException e) {
+            log.warn("PayloadSubscriber {} threw on termination: {}", subscriber.getClass().getName(), e.toString());
+        }
+    }
+}
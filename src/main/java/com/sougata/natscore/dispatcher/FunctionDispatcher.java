@@ -1,15 +1,21 @@
 package com.sougata.natscore.dispatcher;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.sougata.natscore.client.NatsConnectionPool;
 import com.sougata.natscore.config.EventComponentConfig;
+import com.sougata.natscore.config.PublishPipelineConfig;
 import com.sougata.natscore.config.TopicBinding;
 import com.sougata.natscore.contract.PayloadFunction;
+import com.sougata.natscore.contract.TypedPayloadFunction;
 import com.sougata.natscore.enums.HandlerType;
+import com.sougata.natscore.model.PayloadHeader;
 import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.model.TypedPayload;
 import com.sougata.natscore.monitoring.NatsMetricsRecorder;
-import io.nats.client.Connection;
-import io.nats.client.Dispatcher;
+import com.sougata.natscore.monitoring.TopicMeters;
+import com.sougata.natscore.util.ProtobufUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
@@ -21,35 +27,77 @@ import java.util.List;
 @DependsOn("connection")
 public class FunctionDispatcher extends AbstractDispatcher {
 
-    public FunctionDispatcher(Connection connection, EventComponentConfig config, NatsMetricsRecorder metricsRecorder) {
-        super(connection, metricsRecorder);
+    public FunctionDispatcher(NatsConnectionPool connectionPool, EventComponentConfig config, NatsMetricsRecorder metricsRecorder, PublishPipelineConfig publishConfig) {
+        super(connectionPool, metricsRecorder, publishConfig);
         this.writeTopicMap = new HashMap<>();
 
         config.getComponents().stream()
                 .filter(entry -> HandlerType.FUNCTION.equals(entry.getHandlerType()))
+                .filter(entry -> entry.getWriteTopics() != null) // request-reply only functions need no write topics
                 .flatMap(entry -> entry.getWriteTopics().stream())
-                .forEach(binding -> writeTopicMap.put(binding.getMessageType(), binding.getTopicName()));
+                .forEach(this::addWriteTopic);
     }
 
     public void register(List<TopicBinding> topics, PayloadFunction handler) {
         for (TopicBinding binding : topics) {
-            Dispatcher dispatcher = connection.createDispatcher(msg -> {
-                PayloadWrapper<byte[]> input = extractAndLogIncomingMessage(binding.getMessageType(), binding.getTopicName(), msg);
-                PayloadWrapper<byte[]> result = null;
+            subscribeFunction(binding, handler);
+        }
+        log.info("Bean of type PayloadFunction: {} registered", handler.getClass().getName());
+    }
+
+    /**
+     * Registers a typed function; each topic's parser is resolved from its messageType once, here.
+     * Responses are published with their class name as payload type and the request's correlation id.
+     */
+    public <I extends Message, O extends Message> void registerTyped(List<TopicBinding> topics, TypedPayloadFunction<I, O> handler) {
+        for (TopicBinding binding : topics) {
+            Parser<I> parser = ProtobufUtils.parserFor(binding.getMessageType());
+            subscribeFunction(binding, request -> {
+                O response = handler.process(new TypedPayload<>(request, parser));
+                if (response == null) return null;
+                return PayloadWrapper.<byte[]>newBuilder()
+                        .setPayload(response.toByteArray())
+                        .setPayloadType(response.getClass().getName())
+                        .setCorrelationId(request.getHeader(PayloadHeader.CORRELATION_ID))
+                        .build();
+            });
+        }
+        log.info("Bean of type TypedPayloadFunction: {} registered", handler.getClass().getName());
+    }
+
+    /**
+     * With a {@code resultCache} section, a request whose payload was answered recently gets the cached response
+     * without calling the handler. Failures and {@code null} results are not cached.
+     */
+    private void subscribeFunction(TopicBinding binding, PayloadFunction handler) {
+        TopicMeters meters = metricsRecorder.forTopic(binding.getTopicName());
+        ResultCache cache = ResultCache.forBinding(binding, metricsRecorder);
+        subscribe(binding, msg -> {
+            PayloadWrapper<byte[]> input = tryExtractIncomingMessage(binding.getMessageType(), meters, msg);
+            if (input == null) return false;
+            String correlationId = input.getHeader(PayloadHeader.CORRELATION_ID);
+            ResultCache.Key key = cache == null ? null : cache.keyOf(input.getPayload());
+            PayloadWrapper<byte[]> result = key == null ? null : cache.get(key, correlationId);
+            if (result == null) {
+                long start = System.nanoTime();
                 try {
                     result = handler.process(input);
                 } catch (Exception e) {
                     log.error("Error while processing message: ", e);
-                    metricsRecorder.incrementError(binding.getTopicName());
+                    meters.incrementError();
+                    return false;
+                } finally {
+                    meters.recordHandlerDuration(System.nanoTime() - start);
                 }
-                if (result != null) publish(result);
-            });
-
-            if (StringUtils.isEmpty(binding.getQueueGroup()))
-                dispatcher.subscribe(binding.getTopicName());
-            else dispatcher.subscribe(binding.getTopicName(), binding.getQueueGroup());
-            registerDispatcher(dispatcher);
-        }
-        log.info("Bean of type PayloadFunction: {} registered", handler.getClass().getName());
+                if (result == null) return true;
+                if (key != null) cache.put(key, correlationId, result);
+            }
+            if (msg.getReplyTo() != null && !msg.isJetStream()) { // a JetStream message's replyTo is its ack subject
+                publishReply(meters, msg.getReplyTo(), correlationId, result);
+            } else {
+                publish(result);
+            }
+            return true;
+        });
     }
 }
\ No newline at end of file
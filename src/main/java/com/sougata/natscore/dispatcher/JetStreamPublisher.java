@@ -0,0 +1,136 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.JetStreamPublishBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.nats.client.Connection;
+import io.nats.client.JetStream;
+import io.nats.client.PublishOptions;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.Headers;
+import io.nats.client.support.NatsJetStreamConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persisted publishing for one write topic, using JetStream async publish.
+ * <p>
+ * Up to {@code maxPendingAcks} messages may be waiting for the stream's ack at once; {@link #publish} blocks the
+ * caller while that window is full, so publishers run at the rate the stream acknowledges. A message whose ack fails
+ * or does not arrive within {@code ackTimeoutMs} is re-published after a backoff, up to {@code maxRetries} times, and
+ * keeps its slot in the window meanwhile. Every message carries a unique {@code Nats-Msg-Id}, so the stream's
+ * duplicate window drops a retry whose earlier attempt was in fact stored.
+ * </p>
+ */
+@Slf4j
+final class JetStreamPublisher {
+    static final int DEFAULT_MAX_PENDING_ACKS = 1024;
+    static final int DEFAULT_MAX_RETRIES = 3;
+    static final long DEFAULT_ACK_TIMEOUT_MS = 5000;
+    static final long DEFAULT_RETRY_BACKOFF_MS = 100;
+
+    private final String topic;
+    private final JetStream jetStream;
+    private final PublishOptions options;
+    private final NatsMetricsRecorder metricsRecorder;
+    private final TopicMeters meters;
+    private final Semaphore window;
+    private final int maxPendingAcks;
+    private final int maxRetries;
+    private final long ackTimeoutMs;
+    private final long retryBackoffMs;
+    private final String msgIdPrefix = UUID.randomUUID() + "-";
+    private final AtomicLong msgIdSequence = new AtomicLong();
+
+    JetStreamPublisher(String topic, JetStream jetStream, PublishOptions options, NatsMetricsRecorder metricsRecorder, JetStreamPublishBinding config) {
+        this.topic = topic;
+        this.jetStream = jetStream;
+        this.options = options;
+        this.metricsRecorder = metricsRecorder;
+        this.meters = metricsRecorder.forTopic(topic);
+        this.maxPendingAcks = config.getMaxPendingAcks() == null ? DEFAULT_MAX_PENDING_ACKS : config.getMaxPendingAcks();
+        this.maxRetries = config.getMaxRetries() == null ? DEFAULT_MAX_RETRIES : config.getMaxRetries();
+        this.ackTimeoutMs = config.getAckTimeoutMs() == null ? DEFAULT_ACK_TIMEOUT_MS : config.getAckTimeoutMs();
+        this.retryBackoffMs = config.getRetryBackoffMs() == null ? DEFAULT_RETRY_BACKOFF_MS : config.getRetryBackoffMs();
+        this.window = new Semaphore(maxPendingAcks);
+    }
+
+    static JetStreamPublisher forBinding(Connection connection, TopicBinding binding, NatsMetricsRecorder metricsRecorder) {
+        JetStreamPublishBinding config = binding.getJetStreamPublish();
+        PublishOptions options = StringUtils.isEmpty(config.getStream())
+                ? null
+                : PublishOptions.builder().expectedStream(config.getStream()).build();
+        JetStream jetStream;
+        try {
+            jetStream = connection.jetStream();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open JetStream context for topic [" + binding.getTopicName() + "]", e);
+        }
+
+        JetStreamPublisher publisher = new JetStreamPublisher(binding.getTopicName(), jetStream, options, metricsRecorder, config);
+        metricsRecorder.registerJetStreamPendingAcks(binding.getTopicName(), publisher::pendingAcks);
+        log.info("Topic [{}] published through JetStream: maxPendingAcks={}, maxRetries={}, ackTimeoutMs={}",
+                binding.getTopicName(), publisher.maxPendingAcks, publisher.maxRetries, publisher.ackTimeoutMs);
+        return publisher;
+    }
+
+    /**
+     * Publishes asynchronously, blocking only while {@code maxPendingAcks} earlier messages are still unacknowledged.
+     */
+    void publish(Headers headers, byte[] data) throws InterruptedException {
+        window.acquire();
+        headers.put(NatsJetStreamConstants.MSG_ID_HDR, msgIdPrefix + msgIdSequence.incrementAndGet());
+        attempt(headers, data, 0, System.nanoTime());
+    }
+
+    private void attempt(Headers headers, byte[] data, int retry, long startNanos) {
+        CompletableFuture<PublishAck> ack;
+        try {
+            ack = jetStream.publishAsync(topic, headers, data, options);
+        } catch (Exception e) {
+            ack = CompletableFuture.failedFuture(e);
+        }
+        ack.orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((publishAck, error) -> {
+            if (error == null) {
+                meters.incrementSent();
+                metricsRecorder.recordJetStreamAckLatency(topic, System.nanoTime() - startNanos);
+                window.release();
+            } else if (retry < maxRetries) {
+                metricsRecorder.incrementJetStreamRetry(topic);
+                long backoff = retryBackoffMs << Math.min(retry, 16);
+                log.debug("JetStream publish to topic {} failed ({}), retry {} in {} ms", topic, error, retry + 1, backoff);
+                CompletableFuture.runAsync(() -> attempt(headers, data, retry + 1, startNanos),
+                        CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS));
+            } else {
+                log.error("JetStream publish to topic {} failed after {} retries", topic, maxRetries, error);
+                meters.incrementError();
+                window.release();
+            }
+        });
+    }
+
+    private int pendingAcks() {
+        return maxPendingAcks - window.availablePermits();
+    }
+
+    /**
+     * Waits for outstanding acks (including retries) so persisted messages are confirmed before the connection closes.
+     */
+    void close(long timeoutMillis) {
+        try {
+            if (!window.tryAcquire(maxPendingAcks, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("JetStream publisher for topic {} closed with {} unacknowledged message(s).", topic, pendingAcks());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
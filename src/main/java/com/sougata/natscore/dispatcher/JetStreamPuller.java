@@ -0,0 +1,164 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.JetStreamBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.JetStreamAckPolicy;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.nats.client.Connection;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.PullSubscribeOptions;
+import io.nats.client.api.AckPolicy;
+import io.nats.client.api.ConsumerConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Feeds a binding's handler from a durable JetStream pull consumer.
+ * <p>
+ * One thread per binding fetches up to {@code fetchBatchSize} messages at a time and passes them to the handler,
+ * which may be wrapped in a worker stage. The server stops handing out messages once {@code maxAckPending} are
+ * unacknowledged, which bounds the work in flight across all replicas sharing the durable. With
+ * {@link JetStreamAckPolicy#ALL} the handler runs on the fetch thread and, since an ack covers every earlier message,
+ * the batch is handled in order only up to the first failure: the last message handled before it is acked, and the
+ * failed message and the ones after it are nak'd for redelivery. With {@link JetStreamAckPolicy#EXPLICIT} the handler
+ * acks each message itself.
+ * </p>
+ */
+@Slf4j
+final class JetStreamPuller {
+    static final int DEFAULT_FETCH_BATCH_SIZE = 100;
+    static final long DEFAULT_FETCH_MAX_WAIT_MS = 500;
+    static final long DEFAULT_MAX_ACK_PENDING = 1000;
+
+    private final String topicName;
+    private final JetStreamSubscription subscription;
+    private final AbstractDispatcher.Delivery delivery;
+    private final NatsMetricsRecorder metricsRecorder;
+    private final boolean ackBatch;
+    private final int batchSize;
+    private final Duration maxWait;
+    private final Thread fetcher;
+    private volatile boolean running = true;
+
+    JetStreamPuller(TopicBinding binding, JetStreamSubscription subscription, AbstractDispatcher.Delivery delivery, NatsMetricsRecorder metricsRecorder) {
+        JetStreamBinding js = binding.getJetStream();
+        this.topicName = binding.getTopicName();
+        this.subscription = subscription;
+        this.delivery = delivery;
+        this.metricsRecorder = metricsRecorder;
+        this.ackBatch = js.getAckPolicy() == JetStreamAckPolicy.ALL;
+        this.batchSize = js.getFetchBatchSize() == null ? DEFAULT_FETCH_BATCH_SIZE : js.getFetchBatchSize();
+        this.maxWait = Duration.ofMillis(js.getFetchMaxWaitMs() == null ? DEFAULT_FETCH_MAX_WAIT_MS : js.getFetchMaxWaitMs());
+
+        this.fetcher = new Thread(this::runFetcher);
+        this.fetcher.setName("JetStreamPull-" + topicName);
+        this.fetcher.setDaemon(true);
+    }
+
+    /**
+     * @param delivery handles one message; its result decides the acks under {@link JetStreamAckPolicy#ALL}, while
+     *                 under EXPLICIT it acks the message itself
+     */
+    static JetStreamPuller start(Connection connection, TopicBinding binding, AbstractDispatcher.Delivery delivery, NatsMetricsRecorder metricsRecorder) {
+        JetStreamBinding js = binding.getJetStream();
+        JetStreamAckPolicy ackPolicy = js.getAckPolicy() == null ? JetStreamAckPolicy.EXPLICIT : js.getAckPolicy();
+        long maxAckPending = js.getMaxAckPending() == null ? DEFAULT_MAX_ACK_PENDING : js.getMaxAckPending();
+        ConsumerConfiguration.Builder consumer = ConsumerConfiguration.builder()
+                .durable(js.getDurable())
+                .ackPolicy(ackPolicy == JetStreamAckPolicy.ALL ? AckPolicy.All : AckPolicy.Explicit)
+                .maxAckPending(maxAckPending);
+        if (js.getAckWaitMs() != null) consumer.ackWait(Duration.ofMillis(js.getAckWaitMs()));
+
+        PullSubscribeOptions.Builder options = PullSubscribeOptions.builder()
+                .durable(js.getDurable())
+                .configuration(consumer.build());
+        if (StringUtils.isNotEmpty(js.getStream())) options.stream(js.getStream());
+
+        JetStreamSubscription subscription;
+        try {
+            subscription = connection.jetStream().subscribe(binding.getTopicName(), options.build());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to create JetStream pull consumer [" + js.getDurable()
+                    + "] for topic [" + binding.getTopicName() + "]", e);
+        }
+
+        JetStreamPuller puller = new JetStreamPuller(binding, subscription, delivery, metricsRecorder);
+        puller.fetcher.start();
+        log.info("Topic [{}] consumed through JetStream durable [{}]: ackPolicy={}, fetchBatchSize={}, maxAckPending={}",
+                binding.getTopicName(), js.getDurable(), ackPolicy, puller.batchSize, maxAckPending);
+        return puller;
+    }
+
+    private void runFetcher() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                List<Message> batch = subscription.fetch(batchSize, maxWait);
+                if (batch.isEmpty()) continue;
+
+                metricsRecorder.recordJetStreamFetch(topicName, batch.size());
+                if (ackBatch) {
+                    handleInOrder(batch);
+                } else {
+                    for (Message msg : batch) {
+                        delivery.handle(msg);
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                log.warn("Fetch from JetStream for topic {} failed: {}", topicName, e.getMessage());
+                metricsRecorder.incrementError(topicName);
+                sleepQuietly(maxWait);
+            }
+        }
+    }
+
+    /**
+     * Acks up to the last message handled; from the first failure on, messages are nak'd unhandled, so the stream
+     * redelivers them in order rather than an ack covering them.
+     */
+    void handleInOrder(List<Message> batch) {
+        int handled = 0;
+        while (handled < batch.size() && delivery.handle(batch.get(handled))) {
+            handled++;
+        }
+        if (handled > 0) batch.get(handled - 1).ack();
+        for (int i = handled; i < batch.size(); i++) {
+            batch.get(i).nak();
+            metricsRecorder.incrementNacked(topicName);
+        }
+    }
+
+    private static void sleepQuietly(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops fetching, waits for the current batch to be handed off, then unsubscribes. The durable consumer stays on
+     * the server, so messages not yet acked are redelivered to this or another replica.
+     */
+    void stop(long timeoutMillis) {
+        running = false;
+        try {
+            fetcher.join(timeoutMillis + maxWait.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fetcher.isAlive()) {
+            log.warn("JetStream fetcher for topic {} did not stop in {} ms, interrupting.", topicName, timeoutMillis);
+            fetcher.interrupt();
+        }
+        try {
+            subscription.unsubscribe();
+        } catch (Exception e) {
+            log.warn("Failed to unsubscribe JetStream consumer for topic {}: {}", topicName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.sougata.natscore.dispatcher;
+
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte encoding of a message's subject, reply subject, headers and data, for the files written by {@link SpillQueue}
+ * and {@link PublishOutbox}. Each field is length-prefixed, with -1 for {@code null}.
+ */
+final class MessageRecords {
+    private static final int NULL_LENGTH = -1;
+
+    private MessageRecords() {}
+
+    static byte[] encode(Message msg) {
+        return encode(msg.getSubject(), msg.getReplyTo(), msg.getHeaders(), msg.getData());
+    }
+
+    static byte[] encode(String subject, String replyTo, Headers headers, byte[] data) {
+        byte[] subjectBytes = utf8(subject);
+        byte[] replyToBytes = utf8(replyTo);
+        List<byte[]> headerParts = new ArrayList<>();
+        int headerBytes = 0;
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    byte[] key = utf8(header.getKey());
+                    byte[] val = utf8(value);
+                    headerParts.add(key);
+                    headerParts.add(val);
+                    headerBytes += 2 * Integer.BYTES + key.length + val.length;
+                }
+            }
+        }
+        byte[] dataBytes = data == null ? new byte[0] : data;
+
+        ByteBuffer out = ByteBuffer.allocate(
+                lengthOf(subjectBytes) + lengthOf(replyToBytes) + Integer.BYTES + headerBytes + lengthOf(dataBytes));
+        put(out, subjectBytes);
+        put(out, replyToBytes);
+        out.putInt(headers == null ? NULL_LENGTH : headerParts.size() / 2);
+        for (byte[] part : headerParts) {
+            put(out, part);
+        }
+        put(out, dataBytes);
+        return out.array();
+    }
+
+    static Message decode(byte[] record) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        String subject = string(in);
+        String replyTo = string(in);
+        int headerCount = in.getInt();
+        Headers headers = null;
+        if (headerCount != NULL_LENGTH) {
+            headers = new Headers();
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(string(in), string(in));
+            }
+        }
+        return NatsMessage.builder()
+                .subject(subject)
+                .replyTo(replyTo)
+                .headers(headers)
+                .data(bytes(in))
+                .build();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int lengthOf(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void put(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(NULL_LENGTH);
+        } else {
+            out.putInt(value.length).put(value);
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) return null;
+        byte[] value = new byte[length];
+        in.get(value);
+        return value;
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] value = bytes(in);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
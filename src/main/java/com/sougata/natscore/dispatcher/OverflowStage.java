@@ -0,0 +1,196 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.OverflowBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.OverflowPolicy;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.nats.client.Message;
+import io.nats.client.MessageHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer between a binding's NATS dispatcher thread and its handler (or worker stage), drained in arrival order by a
+ * thread of its own, with a policy for when {@code capacity} messages are already waiting:
+ * <ul>
+ *     <li>{@link OverflowPolicy#BLOCK}: the NATS dispatcher thread waits, and the client buffers behind it.</li>
+ *     <li>{@link OverflowPolicy#DROP_OLDEST} / {@link OverflowPolicy#DROP_NEWEST}: a message is dropped and counted
+ *     as {@code nats.overflow.dropped}.</li>
+ *     <li>{@link OverflowPolicy#SPILL}: messages go to a {@link SpillQueue} on local disk. Once anything is spilled,
+ *     later messages are spilled too until the spill has drained, so the handler still sees arrival order. When the
+ *     spill reaches {@code spillMaxBytes} the NATS dispatcher thread waits, as with BLOCK.</li>
+ * </ul>
+ * Nothing buffered survives a restart: on shutdown the drainer gets {@code shutdownTimeoutMs} to hand the rest to the
+ * handler, and whatever is left is dropped, counted and its spill files deleted.
+ */
+@Slf4j
+final class OverflowStage {
+    static final int DEFAULT_CAPACITY = 1024;
+    static final int DEFAULT_SPILL_SEGMENT_BYTES = 64 * 1024 * 1024;
+    static final long DEFAULT_SPILL_MAX_BYTES = 1024L * 1024 * 1024;
+    static final long DEFAULT_SHUTDOWN_TIMEOUT_MS = 2000;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final String topicName;
+    private final OverflowPolicy policy;
+    private final BlockingQueue<Message> memory;
+    private final SpillQueue spill; // null unless SPILL
+    private final Object spillLock = new Object();
+    private final MessageHandler downstream;
+    private final TopicMeters meters;
+    private final long shutdownTimeoutMs;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    OverflowStage(String topicName, OverflowPolicy policy, int capacity, SpillQueue spill, MessageHandler downstream, TopicMeters meters,
+                  long shutdownTimeoutMs) {
+        this.topicName = topicName;
+        this.policy = policy;
+        this.memory = new ArrayBlockingQueue<>(capacity);
+        this.spill = spill;
+        this.downstream = downstream;
+        this.meters = meters;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.drainer = new Thread(this::drain);
+        this.drainer.setName("Overflow-" + topicName);
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * @return a stage feeding {@code downstream}, or {@code null} when the binding has no overflow section
+     */
+    static OverflowStage forBinding(TopicBinding binding, MessageHandler downstream, NatsMetricsRecorder metricsRecorder) {
+        OverflowBinding config = binding.getOverflow();
+        if (config == null) return null;
+
+        String topicName = binding.getTopicName();
+        int capacity = config.getCapacity() == null ? DEFAULT_CAPACITY : config.getCapacity();
+        SpillQueue spill = null;
+        if (config.getPolicy() == OverflowPolicy.SPILL) {
+            Path directory = Path.of(config.getSpillDirectory() == null
+                    ? System.getProperty("java.io.tmpdir") + "/nats-core-spill"
+                    : config.getSpillDirectory());
+            try {
+                spill = new SpillQueue(directory, topicName.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + UUID.randomUUID(),
+                        config.getSpillSegmentBytes() == null ? DEFAULT_SPILL_SEGMENT_BYTES : config.getSpillSegmentBytes(),
+                        config.getSpillMaxBytes() == null ? DEFAULT_SPILL_MAX_BYTES : config.getSpillMaxBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create spill directory " + directory + " for topic [" + topicName + "]", e);
+            }
+        }
+
+        OverflowStage stage = new OverflowStage(topicName, config.getPolicy(), capacity, spill, downstream, metricsRecorder.forTopic(topicName),
+                config.getShutdownTimeoutMs() == null ? DEFAULT_SHUTDOWN_TIMEOUT_MS : config.getShutdownTimeoutMs());
+        SpillQueue spilled = spill;
+        metricsRecorder.registerOverflow(topicName, stage.memory::size,
+                () -> spilled == null ? 0 : spilled.size(), () -> spilled == null ? 0 : spilled.bytes());
+        log.info("Topic [{}] buffered up to {} message(s) in memory, overflow policy {}", topicName, capacity, config.getPolicy());
+        return stage;
+    }
+
+    /**
+     * Called on the NATS dispatcher thread.
+     */
+    void submit(Message msg) throws InterruptedException {
+        switch (policy) {
+            case BLOCK -> memory.put(msg);
+            case DROP_NEWEST -> {
+                if (!memory.offer(msg)) meters.incrementOverflowDropped();
+            }
+            case DROP_OLDEST -> {
+                while (!memory.offer(msg)) {
+                    if (memory.poll() != null) meters.incrementOverflowDropped();
+                }
+            }
+            case SPILL -> spill(msg);
+        }
+    }
+
+    private void spill(Message msg) throws InterruptedException {
+        synchronized (spillLock) {
+            if (spill.isEmpty() && memory.offer(msg)) return;
+            try {
+                while (!spill.offer(msg)) {
+                    spillLock.wait(IDLE_POLL_MILLIS); // spill is full: wait for the drainer like BLOCK would
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot spill message for topic [" + topicName + "]", e);
+            }
+        }
+    }
+
+    private void drain() {
+        while (running || !isEmpty()) {
+            try {
+                Message msg = next();
+                if (msg == null) continue;
+                downstream.onMessage(msg);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unhandled error in overflow stage for topic {}: ", topicName, e);
+            }
+        }
+    }
+
+    /**
+     * Memory first: while anything is spilled, everything in memory arrived before it.
+     */
+    private Message next() throws InterruptedException {
+        Message msg = memory.poll();
+        if (msg != null) return msg;
+        if (spill != null) {
+            synchronized (spillLock) {
+                msg = spill.poll();
+                if (msg != null) {
+                    spillLock.notifyAll();
+                    return msg;
+                }
+            }
+        }
+        return memory.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isEmpty() {
+        return memory.isEmpty() && (spill == null || spill.isEmpty());
+    }
+
+    /**
+     * Hands what is already buffered to the handler for up to {@code shutdownTimeoutMs}, then drops the rest, counting
+     * it as {@code nats.overflow.dropped}, and deletes the spill files. Call once nothing more is submitted.
+     */
+    void shutdown() {
+        running = false;
+        try {
+            drainer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (drainer.isAlive()) {
+            drainer.interrupt();
+            try {
+                drainer.join(IDLE_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int dropped = memory.size() + (spill == null ? 0 : spill.size());
+            log.warn("Overflow stage for topic {} did not drain in {} ms, {} message(s) dropped.", topicName, shutdownTimeoutMs, dropped);
+            meters.incrementOverflowDropped(dropped);
+        }
+        if (spill != null) {
+            synchronized (spillLock) {
+                spill.close();
+            }
+        }
+    }
+}
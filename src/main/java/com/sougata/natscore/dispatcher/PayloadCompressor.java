@@ -0,0 +1,147 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.CompressionCodec;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Payload compression for one write topic, plus the matching decompression of incoming messages.
+ * <p>
+ * A payload of at least {@code compressionMinBytes} is compressed, and sent compressed only when that makes it smaller,
+ * with a {@code contentEncoding} header naming the codec and an {@code uncompressedSize} header so the receiver can
+ * inflate straight into an array of the right size. That size is checked before anything is allocated: it may not
+ * exceed the receiver's maximum payload nor what DEFLATE can expand the compressed bytes to. Deflaters, inflaters and
+ * the compression scratch buffer hold native or sizeable state, so they are borrowed from small shared pools rather
+ * than created per message; with virtual thread workers a per-thread cache would create one per task.
+ * </p>
+ */
+final class PayloadCompressor {
+    static final String ENCODING_HEADER = "contentEncoding";
+    static final String UNCOMPRESSED_SIZE_HEADER = "uncompressedSize";
+    static final int DEFAULT_MIN_BYTES = 1024;
+    static final int DEFAULT_LEVEL = 6;
+    private static final int MAX_INFLATION_RATIO = 1032; // DEFLATE's upper bound
+    private static final int POOL_SIZE = 64;
+    private static final int MAX_POOLED_BUFFER_BYTES = 1024 * 1024; // larger payloads get a buffer of their own
+    private static final BlockingQueue<DeflateBuffer> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final CompressionCodec codec;
+    private final int minBytes;
+    private final int level;
+    private final TopicMeters meters;
+
+    private PayloadCompressor(CompressionCodec codec, int minBytes, int level, TopicMeters meters) {
+        this.codec = codec;
+        this.minBytes = minBytes;
+        this.level = level;
+        this.meters = meters;
+    }
+
+    /**
+     * @return a compressor for the write topic, or {@code null} when it sets no compression
+     */
+    static PayloadCompressor forBinding(TopicBinding binding, TopicMeters meters) {
+        if (binding.getCompression() == null) return null;
+        return new PayloadCompressor(binding.getCompression(),
+                binding.getCompressionMinBytes() == null ? DEFAULT_MIN_BYTES : binding.getCompressionMinBytes(),
+                binding.getCompressionLevel() == null ? DEFAULT_LEVEL : binding.getCompressionLevel(),
+                meters);
+    }
+
+    /**
+     * @return the bytes to send: compressed, with the encoding headers added, or {@code data} itself
+     */
+    byte[] compress(Headers headers, byte[] data) {
+        if (data.length < minBytes || data.length == 0) return data;
+
+        long start = System.nanoTime();
+        DeflateBuffer deflate = DEFLATERS.poll();
+        if (deflate == null) deflate = new DeflateBuffer();
+        byte[] compressed;
+        try {
+            compressed = deflate.deflate(data, level);
+        } finally {
+            deflate.deflater.reset();
+            if (!DEFLATERS.offer(deflate)) deflate.deflater.end();
+        }
+        meters.recordCompressDuration(System.nanoTime() - start);
+        if (compressed == null) return data; // would not get smaller
+
+        meters.recordCompressionRatio((double) data.length / compressed.length);
+        headers.put(ENCODING_HEADER, codec.getHeaderValue());
+        headers.put(UNCOMPRESSED_SIZE_HEADER, String.valueOf(data.length));
+        return compressed;
+    }
+
+    /**
+     * @param data the message's payload, or what its claim check was fetched as
+     * @param maxBytes the largest uncompressed size accepted
+     * @return {@code data}, decompressed when the message carries a {@code contentEncoding} header
+     * @throws IllegalStateException when the encoding is unknown, the announced size is too large, or the payload does
+     * not inflate to it
+     */
+    static byte[] decompress(Message msg, byte[] data, int maxBytes, TopicMeters meters) {
+        String encoding = msg.hasHeaders() ? msg.getHeaders().getFirst(ENCODING_HEADER) : null;
+        if (encoding == null) return data;
+        if (CompressionCodec.fromHeaderValue(encoding) != CompressionCodec.DEFLATE) {
+            throw new IllegalStateException("Unsupported " + ENCODING_HEADER + " " + encoding + " on topic " + meters.topic());
+        }
+
+        long start = System.nanoTime();
+        byte[] out;
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) inflater = new Inflater();
+        try {
+            int size = Integer.parseInt(msg.getHeaders().getFirst(UNCOMPRESSED_SIZE_HEADER));
+            if (size > maxBytes || size > (long) data.length * MAX_INFLATION_RATIO) {
+                throw new IllegalStateException("Compressed payload on topic " + meters.topic() + " announces " + size
+                        + " bytes from " + data.length + ", over the limit of " + Math.min(maxBytes, (long) data.length * MAX_INFLATION_RATIO));
+            }
+            out = new byte[size];
+            inflater.setInput(data);
+            int length = inflater.inflate(out);
+            if (length != out.length || !inflater.finished()) {
+                throw new IllegalStateException("Compressed payload on topic " + meters.topic() + " does not match its "
+                        + UNCOMPRESSED_SIZE_HEADER + " " + out.length);
+            }
+        } catch (DataFormatException | NumberFormatException | NegativeArraySizeException e) {
+            throw new IllegalStateException("Cannot decompress payload on topic " + meters.topic() + ": " + e.getMessage(), e);
+        } finally {
+            inflater.reset();
+            if (!INFLATERS.offer(inflater)) inflater.end();
+        }
+        meters.recordDecompressDuration(System.nanoTime() - start);
+        return out;
+    }
+
+    private static final class DeflateBuffer {
+        private final Deflater deflater = new Deflater(DEFAULT_LEVEL);
+        private byte[] buffer = new byte[DEFAULT_MIN_BYTES];
+
+        /**
+         * @return the compressed bytes, or {@code null} when they would not be smaller than {@code data}
+         */
+        private byte[] deflate(byte[] data, int level) {
+            byte[] out = buffer;
+            if (out.length < data.length) {
+                out = new byte[data.length];
+                if (data.length <= MAX_POOLED_BUFFER_BYTES) buffer = out;
+            }
+            deflater.setLevel(level);
+            deflater.setInput(data);
+            deflater.finish();
+            int length = deflater.deflate(out, 0, data.length - 1);
+            return deflater.finished() ? Arrays.copyOf(out, length) : null;
+        }
+    }
+}
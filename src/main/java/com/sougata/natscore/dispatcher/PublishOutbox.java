@@ -0,0 +1,381 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.OutboxConfig;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local log for one dispatcher's core publishes that cannot be handed to NATS, replayed in order once they can.
+ * <p>
+ * A publish goes to the outbox instead of its connection while that connection is not CONNECTED, when the client
+ * refuses it (reconnect buffer full, connection closed), or while earlier messages still wait in the outbox, so the
+ * dispatcher's messages keep their order. A replay thread publishes the backlog, at most
+ * {@code replayMessagesPerSecond}, and records how far it got in a {@code head} file, so a restart resumes where the
+ * previous run stopped. A message can be published twice if the process dies between its publish and that update.
+ * </p>
+ * <p>
+ * Records ({@code [length][crc32][record]}) are appended to memory-mapped segment files named by sequence number; on
+ * start the log is read back up to the first incomplete record. Segments the replay has moved past are deleted.
+ * Once {@code maxBytes} of segments exist, further publishes fail as they would without an outbox.
+ * </p>
+ * <p>
+ * The directory belongs to one outbox at a time: a lock on the {@code head} file is held until {@link #close}, and
+ * opening an outbox whose directory is locked by another one, in this process or another, fails.
+ * </p>
+ */
+@Slf4j
+final class PublishOutbox {
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String HEAD_FILE = "head";
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final String name;
+    private final Path directory;
+    private final NatsConnectionPool connectionPool;
+    private final NatsMetricsRecorder metricsRecorder;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final long replayIntervalNanos; // 0 when the replay is not paced
+    private final FileChannel headChannel; // holds the directory lock
+    private final MappedByteBuffer head; // [segment sequence][position] of the next record to replay
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>(); // head is the oldest
+    private final List<Path> undeleted = new ArrayList<>(); // compacted while the platform still refused to delete them
+    private final Object lock = new Object();
+    private final Thread replayer;
+    private volatile int size;
+    private volatile long bytes; // unreplayed record bytes
+    private long segmentFileBytes;
+    private long nextSequence;
+    private volatile boolean running = true;
+
+    PublishOutbox(String name, NatsConnectionPool connectionPool, NatsMetricsRecorder metricsRecorder, OutboxConfig config) throws IOException {
+        this.name = name;
+        this.directory = Files.createDirectories(Path.of(config.getDirectory(), name));
+        this.connectionPool = connectionPool;
+        this.metricsRecorder = metricsRecorder;
+        this.segmentBytes = config.getSegmentBytes();
+        this.maxBytes = config.getMaxBytes();
+        this.replayIntervalNanos = config.getReplayMessagesPerSecond() > 0
+                ? TimeUnit.SECONDS.toNanos(1) / config.getReplayMessagesPerSecond()
+                : 0;
+        this.headChannel = lock(directory.resolve(HEAD_FILE));
+        try {
+            this.head = headChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES + Integer.BYTES);
+            recover();
+        } catch (IOException | RuntimeException e) {
+            headChannel.close();
+            throw e;
+        }
+
+        metricsRecorder.registerOutbox(name, () -> size, () -> bytes);
+
+        this.replayer = new Thread(this::replay);
+        this.replayer.setName(name + "-outbox");
+        this.replayer.setDaemon(true);
+        this.replayer.start();
+        log.info("Publish outbox enabled for {} in {}: segmentBytes={}, maxBytes={}, {} message(s) waiting from a previous run",
+                name, directory, segmentBytes, maxBytes, size);
+    }
+
+    /**
+     * Publishes on {@code connection}, or appends to the outbox when that cannot happen now.
+     *
+     * @return {@code true} when the message was handed to the connection, {@code false} when it went to the outbox
+     * @throws IllegalStateException when the outbox is full
+     */
+    boolean publish(Connection connection, String subject, Headers headers, byte[] data) {
+        if (size == 0 && connection.getStatus() == Connection.Status.CONNECTED) {
+            try {
+                connection.publish(subject, headers, data);
+                return true;
+            } catch (IllegalStateException e) {
+                log.debug("Publish to {} refused ({}), writing it to the outbox", subject, e.getMessage());
+            }
+        }
+        append(MessageRecords.encode(subject, null, headers, data));
+        return false;
+    }
+
+    private void append(byte[] record) {
+        int length = RECORD_HEADER_BYTES + record.length;
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        synchronized (lock) {
+            Segment tail = segments.peekLast();
+            if (tail == null || tail.buffer.remaining() < length) {
+                tail = newSegment(length);
+            }
+            int position = tail.buffer.position();
+            tail.buffer.put(position + RECORD_HEADER_BYTES, record);
+            tail.buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+            tail.buffer.putInt(position, record.length); // last, so a torn write reads back as the end of the log
+            tail.buffer.position(position + length);
+            size++;
+            bytes += length;
+            lock.notifyAll();
+        }
+    }
+
+    private Segment newSegment(int minLength) {
+        int capacity = Math.max(segmentBytes, minLength);
+        if (segmentFileBytes + capacity > maxBytes) {
+            throw new IllegalStateException("Publish outbox for " + name + " is full (" + maxBytes + " bytes)");
+        }
+        Segment previous = segments.peekLast();
+        if (previous != null) previous.buffer.force();
+
+        long sequence = nextSequence++;
+        try {
+            Segment segment = new Segment(sequence, map(segmentFile(sequence), capacity));
+            if (segments.isEmpty()) setHead(segment);
+            segments.addLast(segment);
+            segmentFileBytes += capacity;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create outbox segment for " + name, e);
+        }
+    }
+
+    private void replay() {
+        long nextReplay = System.nanoTime();
+        while (running) {
+            try {
+                Message msg = peek();
+                if (msg == null) {
+                    synchronized (lock) {
+                        if (size == 0 && running) lock.wait(IDLE_POLL_MILLIS);
+                    }
+                    continue;
+                }
+                Connection connection = connectionPool.forSubject(msg.getSubject());
+                if (connection.getStatus() != Connection.Status.CONNECTED) {
+                    Thread.sleep(IDLE_POLL_MILLIS);
+                    continue;
+                }
+                if (replayIntervalNanos > 0) {
+                    long now = System.nanoTime();
+                    if (now < nextReplay) TimeUnit.NANOSECONDS.sleep(nextReplay - now);
+                    nextReplay = Math.max(nextReplay, now) + replayIntervalNanos;
+                }
+                try {
+                    connection.publish(msg);
+                } catch (IllegalStateException e) {
+                    Thread.sleep(IDLE_POLL_MILLIS); // disconnected again
+                    continue;
+                }
+                acknowledge();
+                metricsRecorder.forTopic(msg.getSubject()).incrementSent();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unhandled error replaying publish outbox for {}: ", name, e);
+            }
+        }
+    }
+
+    /**
+     * @return the oldest message still to replay, or {@code null} when there is none
+     */
+    private Message peek() {
+        synchronized (lock) {
+            while (true) {
+                Segment first = segments.peekFirst();
+                if (first == null) return null;
+                if (first.readPosition < first.buffer.position()) {
+                    int length = first.buffer.getInt(first.readPosition);
+                    byte[] record = new byte[length];
+                    first.buffer.get(first.readPosition + RECORD_HEADER_BYTES, record);
+                    try {
+                        return MessageRecords.decode(record);
+                    } catch (RuntimeException e) {
+                        log.error("Skipping unreadable record in publish outbox for {}: {}", name, e.getMessage());
+                        acknowledge();
+                        continue;
+                    }
+                }
+                if (first == segments.peekLast()) return null; // fully replayed, but still the one being appended to
+                compact();
+            }
+        }
+    }
+
+    private void acknowledge() {
+        synchronized (lock) {
+            Segment first = segments.peekFirst();
+            int length = RECORD_HEADER_BYTES + first.buffer.getInt(first.readPosition);
+            first.readPosition += length;
+            setHead(first);
+            size--;
+            bytes -= length;
+        }
+    }
+
+    /**
+     * Moves the head past the first segment, then deletes its file (or retries later, where the platform refuses
+     * while it is still mapped).
+     */
+    private void compact() {
+        Segment done = segments.pollFirst();
+        setHead(segments.peekFirst());
+        head.force();
+        segmentFileBytes -= done.buffer.capacity();
+        undeleted.add(segmentFile(done.sequence));
+        undeleted.removeIf(PublishOutbox::delete);
+    }
+
+    private void setHead(Segment segment) {
+        head.putLong(0, segment.sequence).putInt(Long.BYTES, segment.readPosition);
+    }
+
+    /**
+     * Reopens the segments left by a previous run, from the recorded head to the first incomplete record.
+     */
+    private void recover() throws IOException {
+        List<Long> sequences;
+        try (Stream<Path> files = Files.list(directory)) {
+            sequences = files.map(file -> file.getFileName().toString())
+                    .filter(file -> file.endsWith(SEGMENT_SUFFIX))
+                    .map(file -> Long.parseLong(file.substring(0, file.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        long headSequence = head.getLong(0);
+        int headPosition = head.getInt(Long.BYTES);
+        nextSequence = headSequence + 1;
+
+        for (long sequence : sequences) {
+            Path file = segmentFile(sequence);
+            if (sequence < headSequence) {
+                delete(file);
+                continue;
+            }
+            Segment segment = new Segment(sequence, map(file, Files.size(file)));
+            segment.readPosition = sequence == headSequence ? headPosition : 0;
+            int position = segment.readPosition;
+            int length;
+            while ((length = validRecordLength(segment.buffer, position)) >= 0) {
+                position += RECORD_HEADER_BYTES + length;
+                size++;
+                bytes += RECORD_HEADER_BYTES + length;
+            }
+            segment.buffer.position(position);
+            segments.addLast(segment);
+            segmentFileBytes += segment.buffer.capacity();
+            nextSequence = sequence + 1;
+        }
+        if (!segments.isEmpty()) setHead(segments.peekFirst());
+    }
+
+    /**
+     * @return the length of the record at {@code position}, or -1 when there is no complete one
+     */
+    private static int validRecordLength(MappedByteBuffer buffer, int position) {
+        if (buffer.capacity() - position < RECORD_HEADER_BYTES) return -1;
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_BYTES) return -1;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + RECORD_HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + Integer.BYTES) ? length : -1;
+    }
+
+    private Path segmentFile(long sequence) {
+        return directory.resolve(String.format("%019d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return the open channel of {@code file}, locked until it is closed
+     * @throws IllegalStateException when another outbox holds the lock
+     */
+    private FileChannel lock(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null; // held by another outbox in this process
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IllegalStateException("Publish outbox directory " + directory + " for " + name
+                    + " is in use by another outbox; give each instance its own nats.publish.outbox.directory");
+        }
+        return channel;
+    }
+
+    private static MappedByteBuffer map(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stops the replay and writes the log out; whatever was not replayed is picked up by the next start.
+     */
+    void close(long timeoutMillis) {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        try {
+            replayer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (replayer.isAlive()) replayer.interrupt();
+        synchronized (lock) {
+            segments.forEach(segment -> segment.buffer.force());
+            head.force();
+            if (size > 0) log.info("Publish outbox for {} keeps {} message(s) for the next start", name, size);
+        }
+        try {
+            headChannel.close(); // releases the directory lock
+        } catch (IOException e) {
+            log.warn("Cannot release publish outbox lock for {}: {}", name, e.getMessage());
+        }
+    }
+
+    private static final class Segment {
+        private final long sequence;
+        private final MappedByteBuffer buffer; // position is the write position
+        private int readPosition;
+
+        private Segment(long sequence, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.buffer = buffer;
+        }
+    }
+}
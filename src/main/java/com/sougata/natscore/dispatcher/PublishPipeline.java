@@ -0,0 +1,162 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.PublishPipelineConfig;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.nats.client.Connection;
+import io.nats.client.impl.Headers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous publish stage for one dispatcher.
+ * <p>
+ * Handler and supplier threads enqueue into a bounded queue and block when it is full. A single writer thread drains
+ * it in batches, publishes each message on its pooled connection and then flushes the outgoing buffer of every
+ * connection the batch used, once per batch. A batch ends
+ * after {@code maxBatchMessages} messages, {@code maxBatchBytes} payload bytes, or {@code maxDelayMicros} after its
+ * first message; with a delay of 0 the writer flushes whatever was already queued. With a {@link PublishOutbox}, messages
+ * its connection cannot take go there instead.
+ * </p>
+ */
+@Slf4j
+final class PublishPipeline {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private record Outgoing(Connection connection, TopicMeters meters, Headers headers, byte[] data) {}
+
+    private final String name;
+    private final NatsMetricsRecorder metricsRecorder;
+    private final BlockingQueue<Outgoing> queue;
+    private final int maxBatchMessages;
+    private final long maxBatchBytes;
+    private final long maxDelayNanos;
+    private final PublishOutbox outbox; // null unless the dispatcher has one
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    PublishPipeline(String name, NatsMetricsRecorder metricsRecorder, PublishPipelineConfig config, PublishOutbox outbox) {
+        this.name = name;
+        this.outbox = outbox;
+        this.metricsRecorder = metricsRecorder;
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.maxBatchMessages = Math.max(1, config.getMaxBatchMessages());
+        this.maxBatchBytes = Math.max(1, config.getMaxBatchBytes());
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, config.getMaxDelayMicros()));
+
+        metricsRecorder.registerPublishQueueDepth(name, queue::size);
+
+        this.writer = new Thread(this::runWriter);
+        this.writer.setName(name + "-publisher");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        log.info("Async publishing enabled for {}: queueCapacity={}, maxBatchMessages={}, maxBatchBytes={}, maxDelayMicros={}",
+                name, config.getQueueCapacity(), maxBatchMessages, maxBatchBytes, config.getMaxDelayMicros());
+    }
+
+    void enqueue(Connection connection, TopicMeters meters, Headers headers, byte[] data) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Publish pipeline for " + name + " is closed");
+        }
+        queue.put(new Outgoing(connection, meters, headers, data));
+    }
+
+    private void runWriter() {
+        List<Outgoing> batch = new ArrayList<>(maxBatchMessages);
+        while (running || !queue.isEmpty()) {
+            try {
+                Outgoing first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                fillBatch(first, batch);
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                log.warn("Publisher for {} interrupted with {} message(s) still queued", name, queue.size());
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void fillBatch(Outgoing first, List<Outgoing> batch) throws InterruptedException {
+        batch.add(first);
+        long bytes = first.data().length;
+        long deadline = System.nanoTime() + maxDelayNanos;
+
+        while (batch.size() < maxBatchMessages && bytes < maxBatchBytes) {
+            Outgoing next = queue.poll();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+                next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) break;
+            }
+            batch.add(next);
+            bytes += next.data().length;
+        }
+    }
+
+    private void publishBatch(List<Outgoing> batch) {
+        Connection used = null;
+        Set<Connection> alsoUsed = null; // only when the batch spans several pooled connections
+        for (Outgoing outgoing : batch) {
+            Connection connection = outgoing.connection();
+            if (used == null) {
+                used = connection;
+            } else if (connection != used) {
+                if (alsoUsed == null) alsoUsed = new HashSet<>();
+                alsoUsed.add(connection);
+            }
+            try {
+                long start = System.nanoTime();
+                boolean published = true;
+                if (outbox != null) {
+                    published = outbox.publish(connection, outgoing.meters().topic(), outgoing.headers(), outgoing.data());
+                } else {
+                    connection.publish(outgoing.meters().topic(), outgoing.headers(), outgoing.data());
+                }
+                outgoing.meters().recordPublishDuration(System.nanoTime() - start);
+                if (published) outgoing.meters().incrementSent();
+            } catch (Exception e) {
+                log.error("Error while publishing message to topic {}", outgoing.meters().topic(), e);
+                outgoing.meters().incrementError();
+            }
+        }
+        flushBuffer(used);
+        if (alsoUsed != null) alsoUsed.forEach(this::flushBuffer);
+        metricsRecorder.recordPublishBatch(name, batch.size());
+    }
+
+    private void flushBuffer(Connection connection) {
+        try {
+            connection.flushBuffer();
+        } catch (Exception e) {
+            log.warn("Failed to flush outgoing buffer for {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Stops accepting messages and waits for the writer to publish what is already queued.
+     */
+    void close(long timeoutMillis) {
+        running = false;
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Publisher for {} did not drain in {} ms, {} message(s) dropped.", name, timeoutMillis, queue.size());
+            writer.interrupt();
+        }
+    }
+}
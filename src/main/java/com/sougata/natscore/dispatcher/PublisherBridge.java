@@ -0,0 +1,93 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.model.PayloadWrapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscribes a supplier dispatcher to a {@link com.sougata.natscore.contract.PayloadPublisher}.
+ * <p>
+ * Requests {@code prefetch} items up front and buffers them in a queue of that size, which a supplier thread drains
+ * through {@link #next()}. Demand is replenished in chunks of half the prefetch once that many items have been
+ * published, so the producer never gets further ahead of the publish path than the prefetch allows.
+ * </p>
+ */
+@Slf4j
+final class PublisherBridge implements Flow.Subscriber<PayloadWrapper<byte[]>> {
+    private static final long POLL_MILLIS = 100;
+
+    private final String name;
+    private final int prefetch;
+    private final int replenishAt;
+    private final BlockingQueue<PayloadWrapper<byte[]>> queue;
+    private volatile Flow.Subscription subscription;
+    private volatile boolean done;
+    private int consumedSinceRequest; // only touched by the draining thread
+
+    PublisherBridge(String name, int prefetch) {
+        this.name = name;
+        this.prefetch = prefetch;
+        this.replenishAt = Math.max(1, prefetch / 2);
+        this.queue = new ArrayBlockingQueue<>(prefetch);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(PayloadWrapper<byte[]> item) {
+        if (!queue.offer(item)) {
+            log.error("PayloadPublisher {} sent more items than requested, dropping one", name);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.error("PayloadPublisher {} failed: ", name, throwable);
+        done = true;
+    }
+
+    @Override
+    public void onComplete() {
+        log.info("PayloadPublisher {} completed", name);
+        done = true;
+    }
+
+    /**
+     * @return the next item, or {@code null} once the publisher has terminated and everything it sent was taken
+     */
+    PayloadWrapper<byte[]> next() throws InterruptedException {
+        while (true) {
+            PayloadWrapper<byte[]> item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (item != null) return item;
+            if (done && queue.isEmpty()) return null;
+        }
+    }
+
+    /**
+     * Called after an item from {@link #next()} has been handed to the publish path.
+     */
+    void published() {
+        if (++consumedSinceRequest >= replenishAt) {
+            subscription.request(consumedSinceRequest);
+            consumedSinceRequest = 0;
+        }
+    }
+
+    void cancel() {
+        Flow.Subscription current = subscription;
+        if (current != null) current.cancel();
+        done = true;
+    }
+}
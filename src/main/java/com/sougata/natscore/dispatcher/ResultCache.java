@@ -0,0 +1,335 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.ResultCacheBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.model.PayloadHeader;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Responses of one FUNCTION binding, keyed by a 128-bit hash of the binding's message type and the request payload.
+ * <p>
+ * Eviction follows W-TinyLFU: a new response goes to a small LRU window (1% of {@code maxEntries}). What falls out
+ * of the window only enters the main space, a segmented LRU of probation and protected (read again) entries, when a
+ * count-min sketch of recent request frequencies says it is asked for more often than the main space's LRU victim,
+ * so one-off requests do not push hot ones out. Responses also expire {@code ttlMs} after they were stored, and
+ * victims are evicted while cached payloads exceed {@code maxBytes}.
+ * </p>
+ */
+@Slf4j
+final class ResultCache {
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+    static final long DEFAULT_TTL_MS = TimeUnit.SECONDS.toMillis(60);
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    record Key(long high, long low) {}
+
+    private final long seed; // from the message type
+    private final int maxMain;
+    private final int maxWindow;
+    private final int maxProtected;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final TopicMeters meters;
+    private final FrequencySketch sketch;
+    private final HashMap<Key, Node> nodes;
+    private final Segment window = new Segment();
+    private final Segment probation = new Segment();
+    private final Segment protectedSegment = new Segment();
+    private volatile int size;
+    private volatile long bytes;
+
+    ResultCache(String messageType, int maxEntries, long ttlMillis, long maxBytes, TopicMeters meters) {
+        this.seed = mix(messageType == null ? 0 : messageType.hashCode());
+        this.maxWindow = Math.max(1, maxEntries / 100);
+        this.maxMain = maxEntries - maxWindow;
+        this.maxProtected = (int) (maxMain * 0.8);
+        this.maxBytes = maxBytes;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.meters = meters;
+        this.sketch = new FrequencySketch(maxEntries);
+        this.nodes = new HashMap<>();
+    }
+
+    /**
+     * @return a cache for the binding, or {@code null} when it has no resultCache section
+     */
+    static ResultCache forBinding(TopicBinding binding, NatsMetricsRecorder metricsRecorder) {
+        ResultCacheBinding config = binding.getResultCache();
+        if (config == null) return null;
+
+        int maxEntries = config.getMaxEntries() == null ? DEFAULT_MAX_ENTRIES : config.getMaxEntries();
+        long ttlMillis = config.getTtlMs() == null ? DEFAULT_TTL_MS : config.getTtlMs();
+        long maxBytes = config.getMaxBytes() == null ? Long.MAX_VALUE : config.getMaxBytes();
+        ResultCache cache = new ResultCache(binding.getMessageType(), maxEntries, ttlMillis, maxBytes, metricsRecorder.forTopic(binding.getTopicName()));
+        metricsRecorder.registerResultCache(binding.getTopicName(), () -> cache.size, () -> cache.bytes);
+        log.info("Topic [{}] caches up to {} response(s) for {} ms{}", binding.getTopicName(), maxEntries, ttlMillis,
+                config.getMaxBytes() == null ? "" : ", " + maxBytes + " bytes");
+        return cache;
+    }
+
+    Key keyOf(byte[] payload) {
+        long h1 = seed;
+        long h2 = seed ^ 0x9e3779b97f4a7c15L ^ payload.length;
+        int i = 0;
+        for (; i + Long.BYTES <= payload.length; i += Long.BYTES) {
+            long k = (long) LONGS.get(payload, i);
+            h1 = Long.rotateLeft(h1 ^ (k * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+            h2 = Long.rotateLeft(h2 + k, 27) * 0x9e3779b97f4a7c15L + h1;
+        }
+        long tail = 0;
+        for (int shift = 0; i < payload.length; i++, shift += 8) {
+            tail |= (payload[i] & 0xffL) << shift;
+        }
+        h1 ^= tail * 0x87c37b91114253d5L;
+        h2 += tail;
+        return new Key(mix(h1 ^ h2), mix(h2 + h1));
+    }
+
+    /**
+     * @return the cached response, stamped with a fresh creation time and, when the handler had answered with the
+     * request's correlation id, with this request's; {@code null} on a miss
+     */
+    PayloadWrapper<byte[]> get(Key key, String requestCorrelationId) {
+        PayloadWrapper<byte[]> response;
+        boolean carriesRequestId;
+        synchronized (this) {
+            sketch.increment(key.low());
+            Node node = nodes.get(key);
+            if (node != null && System.nanoTime() - node.expiresAt >= 0) {
+                evict(node);
+                node = null;
+            }
+            if (node == null) {
+                meters.incrementResultCacheMiss();
+                return null;
+            }
+            onHit(node);
+            response = node.response;
+            carriesRequestId = node.carriesRequestId;
+        }
+        meters.incrementResultCacheHit();
+        return response.toBuilder()
+                .setCorrelationId(carriesRequestId ? requestCorrelationId : UUID.randomUUID().toString())
+                .setCreationTimestamp(String.valueOf(System.currentTimeMillis()))
+                .build();
+    }
+
+    void put(Key key, String requestCorrelationId, PayloadWrapper<byte[]> response) {
+        int weight = response.getPayload().length;
+        if (weight > maxBytes) return;
+        boolean carriesRequestId = requestCorrelationId != null
+                && requestCorrelationId.equals(response.getHeader(PayloadHeader.CORRELATION_ID));
+        long expiresAt = System.nanoTime() + ttlNanos;
+
+        synchronized (this) {
+            Node node = nodes.get(key);
+            if (node != null) { // stored by a concurrent miss on the same request
+                bytes += weight - node.weight;
+                node.response = response;
+                node.carriesRequestId = carriesRequestId;
+                node.weight = weight;
+                node.expiresAt = expiresAt;
+            } else {
+                node = new Node(key, response, carriesRequestId, weight, expiresAt);
+                nodes.put(key, node);
+                window.addLast(node);
+                size++;
+                bytes += weight;
+                while (window.size > maxWindow) {
+                    admit(window.first());
+                }
+            }
+            while (bytes > maxBytes) {
+                evict(victim());
+            }
+            expireOldest(window);
+            expireOldest(probation);
+            expireOldest(protectedSegment);
+        }
+    }
+
+    private void onHit(Node node) {
+        if (node.segment == probation) {
+            probation.remove(node);
+            protectedSegment.addLast(node);
+            if (protectedSegment.size > maxProtected) {
+                Node demoted = protectedSegment.first();
+                protectedSegment.remove(demoted);
+                probation.addLast(demoted);
+            }
+        } else {
+            node.segment.moveToLast(node);
+        }
+    }
+
+    /**
+     * Moves the window's LRU entry into the main space, if it is wanted more than what it would displace.
+     */
+    private void admit(Node candidate) {
+        window.remove(candidate);
+        if (probation.size + protectedSegment.size < maxMain) {
+            probation.addLast(candidate);
+            return;
+        }
+        Node victim = probation.size > 0 ? probation.first() : protectedSegment.first();
+        if (victim != null && sketch.frequency(candidate.key.low()) > sketch.frequency(victim.key.low())) {
+            evict(victim);
+            probation.addLast(candidate);
+        } else {
+            evict(candidate);
+        }
+    }
+
+    private Node victim() {
+        if (probation.size > 0) return probation.first();
+        if (protectedSegment.size > 0) return protectedSegment.first();
+        return window.first();
+    }
+
+    private void expireOldest(Segment segment) {
+        long now = System.nanoTime();
+        Node node;
+        while ((node = segment.first()) != null && now - node.expiresAt >= 0) {
+            evict(node);
+        }
+    }
+
+    private void evict(Node node) {
+        if (node.segment != null) node.segment.remove(node);
+        nodes.remove(node.key);
+        size--;
+        bytes -= node.weight;
+        meters.incrementResultCacheEvicted();
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer.
+     */
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static final class Node {
+        private final Key key;
+        private PayloadWrapper<byte[]> response;
+        private boolean carriesRequestId;
+        private int weight;
+        private long expiresAt;
+        private Segment segment; // null once evicted, or while moving between segments
+        private Node prev;
+        private Node next;
+
+        private Node(Key key, PayloadWrapper<byte[]> response, boolean carriesRequestId, int weight, long expiresAt) {
+            this.key = key;
+            this.response = response;
+            this.carriesRequestId = carriesRequestId;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * LRU list: first is the least recently used.
+     */
+    private static final class Segment {
+        private final Node head = new Node(null, null, false, 0, 0); // sentinel
+        private int size;
+
+        private Segment() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        private Node first() {
+            return head.next == head ? null : head.next;
+        }
+
+        private void addLast(Node node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            node.segment = this;
+            size++;
+        }
+
+        private void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            node.segment = null;
+            size--;
+        }
+
+        private void moveToLast(Node node) {
+            remove(node);
+            addLast(node);
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, four per key, halved every {@code 10 * maxEntries} increments so old
+     * popularity fades.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long HALVE_MASK = 0x7777777777777777L;
+
+        private final long[] table; // 16 counters per long
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int maxEntries) {
+            this.table = new long[Integer.highestOneBit(Math.max(1, maxEntries - 1)) << 1];
+            this.mask = table.length - 1;
+            this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maxEntries);
+        }
+
+        private void increment(long hash) {
+            boolean added = false;
+            for (long s : SEEDS) {
+                long h = mix(hash + s);
+                int index = (int) (h >>> 32) & mask;
+                int shift = ((int) h & 15) << 2;
+                if (((table[index] >>> shift) & 0xfL) != 0xfL) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & HALVE_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int frequency(long hash) {
+            int frequency = 15;
+            for (long s : SEEDS) {
+                long h = mix(hash + s);
+                int index = (int) (h >>> 32) & mask;
+                int shift = ((int) h & 15) << 2;
+                frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 0xfL));
+            }
+            return frequency;
+        }
+    }
+}
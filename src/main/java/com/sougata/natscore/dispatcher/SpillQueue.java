@@ -0,0 +1,148 @@
+package com.sougata.natscore.dispatcher;
+
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FIFO of messages kept in memory-mapped segment files, used by {@link OverflowStage} for the SPILL policy.
+ * <p>
+ * Records are appended to the tail segment and read from the head one; a new segment is mapped when the tail is
+ * full, and drained segments are recycled rather than unmapped, since a mapped file cannot be deleted on every
+ * platform. Only subject, reply subject, headers and data are kept, so a spilled message comes back as a plain
+ * {@link NatsMessage}. Nothing survives a restart: the files are deleted on {@link #close()}. Not thread-safe; the
+ * stage serialises access.
+ * </p>
+ */
+final class SpillQueue implements AutoCloseable {
+    private final Path directory;
+    private final String filePrefix;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>(); // head is the oldest
+    private final ArrayDeque<Segment> free = new ArrayDeque<>();
+    private final List<Path> files = new ArrayList<>();
+    private volatile int size;
+    private volatile long bytes; // mapped bytes held by unread records
+    private int nextFile;
+
+    SpillQueue(Path directory, String filePrefix, int segmentBytes, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.filePrefix = filePrefix;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return {@code false} when the record would take the queue past {@code maxBytes}
+     */
+    boolean offer(Message msg) throws IOException {
+        byte[] record = MessageRecords.encode(msg);
+        int length = Integer.BYTES + record.length;
+        if (bytes + length > maxBytes && size > 0) return false;
+
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.buffer.remaining() < length) {
+            tail = segment(length);
+            segments.addLast(tail);
+        }
+        tail.buffer.putInt(record.length).put(record);
+        size++;
+        bytes += length;
+        return true;
+    }
+
+    /**
+     * @return the oldest message, or {@code null} when empty
+     */
+    Message poll() {
+        Segment head = segments.peekFirst();
+        while (head != null && head.readPosition == head.buffer.position()) {
+            if (head == segments.peekLast()) { // empty: rewind the only segment instead of mapping another
+                head.reset();
+                return null;
+            }
+            recycle(segments.pollFirst());
+            head = segments.peekFirst();
+        }
+        if (head == null) return null;
+
+        MappedByteBuffer buffer = head.buffer;
+        int length = buffer.getInt(head.readPosition);
+        byte[] record = new byte[length];
+        buffer.get(head.readPosition + Integer.BYTES, record);
+        head.readPosition += Integer.BYTES + length;
+        size--;
+        bytes -= Integer.BYTES + length;
+        return MessageRecords.decode(record);
+    }
+
+    private Segment segment(int minLength) throws IOException {
+        if (minLength <= segmentBytes && !free.isEmpty()) return free.pollFirst();
+
+        Path file = directory.resolve(filePrefix + "-" + nextFile++ + ".seg");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            files.add(file);
+            return new Segment(channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, minLength)));
+        }
+    }
+
+    private void recycle(Segment segment) {
+        segment.reset();
+        if (segment.buffer.capacity() == segmentBytes) free.addLast(segment); // oversized ones are left to the GC
+    }
+
+    /**
+     * Drops everything still queued and deletes the segment files (on exit, where the platform refuses while mapped).
+     */
+    @Override
+    public void close() {
+        segments.clear();
+        free.clear();
+        size = 0;
+        bytes = 0;
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+        files.clear();
+    }
+
+    private static final class Segment {
+        private final MappedByteBuffer buffer; // position is the write position
+        private int readPosition;
+
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void reset() {
+            buffer.clear();
+            readPosition = 0;
+        }
+    }
+}
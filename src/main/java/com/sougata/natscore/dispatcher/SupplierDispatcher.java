@@ -1,67 +1,103 @@
 package com.sougata.natscore.dispatcher;
 
+import com.sougata.natscore.client.NatsConnectionPool;
 import com.sougata.natscore.config.EventComponentConfig;
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.PublishPipelineConfig;
 import com.sougata.natscore.config.SupplierExecutorConfig;
+import com.sougata.natscore.contract.PayloadPublisher;
 import com.sougata.natscore.contract.PayloadSupplier;
 import com.sougata.natscore.enums.HandlerType;
 import com.sougata.natscore.model.PayloadWrapper;
 import com.sougata.natscore.monitoring.NatsMetricsRecorder;
-import io.nats.client.Connection;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Slf4j
 @Component
 @DependsOn("connection")
 public class SupplierDispatcher extends AbstractDispatcher {
-    private final ExecutorService executor;
+    static final int DEFAULT_PREFETCH = 256;
 
-    public SupplierDispatcher(Connection connection, EventComponentConfig config, NatsMetricsRecorder metricsRecorder, SupplierExecutorConfig executorConfig) {
-        super(connection, metricsRecorder);
-        this.executor = Executors.newFixedThreadPool(
-                executorConfig.getThreadPoolSize(),
-                r -> {
-                    Thread t = new Thread(r);
-                    t.setName("SupplierDispatcher-" + UUID.randomUUID());
-                    t.setDaemon(true);
-                    return t;
-                }
-        );
+    private final SupplierRunner runner;
+    private final List<PublisherBridge> publisherBridges = new CopyOnWriteArrayList<>();
+
+    public SupplierDispatcher(NatsConnectionPool connectionPool, EventComponentConfig config, NatsMetricsRecorder metricsRecorder, SupplierExecutorConfig executorConfig, PublishPipelineConfig publishConfig) {
+        super(connectionPool, metricsRecorder, publishConfig);
+        this.runner = new SupplierRunner("SupplierDispatcher", executorConfig);
 
         this.writeTopicMap = new HashMap<>();
 
         config.getComponents().stream()
                 .filter(entry -> HandlerType.SUPPLIER.equals(entry.getHandlerType()))
                 .flatMap(entry -> entry.getWriteTopics().stream())
-                .forEach(binding -> writeTopicMap.put(binding.getMessageType(), binding.getTopicName()));
+                .forEach(this::addWriteTopic);
     }
 
     public void register(PayloadSupplier handler) {
+        register(handler, null);
+    }
+
+    /**
+     * @param entry the supplier's component entry, for its schedule, executorType and rateLimit; {@code null} runs
+     *              it in an unpaced loop on the platform thread pool
+     */
+    public void register(PayloadSupplier handler, EventComponentEntry entry) {
+        String name = handler.getClass().getSimpleName();
+        SupplierThrottle throttle = SupplierThrottle.forSupplier(name, entry, connectionPool, metricsRecorder);
         log.info("Bean of type PayloadSupplier: {} registered", handler.getClass().getName());
-        this.executor.submit(() -> runSupplierLoop(handler));
+        runner.start(name, entry, () -> supplyOnce(handler, throttle));
+    }
+
+    /**
+     * Subscribes to a reactive supplier and publishes what it emits from a supplier thread, requesting more only as
+     * items are accepted by the publish path. Schedules don't apply; the entry's executorType, rateLimit and prefetch do.
+     */
+    public void registerPublisher(PayloadPublisher publisher, EventComponentEntry entry) {
+        String name = publisher.getClass().getSimpleName();
+        SupplierThrottle throttle = SupplierThrottle.forSupplier(name, entry, connectionPool, metricsRecorder);
+        int prefetch = entry == null || entry.getPrefetch() == null ? DEFAULT_PREFETCH : entry.getPrefetch();
+        PublisherBridge bridge = new PublisherBridge(name, prefetch);
+        publisherBridges.add(bridge);
+
+        runner.startLoop(name, entry, () -> {
+            PayloadWrapper<byte[]> payload = bridge.next();
+            if (payload == null) return false;
+            if (throttle != null) throttle.acquire(payload.getPayload().length);
+            publish(payload);
+            bridge.published();
+            return true;
+        });
+        publisher.subscribe(bridge);
+        log.info("Bean of type PayloadPublisher: {} registered, prefetch={}", publisher.getClass().getName(), prefetch);
     }
 
-    private void runSupplierLoop(PayloadSupplier handler) {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                PayloadWrapper<byte[]> payload = handler.supply();
-                if (payload != null) publish(payload);
+    private boolean supplyOnce(PayloadSupplier handler, SupplierThrottle throttle) throws InterruptedException {
+        try {
+            PayloadWrapper<byte[]> payload = handler.supply();
+            if (payload == null) return true;
+            if (throttle != null) throttle.acquire(payload.getPayload().length);
+            publish(payload);
 
-            } catch (Exception e) {
-                log.error("Error in PayloadSupplier: {}.supply(): ", handler.getClass().getName(), e);
-            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error in PayloadSupplier: {}.supply(): ", handler.getClass().getName(), e);
         }
+        return true;
     }
 
     @PreDestroy
+    @Override
     public void shutdown() {
-        executor.shutdownNow();
+        publisherBridges.forEach(PublisherBridge::cancel);
+        runner.shutdown();
+        super.shutdown();
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,15 @@
 package com.sougata.natscore.dispatcher;
 
+import com.sougata.natscore.client.NatsConnectionPool;
 import com.sougata.natscore.config.EventComponentConfig;
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.PublishPipelineConfig;
 import com.sougata.natscore.config.SupplierExecutorConfig;
 import com.sougata.natscore.contract.PayloadSupplierFanout;
 import com.sougata.natscore.enums.HandlerType;
+import com.sougata.natscore.enums.SupplierMode;
 import com.sougata.natscore.model.PayloadWrapper;
 import com.sougata.natscore.monitoring.NatsMetricsRecorder;
-import io.nats.client.Connection;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.DependsOn;
@@ -15,60 +18,75 @@ import org.springframework.util.CollectionUtils;
 
 import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Slf4j
 @Component
 @DependsOn("connection")
 public class SupplierFanoutDispatcher extends AbstractDispatcher {
-    private final ExecutorService executor;
+    private final SupplierRunner runner;
 
-    public SupplierFanoutDispatcher(Connection connection, EventComponentConfig config, NatsMetricsRecorder metricsRecorder, SupplierExecutorConfig executorConfig) {
-        super(connection, metricsRecorder);
+    public SupplierFanoutDispatcher(NatsConnectionPool connectionPool, EventComponentConfig config, NatsMetricsRecorder metricsRecorder, SupplierExecutorConfig executorConfig, PublishPipelineConfig publishConfig) {
+        super(connectionPool, metricsRecorder, publishConfig);
 
-        this.executor = Executors.newFixedThreadPool(
-                executorConfig.getThreadPoolSize(),
-                r -> {
-                    Thread t = new Thread(r);
-                    t.setName("SupplierFanoutDispatcher-" + UUID.randomUUID());
-                    t.setDaemon(true);
-                    return t;
-                }
-        );
+        this.runner = new SupplierRunner("SupplierFanoutDispatcher", executorConfig);
 
         this.writeTopicMap = new HashMap<>();
 
         config.getComponents().stream()
                 .filter(entry -> HandlerType.SUPPLIER_FANOUT.equals(entry.getHandlerType()))
                 .flatMap(entry -> entry.getWriteTopics().stream())
-                .forEach(binding -> writeTopicMap.put(binding.getMessageType(), binding.getTopicName()));
+                .forEach(this::addWriteTopic);
     }
 
     public void register(PayloadSupplierFanout handler) {
+        register(handler, null);
+    }
+
+    /**
+     * @param entry the supplier's component entry, for its schedule, executorType and rateLimit (applied per published
+     *              payload); {@code null} runs it in an unpaced loop on the platform thread pool
+     */
+    public void register(PayloadSupplierFanout handler, EventComponentEntry entry) {
+        String name = handler.getClass().getSimpleName();
+        SupplierThrottle throttle = SupplierThrottle.forSupplier(name, entry, connectionPool, metricsRecorder);
         log.info("Bean of type PayloadSupplier: {} registered", handler.getClass().getName());
-        executor.submit(() -> runFanoutSupplierLoop(handler));
+        boolean scheduled = entry != null && entry.getSchedule() != null && entry.getSchedule().getMode() != null
+                && entry.getSchedule().getMode() != SupplierMode.LOOP;
+        runner.start(name, entry, () -> supplyOnce(handler, throttle, scheduled));
     }
 
-    private void runFanoutSupplierLoop(PayloadSupplierFanout supplier) {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                List<PayloadWrapper<byte[]>> payloads = supplier.supply();
-                if (CollectionUtils.isEmpty(payloads)) {
-                    log.info("SupplierFanout: {} returned no payloads. Nothing to dispatch.", payloads.getClass().getName());
-                    return;
+    /**
+     * @param scheduled whether the supplier runs on a schedule, where an empty result is routine rather than the end
+     * @return {@code false} when the supplier returned nothing, which ends a LOOP supplier
+     */
+    private boolean supplyOnce(PayloadSupplierFanout supplier, SupplierThrottle throttle, boolean scheduled) throws InterruptedException {
+        try {
+            List<PayloadWrapper<byte[]>> payloads = supplier.supply();
+            if (CollectionUtils.isEmpty(payloads)) {
+                if (scheduled) {
+                    log.debug("SupplierFanout: {} returned no payloads. Nothing to dispatch.", supplier.getClass().getName());
+                } else {
+                    log.info("SupplierFanout: {} returned no payloads. Nothing to dispatch.", supplier.getClass().getName());
                 }
+                return false;
+            }
 
-                payloads.forEach(this::publish);
-            } catch (Exception e) {
-                log.error("SupplierFanout error ({}):", supplier.getClass().getSimpleName(), e);
+            for (PayloadWrapper<byte[]> payload : payloads) {
+                if (throttle != null) throttle.acquire(payload.getPayload().length);
+                publish(payload);
             }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("SupplierFanout error ({}):", supplier.getClass().getSimpleName(), e);
         }
+        return true;
     }
 
     @PreDestroy
+    @Override
     public void shutdown() {
-        executor.shutdownNow();
+        runner.shutdown();
+        super.shutdown();
     }
 }
@@ -0,0 +1,193 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.SupplierExecutorConfig;
+import com.sougata.natscore.config.SupplierSchedule;
+import com.sougata.natscore.enums.ExecutorType;
+import com.sougata.natscore.enums.SupplierMode;
+import com.sougata.natscore.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when and on which thread a supplier dispatcher calls its suppliers.
+ * <p>
+ * {@link SupplierMode#LOOP} keeps a thread per supplier calling it back to back: one of the
+ * {@code nats.supplier.thread-pool-size} platform threads, or its own virtual thread when the entry's executorType is
+ * VIRTUAL. The scheduled modes fire from a small shared scheduler ({@code nats.supplier.scheduler-pool-size}) instead
+ * and run each call on the scheduler thread, or on a fresh virtual thread when VIRTUAL; a call that would overlap the
+ * previous one of the same supplier is skipped.
+ * </p>
+ */
+@Slf4j
+final class SupplierRunner {
+
+    /**
+     * One call of a supplier plus publishing its result.
+     */
+    @FunctionalInterface
+    interface Tick {
+        /**
+         * @return {@code false} to end a LOOP supplier
+         */
+        boolean run() throws InterruptedException;
+    }
+
+    private final ExecutorService loopPool;
+    private final ScheduledExecutorService scheduler;
+    private ExecutorService virtualExecutor; // created on first VIRTUAL supplier, null when virtual threads are unavailable
+    private boolean virtualResolved;
+    private volatile boolean running = true;
+
+    SupplierRunner(String name, SupplierExecutorConfig config) {
+        this.loopPool = Executors.newFixedThreadPool(config.getThreadPoolSize(), r -> {
+            Thread t = new Thread(r);
+            t.setName(name + "-" + UUID.randomUUID());
+            t.setDaemon(true);
+            return t;
+        });
+
+        AtomicInteger schedulerIndex = new AtomicInteger();
+        ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(Math.max(1, config.getSchedulerPoolSize()), r -> {
+            Thread t = new Thread(r);
+            t.setName(name + "-scheduler-" + schedulerIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        scheduled.setRemoveOnCancelPolicy(true);
+        this.scheduler = scheduled;
+    }
+
+    void start(String supplierName, EventComponentEntry entry, Tick tick) {
+        SupplierSchedule schedule = entry == null ? null : entry.getSchedule();
+        SupplierMode mode = schedule == null || schedule.getMode() == null ? SupplierMode.LOOP : schedule.getMode();
+        boolean virtual = entry != null && entry.getExecutorType() == ExecutorType.VIRTUAL && virtualExecutor() != null;
+
+        if (mode == SupplierMode.LOOP) {
+            startLoop(supplierName, entry, tick);
+            return;
+        }
+
+        Runnable fire = once(supplierName, tick, virtual);
+        long initialDelayMs = schedule.getInitialDelayMs() == null ? 0 : schedule.getInitialDelayMs();
+        switch (mode) {
+            case FIXED_RATE -> scheduler.scheduleAtFixedRate(fire, initialDelayMs, schedule.getPeriodMs(), TimeUnit.MILLISECONDS);
+            case FIXED_DELAY -> scheduler.scheduleWithFixedDelay(fire, initialDelayMs, schedule.getPeriodMs(), TimeUnit.MILLISECONDS);
+            case CRON -> {
+                ZoneId zone = schedule.getZone() == null ? ZoneId.systemDefault() : ZoneId.of(schedule.getZone());
+                scheduleCron(CronExpression.parse(schedule.getCron()), zone, fire, null);
+            }
+            default -> throw new IllegalStateException("Unsupported supplier mode: " + mode);
+        }
+        log.info("Supplier {} scheduled {} ({}), calls on {} threads", supplierName, mode,
+                mode == SupplierMode.CRON ? schedule.getCron() : schedule.getPeriodMs() + " ms", virtual ? "virtual" : "scheduler");
+    }
+
+    /**
+     * Runs {@code tick} back to back on a thread of its own, ignoring any schedule on the entry.
+     */
+    void startLoop(String supplierName, EventComponentEntry entry, Tick tick) {
+        boolean virtual = entry != null && entry.getExecutorType() == ExecutorType.VIRTUAL && virtualExecutor() != null;
+        (virtual ? virtualExecutor : loopPool).submit(() -> loop(supplierName, tick));
+        log.info("Supplier {} running in a loop on a {} thread", supplierName, virtual ? "virtual" : "platform");
+    }
+
+    private synchronized ExecutorService virtualExecutor() {
+        if (!virtualResolved) {
+            virtualExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor().orElse(null);
+            virtualResolved = true;
+        }
+        return virtualExecutor;
+    }
+
+    private void loop(String supplierName, Tick tick) {
+        try {
+            while (running && !Thread.currentThread().isInterrupted()) {
+                if (!tick.run()) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Supplier {} loop stopped", supplierName);
+    }
+
+    /**
+     * A scheduled call that never overlaps the previous one and never throws, since either would end the schedule.
+     */
+    private Runnable once(String supplierName, Tick tick, boolean virtual) {
+        AtomicBoolean busy = new AtomicBoolean();
+        Runnable call = () -> {
+            try {
+                tick.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Unhandled error in scheduled supplier {}: ", supplierName, e);
+            } finally {
+                busy.set(false);
+            }
+        };
+        return () -> {
+            if (!busy.compareAndSet(false, true)) {
+                log.debug("Supplier {} is still running, skipping this trigger", supplierName);
+                return;
+            }
+            if (virtual) {
+                try {
+                    virtualExecutor.execute(call);
+                } catch (RuntimeException e) {
+                    busy.set(false);
+                }
+            } else {
+                call.run();
+            }
+        };
+    }
+
+    /**
+     * Schedules the trigger after {@code previous}, not after now: an executor that wakes a little early would
+     * otherwise find the same trigger still ahead and fire it twice.
+     */
+    private void scheduleCron(CronExpression cron, ZoneId zone, Runnable fire, ZonedDateTime previous) {
+        if (!running) return;
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        ZonedDateTime next = nextTrigger(cron, previous, now);
+        if (next == null) return;
+
+        long delayNanos = Duration.between(now, next).toNanos();
+        long delayMillis = (delayNanos + 999_999) / 1_000_000;
+        scheduler.schedule(() -> {
+            fire.run();
+            scheduleCron(cron, zone, fire, next);
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param previous the trigger that just fired, or {@code null} for the first one
+     * @return the first trigger after both {@code previous} and {@code now}, or {@code null} when the expression has none
+     */
+    static ZonedDateTime nextTrigger(CronExpression cron, ZonedDateTime previous, ZonedDateTime now) {
+        return cron.next(previous != null && previous.isAfter(now) ? previous : now);
+    }
+
+    void shutdown() {
+        running = false;
+        scheduler.shutdownNow();
+        loopPool.shutdownNow();
+        synchronized (this) {
+            if (virtualExecutor != null) virtualExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.SupplierRateLimit;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.util.OutgoingBuffers;
+import io.nats.client.Connection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces one supplier's publishes.
+ * <p>
+ * Message and byte limits are token buckets holding up to one second of their rate. A publish takes its tokens up
+ * front, possibly going into debt for a large payload, and waits until the debt is paid back, so the long-run rate
+ * stays at the limit while short bursts go straight through.
+ * </p>
+ * <p>
+ * In adaptive mode the supplier also pauses, with a doubling backoff up to {@code maxPauseMs}, while the outgoing
+ * buffer of the pooled connection its write topics publish on holds more than {@code maxPendingBytes}, or while that
+ * connection is disconnected and its reconnect buffer is more than {@code maxReconnectBufferRatio} full (or has no
+ * finite size). Connections carrying only other topics don't pause it. Time spent waiting is recorded as
+ * {@code nats.supplier.throttled}, tagged {@code rate} or {@code backpressure}.
+ * </p>
+ */
+@Slf4j
+final class SupplierThrottle {
+    static final long DEFAULT_MAX_PENDING_BYTES = 4L * 1024 * 1024;
+    static final double DEFAULT_MAX_RECONNECT_BUFFER_RATIO = 0.5;
+    static final long DEFAULT_MAX_PAUSE_MS = 100;
+    private static final long MIN_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String supplierName;
+    private final List<Connection> connections; // the ones the supplier's write topics publish on
+    private final NatsMetricsRecorder metricsRecorder;
+    private final Bucket messages; // null when not limited
+    private final Bucket bytes; // null when not limited
+    private final boolean adaptive;
+    private final long maxPendingBytes;
+    private final double maxReconnectBufferRatio;
+    private final long maxPauseNanos;
+
+    private SupplierThrottle(String supplierName, List<Connection> connections, NatsMetricsRecorder metricsRecorder, SupplierRateLimit limit) {
+        this.supplierName = supplierName;
+        this.connections = connections;
+        this.metricsRecorder = metricsRecorder;
+        this.messages = limit.getMessagesPerSecond() == null ? null : new Bucket(limit.getMessagesPerSecond());
+        this.bytes = limit.getBytesPerSecond() == null ? null : new Bucket(limit.getBytesPerSecond());
+        this.adaptive = limit.isAdaptive();
+        this.maxPendingBytes = limit.getMaxPendingBytes() == null ? DEFAULT_MAX_PENDING_BYTES : limit.getMaxPendingBytes();
+        this.maxReconnectBufferRatio = limit.getMaxReconnectBufferRatio() == null ? DEFAULT_MAX_RECONNECT_BUFFER_RATIO : limit.getMaxReconnectBufferRatio();
+        this.maxPauseNanos = TimeUnit.MILLISECONDS.toNanos(limit.getMaxPauseMs() == null ? DEFAULT_MAX_PAUSE_MS : limit.getMaxPauseMs());
+    }
+
+    /**
+     * @param entry the supplier's component entry, for its rateLimit and writeTopics; may be {@code null}
+     * @return a throttle for the supplier, or {@code null} when its entry sets no rate limit
+     */
+    static SupplierThrottle forSupplier(String supplierName, EventComponentEntry entry, NatsConnectionPool connectionPool, NatsMetricsRecorder metricsRecorder) {
+        SupplierRateLimit limit = entry == null ? null : entry.getRateLimit();
+        if (limit == null || (limit.getMessagesPerSecond() == null && limit.getBytesPerSecond() == null && !limit.isAdaptive())) {
+            return null;
+        }
+        List<Connection> connections = entry.getWriteTopics() == null ? List.of() : entry.getWriteTopics().stream()
+                .map(TopicBinding::getTopicName)
+                .map(connectionPool::forSubject)
+                .distinct()
+                .toList();
+        log.info("Supplier {} rate limited: messagesPerSecond={}, bytesPerSecond={}, adaptive={}",
+                supplierName, limit.getMessagesPerSecond(), limit.getBytesPerSecond(), limit.isAdaptive());
+        return new SupplierThrottle(supplierName, connections, metricsRecorder, limit);
+    }
+
+    /**
+     * Blocks until one message of {@code payloadBytes} may be published.
+     */
+    void acquire(int payloadBytes) throws InterruptedException {
+        long now = System.nanoTime();
+        long waitNanos = 0;
+        if (messages != null) waitNanos = messages.take(1, now);
+        if (bytes != null) waitNanos = Math.max(waitNanos, bytes.take(payloadBytes, now));
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            metricsRecorder.recordSupplierThrottled(supplierName, "rate", waitNanos);
+        }
+
+        if (adaptive) awaitBuffersBelowThreshold();
+    }
+
+    private void awaitBuffersBelowThreshold() throws InterruptedException {
+        long pause = MIN_PAUSE_NANOS;
+        long start = 0;
+        while (overloaded()) {
+            if (start == 0) start = System.nanoTime();
+            TimeUnit.NANOSECONDS.sleep(pause);
+            pause = Math.min(pause * 2, maxPauseNanos);
+        }
+        if (start != 0) {
+            metricsRecorder.recordSupplierThrottled(supplierName, "backpressure", System.nanoTime() - start);
+        }
+    }
+
+    private boolean overloaded() {
+        for (Connection connection : connections) {
+            if (overloaded(connection)) return true;
+        }
+        return false;
+    }
+
+    private boolean overloaded(Connection connection) {
+        Connection.Status status = connection.getStatus();
+        if (status == null) return false;
+        return switch (status) {
+            case CONNECTED -> OutgoingBuffers.pendingBytes(connection) > maxPendingBytes;
+            case DISCONNECTED, RECONNECTING -> {
+                long capacity = connection.getOptions().getReconnectBufferSize();
+                yield capacity <= 0 || OutgoingBuffers.reconnectBufferedBytes(connection) > capacity * maxReconnectBufferRatio;
+            }
+            default -> false; // CLOSED or still connecting: let publish report the failure instead of waiting forever
+        };
+    }
+
+    /**
+     * Token bucket with a capacity of one second's refill.
+     */
+    static final class Bucket {
+        private final double perNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        Bucket(double perSecond) {
+            this.perNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = perSecond;
+            this.tokens = perSecond;
+        }
+
+        /**
+         * @return how long to wait before the taken tokens are covered
+         */
+        synchronized long take(double cost, long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * perNano);
+            lastRefill = now;
+            tokens -= cost;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / perNano);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.ExecutorType;
+import com.sougata.natscore.enums.OrderingMode;
+import com.sougata.natscore.model.PayloadHeader;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.util.VirtualThreads;
+import io.nats.client.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded hand-off from a binding's NATS dispatcher thread to a pool of workers.
+ * <p>
+ * Unordered: at most {@code concurrency} messages are processed at once. With {@link ExecutorType#PLATFORM} up to
+ * {@code queueCapacity} more wait for a free worker; with {@link ExecutorType#VIRTUAL} every message gets its own
+ * virtual thread, so nothing queues here. Messages on the same topic may complete out of order.
+ * </p>
+ * <p>
+ * {@link OrderingMode#KEYED}: {@code concurrency} single-threaded lanes, each with its own queue of
+ * {@code queueCapacity}. The ordering key header is hashed to pick the lane, so messages with the same key are
+ * processed in arrival order while different keys run in parallel. Messages without the header are spread round-robin.
+ * </p>
+ * Once the target lane is full, {@link #submit(Message, Runnable)} blocks the NATS dispatcher thread, and further
+ * messages back up in the subscription's pending buffer as they would without a stage.
+ */
+@Slf4j
+final class WorkerStage {
+    static final int DEFAULT_QUEUE_CAPACITY_PER_WORKER = 64;
+
+    private final String topicName;
+    private final String orderingKeyHeader; // null when unordered
+    private final Lane[] lanes;
+    private final AtomicInteger unkeyedCounter = new AtomicInteger();
+
+    private WorkerStage(String topicName, String orderingKeyHeader, Lane[] lanes) {
+        this.topicName = topicName;
+        this.orderingKeyHeader = orderingKeyHeader;
+        this.lanes = lanes;
+    }
+
+    /**
+     * @return a stage for the binding, or {@code null} when it should keep running on the NATS dispatcher thread
+     */
+    static WorkerStage forBinding(TopicBinding binding, NatsMetricsRecorder metricsRecorder) {
+        int concurrency = binding.getConcurrency() == null ? 1 : binding.getConcurrency();
+        if (concurrency <= 1) return null;
+
+        WorkerStage stage = binding.getOrdering() == OrderingMode.KEYED
+                ? keyed(binding, concurrency)
+                : unordered(binding, concurrency);
+
+        for (int i = 0; i < stage.lanes.length; i++) {
+            Lane lane = stage.lanes[i];
+            metricsRecorder.registerWorkerQueueDepth(binding.getTopicName(), i, lane::depth);
+        }
+        return stage;
+    }
+
+    private static WorkerStage unordered(TopicBinding binding, int concurrency) {
+        String topicName = binding.getTopicName();
+        if (binding.getExecutorType() == ExecutorType.VIRTUAL) {
+            ExecutorService virtual = VirtualThreads.newVirtualThreadPerTaskExecutor().orElse(null);
+            if (virtual != null) {
+                log.info("Topic [{}] handled on virtual threads, concurrency={}", topicName, concurrency);
+                return new WorkerStage(topicName, null, new Lane[]{new Lane(virtual, concurrency, 0)});
+            }
+        }
+
+        int queueCapacity = binding.getQueueCapacity() == null
+                ? concurrency * DEFAULT_QUEUE_CAPACITY_PER_WORKER
+                : binding.getQueueCapacity();
+        ExecutorService pool = newPool(concurrency, platformThreadFactory("Worker-" + topicName + "-"));
+        log.info("Topic [{}] handled on {} platform worker(s), queueCapacity={}", topicName, concurrency, queueCapacity);
+        return new WorkerStage(topicName, null, new Lane[]{new Lane(pool, concurrency, queueCapacity)});
+    }
+
+    private static WorkerStage keyed(TopicBinding binding, int laneCount) {
+        String topicName = binding.getTopicName();
+        String keyHeader = StringUtils.isEmpty(binding.getOrderingKeyHeader())
+                ? PayloadHeader.CORRELATION_ID.getKey()
+                : binding.getOrderingKeyHeader();
+        int queueCapacity = binding.getQueueCapacity() == null
+                ? DEFAULT_QUEUE_CAPACITY_PER_WORKER
+                : binding.getQueueCapacity();
+
+        String namePrefix = "Lane-" + topicName + "-";
+        ThreadFactory threadFactory = binding.getExecutorType() == ExecutorType.VIRTUAL
+                ? VirtualThreads.newThreadFactory(namePrefix).orElseGet(() -> platformThreadFactory(namePrefix))
+                : platformThreadFactory(namePrefix);
+
+        Lane[] lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(newPool(1, threadFactory), 1, queueCapacity);
+        }
+        log.info("Topic [{}] handled on {} ordered lane(s) keyed by header [{}], queueCapacity={} per lane",
+                topicName, laneCount, keyHeader, queueCapacity);
+        return new WorkerStage(topicName, keyHeader, lanes);
+    }
+
+    void submit(Message msg, Runnable task) throws InterruptedException {
+        Lane lane = lanes.length == 1 ? lanes[0] : lanes[laneIndex(msg)];
+        lane.permits.acquire();
+        try {
+            lane.executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("Unhandled error in worker for topic {}: ", topicName, e);
+                } finally {
+                    lane.permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            lane.permits.release();
+            throw e;
+        }
+    }
+
+    private int laneIndex(Message msg) {
+        String key = msg.getHeaders() == null ? null : msg.getHeaders().getFirst(orderingKeyHeader);
+        if (key == null) {
+            return Math.floorMod(unkeyedCounter.getAndIncrement(), lanes.length);
+        }
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    void shutdown(long timeoutMillis) {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (Lane lane : lanes) {
+                long remaining = deadline - System.nanoTime();
+                if (!lane.executor.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                    log.warn("Worker stage for topic {} did not finish in {} ms, interrupting.", topicName, timeoutMillis);
+                    lane.executor.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Lane lane : lanes) {
+                lane.executor.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newPool(int threads, ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    private static ThreadFactory platformThreadFactory(String namePrefix) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r);
+            t.setName(namePrefix + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * An executor plus the permits bounding what it holds: running workers plus queued messages.
+     */
+    private static final class Lane {
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final int capacity;
+
+        private Lane(ExecutorService executor, int workers, int queueCapacity) {
+            this.executor = executor;
+            this.capacity = workers + queueCapacity;
+            this.permits = new Semaphore(capacity);
+        }
+
+        private int depth() {
+            return capacity - permits.availablePermits();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.sougata.natscore.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum CompressionCodec {
+    DEFLATE("deflate"); // zlib format, readable by any zlib implementation
+
+    private final String headerValue; // value of the contentEncoding header
+
+    CompressionCodec(String headerValue) {
+        this.headerValue = headerValue;
+    }
+
+    /**
+     * @return the codec for a contentEncoding header value, or {@code null} when unknown
+     */
+    public static CompressionCodec fromHeaderValue(String headerValue) {
+        for (CompressionCodec codec : values()) {
+            if (codec.headerValue.equals(headerValue)) return codec;
+        }
+        return null;
+    }
+}
@@ -2,6 +2,7 @@ package com.sougata.natscore.enums;
 
 public enum HandlerType {
     CONSUMER,
+    CONSUMER_BATCH,
     SUPPLIER,
     SUPPLIER_FANOUT,
     FUNCTION,
@@ -0,0 +1,7 @@
+package com.sougata.natscore.enums;
+
+public enum JetStreamAckPolicy {
+    EXPLICIT,
+    ALL;
+
+}
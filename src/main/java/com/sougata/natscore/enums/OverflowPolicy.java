@@ -0,0 +1,9 @@
+package com.sougata.natscore.enums;
+
+public enum OverflowPolicy {
+    BLOCK,
+    DROP_OLDEST,
+    DROP_NEWEST,
+    SPILL;
+
+}
@@ -0,0 +1,9 @@
+package com.sougata.natscore.enums;
+
+public enum SupplierMode {
+    LOOP,
+    FIXED_RATE,
+    FIXED_DELAY,
+    CRON;
+
+}
@@ -1,36 +1,64 @@
 package com.sougata.natscore.health;
 
+import com.sougata.natscore.client.NatsConnectionPool;
 import io.nats.client.Connection;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UP only while every pooled connection is CONNECTED; details list each connection's state.
+ */
 @Component
 public class NatsHealthIndicator implements HealthIndicator {
 
-    private final Connection natsConnection;
+    private final NatsConnectionPool connectionPool;
 
-    public NatsHealthIndicator(Connection natsConnection) {
-        this.natsConnection = natsConnection;
+    public NatsHealthIndicator(NatsConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
     }
 
     @Override
     public Health health() {
-        Health.Builder builder;
+        if (connectionPool == null) {
+            return Health.down().withDetail("status", "NATS connection pool is null").build();
+        }
+
+        List<Connection> connections = connectionPool.connections();
+        List<Map<String, Object>> details = new ArrayList<>(connections.size());
+        int connected = 0;
+        for (Connection connection : connections) {
+            Map<String, Object> detail = describe(connection);
+            if ("CONNECTED".equals(detail.get("status"))) connected++;
+            details.add(detail);
+        }
+
+        Health.Builder builder = connected == connections.size() ? Health.up() : Health.down();
+        builder.withDetail("connected", connected + "/" + connections.size());
+        if (connections.size() == 1) {
+            builder.withDetails(details.get(0));
+        } else {
+            builder.withDetail("connections", details);
+        }
+        return builder.build();
+    }
 
+    private Map<String, Object> describe(Connection natsConnection) {
+        Map<String, Object> detail = new LinkedHashMap<>();
         if (natsConnection == null || natsConnection.getStatus() == null) {
-            builder = Health.down().withDetail("status", "NATS connection is null or unknown");
+            detail.put("status", "NATS connection is null or unknown");
         } else if (natsConnection.getStatus() == Connection.Status.CONNECTED) {
-            builder = Health.up()
-                    .withDetail("status", "CONNECTED")
-                    .withDetail("url", natsConnection.getConnectedUrl())
-                    .withDetail("serverId", natsConnection.getServerInfo().getServerId());
+            detail.put("status", "CONNECTED");
+            detail.put("url", natsConnection.getConnectedUrl());
+            detail.put("serverId", natsConnection.getServerInfo().getServerId());
         } else {
-            builder = Health.down()
-                    .withDetail("status", natsConnection.getStatus().toString());
+            detail.put("status", natsConnection.getStatus().toString());
         }
-
-        return builder.build();
+        return detail;
     }
 }
-
@@ -0,0 +1,127 @@
+package com.sougata.natscore.model;
+
+import com.google.protobuf.CodedInputStream;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link PayloadWrapper} over an incoming {@link Message}, used on the receive path instead of copying
+ * headers into a map for every delivery.
+ * <p>
+ * Headers are read from the NATS message only when asked for; a missing correlation id or creation timestamp is
+ * generated on first access and then kept, matching what {@link PayloadWrapper.Builder#build()} fills in.
+ * {@link #getPayload()} is the message's own byte array (or its decompressed copy), and {@link #asReadOnlyByteBuffer()} /
+ * {@link #newCodedInputStream()} give views over it without copying. {@link #getPayloadHeaders()} builds the map on
+ * first use and, as for any wrapper, returns that same mutable map, which {@link #getHeader} then reads from.
+ * The lazily resolved values are published safely, so a view may be handed to another thread (batch flushes,
+ * subscribers, caches); changing the header map while other threads read it is not.
+ * </p>
+ */
+public final class NatsMessageView extends PayloadWrapper<byte[]> {
+    private final Message message;
+    private final String payloadType;
+    private volatile String correlationId;
+    private volatile String creationTs;
+    private volatile Map<PayloadHeader, String> headerMap;
+
+    private NatsMessageView(Message message, String payloadType, byte[] payload) {
+        super(payload, null);
+        this.message = message;
+        this.payloadType = payloadType;
+    }
+
+    /**
+     * @param payloadType the binding's messageType; incoming messages are typed by the topic they arrive on
+     */
+    public static NatsMessageView of(Message message, String payloadType) {
+        return of(message, payloadType, message.getData());
+    }
+
+    /**
+     * @param payload the message's data as the handler should see it, e.g. decompressed
+     */
+    public static NatsMessageView of(Message message, String payloadType, byte[] payload) {
+        if (payload == null) {
+            throw new IllegalStateException("Payload must be set.");
+        }
+        if (payloadType == null || payloadType.isBlank()) {
+            throw new IllegalStateException("Missing required header: " + PayloadHeader.PAYLOAD_TYPE.name());
+        }
+        return new NatsMessageView(message, payloadType, payload);
+    }
+
+    public Message getNatsMessage() {
+        return message;
+    }
+
+    public ByteBuffer asReadOnlyByteBuffer() {
+        return ByteBuffer.wrap(getPayload()).asReadOnlyBuffer();
+    }
+
+    public CodedInputStream newCodedInputStream() {
+        return CodedInputStream.newInstance(getPayload());
+    }
+
+    @Override
+    public String getHeader(PayloadHeader header) {
+        Map<PayloadHeader, String> map = headerMap;
+        if (map != null) return map.get(header);
+        return switch (header) {
+            case PAYLOAD_TYPE -> payloadType;
+            case CORRELATION_ID -> {
+                String value = correlationId;
+                yield value != null ? value : resolveCorrelationId();
+            }
+            case CREATION_TS -> {
+                String value = creationTs;
+                yield value != null ? value : resolveCreationTs();
+            }
+        };
+    }
+
+    @Override
+    public Map<PayloadHeader, String> getPayloadHeaders() {
+        Map<PayloadHeader, String> map = headerMap;
+        if (map != null) return map;
+        synchronized (this) {
+            if (headerMap == null) {
+                map = new EnumMap<>(PayloadHeader.class);
+                for (PayloadHeader header : PayloadHeader.values()) {
+                    String value = getHeader(header);
+                    if (value != null) map.put(header, value);
+                }
+                headerMap = map;
+            }
+            return headerMap;
+        }
+    }
+
+    /**
+     * Generated values are resolved under the lock, so every thread sees the same one.
+     */
+    private synchronized String resolveCorrelationId() {
+        if (correlationId == null) {
+            String value = rawHeader(PayloadHeader.CORRELATION_ID);
+            correlationId = value != null ? value : UUID.randomUUID().toString();
+        }
+        return correlationId;
+    }
+
+    private synchronized String resolveCreationTs() {
+        if (creationTs == null) {
+            String value = rawHeader(PayloadHeader.CREATION_TS);
+            creationTs = value != null ? value : String.valueOf(System.currentTimeMillis());
+        }
+        return creationTs;
+    }
+
+    private String rawHeader(PayloadHeader header) {
+        Headers headers = message.getHeaders();
+        return headers == null ? null : headers.getFirst(header.getKey());
+    }
+}
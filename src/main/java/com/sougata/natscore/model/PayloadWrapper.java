@@ -5,11 +5,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * A payload plus its {@link PayloadHeader}s. {@link Builder#build()} hands its header map over without copying;
+ * {@link #getPayloadHeaders()} copies it on first use, so changes to the returned map stay with this wrapper.
+ */
 public class PayloadWrapper<T> {
     private final T payload;
-    private final Map<PayloadHeader, String> payloadHeaders;
+    private final Map<PayloadHeader, String> payloadHeaders; // may still be shared with the builder
+    private volatile Map<PayloadHeader, String> ownHeaders; // this wrapper's copy, once getPayloadHeaders() was called
 
-    private PayloadWrapper(T payload, Map<PayloadHeader, String> payloadHeaders) {
+    PayloadWrapper(T payload, Map<PayloadHeader, String> payloadHeaders) {
         this.payload = payload;
         this.payloadHeaders = payloadHeaders;
     }
@@ -19,11 +24,17 @@ public class PayloadWrapper<T> {
     }
 
     public Map<PayloadHeader, String> getPayloadHeaders() {
-        return this.payloadHeaders;
+        Map<PayloadHeader, String> own = ownHeaders;
+        if (own != null) return own;
+        synchronized (this) {
+            if (ownHeaders == null) ownHeaders = new EnumMap<>(payloadHeaders);
+            return ownHeaders;
+        }
     }
 
     public String getHeader(PayloadHeader header) {
-        return this.payloadHeaders.get(header);
+        Map<PayloadHeader, String> own = ownHeaders;
+        return (own != null ? own : this.payloadHeaders).get(header);
     }
 
     public static <T> Builder<T> newBuilder() {
@@ -40,13 +51,17 @@ public class PayloadWrapper<T> {
         );
 
         private T payload;
-        private final Map<PayloadHeader, String> headers = new EnumMap<>(PayloadHeader.class);
+        private Map<PayloadHeader, String> headers = new EnumMap<>(PayloadHeader.class);
+        private boolean headersShared; // true once build() handed the map to a wrapper; copied before the next change
 
         public Builder() {}
 
         public Builder(PayloadWrapper<T> wrapper) {
-            this.payload = wrapper.payload;
-            this.headers.putAll(wrapper.payloadHeaders);
+            this.payload = wrapper.getPayload();
+            for (PayloadHeader header : PayloadHeader.values()) {
+                String value = wrapper.getHeader(header);
+                if (value != null) this.headers.put(header, value);
+            }
         }
 
         public Builder<T> setPayload(T payload) {
@@ -55,26 +70,40 @@ public class PayloadWrapper<T> {
         }
 
         public Builder<T> setPayloadType(String payloadType) {
-            headers.put(PayloadHeader.PAYLOAD_TYPE, payloadType);
+            mutableHeaders().put(PayloadHeader.PAYLOAD_TYPE, payloadType);
             return this;
         }
 
         public Builder<T> setCorrelationId(String correlationId) {
-            headers.put(PayloadHeader.CORRELATION_ID, correlationId);
+            mutableHeaders().put(PayloadHeader.CORRELATION_ID, correlationId);
             return this;
         }
 
         public Builder<T> setCreationTimestamp(String creationTs) {
-            headers.put(PayloadHeader.CREATION_TS, creationTs);
+            mutableHeaders().put(PayloadHeader.CREATION_TS, creationTs);
             return this;
         }
 
         public Builder<T> addHeader(PayloadHeader key, String value) {
-            headers.put(key, value);
+            mutableHeaders().put(key, value);
             return this;
         }
 
         public PayloadWrapper<T> build() {
+            PayloadWrapper<T> wrapper = validateAndComplete(payload, mutableHeaders());
+            headersShared = true;
+            return wrapper;
+        }
+
+        private Map<PayloadHeader, String> mutableHeaders() {
+            if (headersShared) {
+                headers = new EnumMap<>(headers);
+                headersShared = false;
+            }
+            return headers;
+        }
+
+        private static <T> PayloadWrapper<T> validateAndComplete(T payload, Map<PayloadHeader, String> headers) {
             if (payload == null) {
                 throw new IllegalStateException("Payload must be set.");
             }
@@ -87,10 +116,14 @@ public class PayloadWrapper<T> {
             }
 
             // Auto-fill optional-but-required headers
-            headers.putIfAbsent(PayloadHeader.CORRELATION_ID, UUID.randomUUID().toString());
-            headers.putIfAbsent(PayloadHeader.CREATION_TS, String.valueOf(System.currentTimeMillis()));
+            if (headers.get(PayloadHeader.CORRELATION_ID) == null) {
+                headers.put(PayloadHeader.CORRELATION_ID, UUID.randomUUID().toString());
+            }
+            if (headers.get(PayloadHeader.CREATION_TS) == null) {
+                headers.put(PayloadHeader.CREATION_TS, String.valueOf(System.currentTimeMillis()));
+            }
 
-            return new PayloadWrapper<>(payload, new EnumMap<>(headers));
+            return new PayloadWrapper<>(payload, headers);
         }
     }
 }
\ No newline at end of file
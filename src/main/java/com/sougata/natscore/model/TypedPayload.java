@@ -0,0 +1,48 @@
+package com.sougata.natscore.model;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+/**
+ * An incoming payload whose protobuf message is decoded on first access to {@link #getMessage()}.
+ * Headers and raw bytes are available without decoding, so handlers that filter or route on headers
+ * never pay for a parse. Not thread-safe; meant to be used by the thread handling the message.
+ */
+public final class TypedPayload<M extends Message> {
+    private final PayloadWrapper<byte[]> raw;
+    private final Parser<M> parser;
+    private M message;
+
+    public TypedPayload(PayloadWrapper<byte[]> raw, Parser<M> parser) {
+        this.raw = raw;
+        this.parser = parser;
+    }
+
+    public M getMessage() {
+        if (message == null) {
+            try {
+                message = parser.parseFrom(raw.getPayload());
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalStateException("Failed to decode payload of type " + raw.getHeader(PayloadHeader.PAYLOAD_TYPE), e);
+            }
+        }
+        return message;
+    }
+
+    public boolean isDecoded() {
+        return message != null;
+    }
+
+    public String getHeader(PayloadHeader header) {
+        return raw.getHeader(header);
+    }
+
+    public byte[] getBytes() {
+        return raw.getPayload();
+    }
+
+    public PayloadWrapper<byte[]> getRaw() {
+        return raw;
+    }
+}
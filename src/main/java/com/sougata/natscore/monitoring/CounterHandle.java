@@ -0,0 +1,35 @@
+package com.sougata.natscore.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registered counter, incremented either directly or, in striped mode, through a {@link LongAdder} whose total is
+ * pushed to the counter by {@link #flush()}.
+ */
+final class CounterHandle {
+    private final Counter counter;
+    private final LongAdder pending; // null when incrementing the counter directly
+
+    CounterHandle(Counter counter, boolean striped) {
+        this.counter = counter;
+        this.pending = striped ? new LongAdder() : null;
+    }
+
+    void increment() {
+        if (pending != null) pending.increment();
+        else counter.increment();
+    }
+
+    void increment(long amount) {
+        if (pending != null) pending.add(amount);
+        else counter.increment(amount);
+    }
+
+    void flush() {
+        if (pending == null) return;
+        long amount = pending.sumThenReset();
+        if (amount > 0) counter.increment(amount);
+    }
+}
@@ -0,0 +1,22 @@
+package com.sougata.natscore.monitoring;
+
+import io.nats.client.Connection;
+import io.nats.client.Consumer;
+import io.nats.client.impl.ErrorListenerLoggerImpl;
+
+/**
+ * The client's default logging error listener, plus counting slow-consumer events per topic.
+ */
+public class MetricsErrorListener extends ErrorListenerLoggerImpl {
+    private final NatsMetricsRecorder metricsRecorder;
+
+    public MetricsErrorListener(NatsMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    @Override
+    public void slowConsumerDetected(Connection conn, Consumer consumer) {
+        super.slowConsumerDetected(conn, consumer);
+        metricsRecorder.incrementSlowConsumer(consumer);
+    }
+}
@@ -1,47 +1,395 @@
 package com.sougata.natscore.monitoring;
 
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.MetricsDistributionConfig;
+import com.sougata.natscore.config.StripedMetricsConfig;
+import io.nats.client.Connection;
+import io.nats.client.Consumer;
+import io.nats.client.Statistics;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
+/**
+ * Records the library's Micrometer meters.
+ * <p>
+ * Per-message call sites resolve a {@link TopicMeters} once per binding through {@link #forTopic}; the
+ * {@code String}-topic methods remain for everything else. With {@code nats.metrics.striped.enabled} counters are
+ * accumulated in {@link java.util.concurrent.atomic.LongAdder}s and pushed to the registry every
+ * {@code flushIntervalMs}, and on shutdown.
+ * </p>
+ */
 @Slf4j
 @Component
 public class NatsMetricsRecorder {
-    @Value("${nats.metrics.enabled:true}")
-    private boolean enabled;
+    private final boolean enabled;
     private final MeterRegistry meterRegistry;
-    private final Map<String, Counter> counterCache = new ConcurrentHashMap<>();
+    private final MetricsDistributionConfig distribution;
+    private final Duration[] latencySlos;
+    private final boolean striped;
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService stripedFlusher; // null unless striped
+    private final Map<String, TopicMeters> topicMeters = new ConcurrentHashMap<>();
+    private final Map<Consumer, TopicMeters> subscriptions = new ConcurrentHashMap<>(); // NATS consumers compare by identity
+    private final Map<String, CounterHandle> counterCache = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaryCache = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timerCache = new ConcurrentHashMap<>();
 
     public NatsMetricsRecorder(MeterRegistry meterRegistry) {
+        this(meterRegistry, true, new MetricsDistributionConfig(), new StripedMetricsConfig());
+    }
+
+    @Autowired
+    public NatsMetricsRecorder(MeterRegistry meterRegistry, @Value("${nats.metrics.enabled:true}") boolean enabled,
+                               MetricsDistributionConfig distribution, StripedMetricsConfig stripedConfig) {
+        this.enabled = enabled;
         this.meterRegistry = meterRegistry;
+        this.distribution = distribution;
+        this.latencySlos = Arrays.stream(distribution.getLatencySloMs()).mapToObj(Duration::ofMillis).toArray(Duration[]::new);
+        this.striped = stripedConfig.isEnabled();
+        this.flushIntervalMs = Math.max(1, stripedConfig.getFlushIntervalMs());
+        this.stripedFlusher = striped
+                ? Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r);
+                    t.setName("NatsMetricsRecorder-flush");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+    }
+
+    /**
+     * Starts pushing striped counts every {@code flushIntervalMs}; a no-op unless striped. Called by the container,
+     * or by whoever constructs the recorder outside of it.
+     */
+    @PostConstruct
+    public void start() {
+        if (stripedFlusher == null) return;
+        stripedFlusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Striped metrics enabled, flushing every {} ms", flushIntervalMs);
+    }
+
+    /**
+     * The meters of {@code topic}; resolve once and keep the result on the message path.
+     */
+    public TopicMeters forTopic(String topic) {
+        TopicMeters meters = topicMeters.get(topic);
+        if (meters != null) return meters;
+        return topicMeters.computeIfAbsent(topic, t -> new TopicMeters(this, t, enabled));
+    }
+
+    /**
+     * Pushes striped counts to the registry; a no-op unless striped.
+     */
+    public void flush() {
+        if (striped) counterCache.values().forEach(CounterHandle::flush);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (stripedFlusher == null) return;
+        stripedFlusher.shutdownNow();
+        flush();
     }
 
     private String counterKey(String name, String topic) {
         return name + ":" + topic;
     }
 
-    private Counter getOrCreateCounter(String name, String topic) {
+    CounterHandle counter(String name, String topic) {
         return counterCache.computeIfAbsent(counterKey(name, topic), key ->
-            Counter.builder(name)
+            new CounterHandle(Counter.builder(name)
                    .tag("topic", topic)
+                   .register(meterRegistry), striped)
+        );
+    }
+
+    Timer timer(String name, String topic) {
+        return getOrCreateTimer(name, topic);
+    }
+
+    DistributionSummary payloadSummary(String name, String topic) {
+        return getOrCreatePayloadSummary(name, topic);
+    }
+
+    DistributionSummary summary(String name, String topic) {
+        return getOrCreateSummary(name, "topic", topic);
+    }
+
+    private DistributionSummary getOrCreateSummary(String name, String tagKey, String tagValue) {
+        return summaryCache.computeIfAbsent(name + ":" + tagValue, key ->
+            DistributionSummary.builder(name)
+                   .tag(tagKey, tagValue)
+                   .register(meterRegistry)
+        );
+    }
+
+    private Timer getOrCreateTimer(String name, String topic) {
+        return timerCache.computeIfAbsent(counterKey(name, topic), key ->
+            Timer.builder(name)
+                   .tag("topic", topic)
+                   .publishPercentiles(distribution.getPercentiles())
+                   .publishPercentileHistogram(distribution.isPercentileHistogram())
+                   .serviceLevelObjectives(latencySlos)
+                   .register(meterRegistry)
+        );
+    }
+
+    private DistributionSummary getOrCreatePayloadSummary(String name, String topic) {
+        return summaryCache.computeIfAbsent(counterKey(name, topic), key ->
+            DistributionSummary.builder(name)
+                   .tag("topic", topic)
+                   .baseUnit("bytes")
+                   .publishPercentiles(distribution.getPercentiles())
+                   .publishPercentileHistogram(distribution.isPercentileHistogram())
+                   .serviceLevelObjectives(distribution.getPayloadSloBytes())
                    .register(meterRegistry)
         );
     }
 
     public void incrementSent(String topic) {
-        if (enabled) getOrCreateCounter("nats.message.sent", topic).increment();
+        forTopic(topic).incrementSent();
     }
 
     public void incrementReceived(String topic) {
-        if (enabled) getOrCreateCounter("nats.message.received", topic).increment();
+        forTopic(topic).incrementReceived();
+    }
+
+    public void incrementReplied(String topic) {
+        forTopic(topic).incrementReplied();
     }
 
     public void incrementError(String topic) {
-        if (enabled) getOrCreateCounter("nats.message.error", topic).increment();
+        forTopic(topic).incrementError();
+    }
+
+    public void incrementError(String topic, int count) {
+        forTopic(topic).incrementError(count);
+    }
+
+    /**
+     * Time a handler spent on one message (or one batch for batch consumers).
+     */
+    public void recordHandlerDuration(String topic, long nanos) {
+        forTopic(topic).recordHandlerDuration(nanos);
+    }
+
+    /**
+     * Time spent handing one message to the client (or to the JetStream ack window).
+     */
+    public void recordPublishDuration(String topic, long nanos) {
+        forTopic(topic).recordPublishDuration(nanos);
+    }
+
+    /**
+     * Time from the producer's {@code creationTs} header to receipt; negative values from clock skew are dropped.
+     */
+    public void recordEndToEndLatency(String topic, long millis) {
+        forTopic(topic).recordEndToEndLatency(millis);
+    }
+
+    public void recordReceivedBytes(String topic, int bytes) {
+        forTopic(topic).recordReceivedBytes(bytes);
+    }
+
+    public void recordSentBytes(String topic, int bytes) {
+        forTopic(topic).recordSentBytes(bytes);
+    }
+
+    public void incrementNacked(String topic) {
+        forTopic(topic).incrementNacked();
+    }
+
+    public void incrementJetStreamRetry(String topic) {
+        if (enabled) counter("nats.jetstream.publish.retry", topic).increment();
+    }
+
+    /**
+     * Registers the subscription's pending messages and bytes as gauges and its dropped messages as a counter, all
+     * read from the client when scraped, and attributes its slow-consumer events to {@code topic}.
+     */
+    public void registerSubscription(String topic, Consumer consumer) {
+        subscriptions.put(consumer, forTopic(topic));
+        if (!enabled) return;
+        Gauge.builder("nats.subscription.pending.messages", consumer, Consumer::getPendingMessageCount)
+                .tag("topic", topic)
+                .register(meterRegistry);
+        Gauge.builder("nats.subscription.pending.bytes", consumer, Consumer::getPendingByteCount)
+                .tag("topic", topic)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        FunctionCounter.builder("nats.subscription.dropped", consumer, Consumer::getDroppedCount)
+                .tag("topic", topic)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Called by the connection's error listener when a subscription starts dropping messages.
+     */
+    public void incrementSlowConsumer(Consumer consumer) {
+        TopicMeters meters = subscriptions.get(consumer);
+        if (meters != null) meters.incrementSlowConsumer();
+        else if (enabled) counter("nats.subscription.slow.consumer", "unknown").increment();
+    }
+
+    /**
+     * Registers an overflow stage's buffered messages, in memory and spilled to disk, and the spill's size in bytes.
+     */
+    public void registerOverflow(String topic, Supplier<Number> inMemory, Supplier<Number> spilled, Supplier<Number> spilledBytes) {
+        if (!enabled) return;
+        Gauge.builder("nats.overflow.buffered", inMemory)
+                .tag("topic", topic)
+                .tag("tier", "memory")
+                .register(meterRegistry);
+        Gauge.builder("nats.overflow.buffered", spilled)
+                .tag("topic", topic)
+                .tag("tier", "spill")
+                .register(meterRegistry);
+        Gauge.builder("nats.overflow.spill.bytes", spilledBytes)
+                .tag("topic", topic)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void registerDedup(String topic, Supplier<Number> entries) {
+        if (enabled) Gauge.builder("nats.dedup.entries", entries)
+                .tag("topic", topic)
+                .register(meterRegistry);
+    }
+
+    public void registerResultCache(String topic, Supplier<Number> entries, Supplier<Number> bytes) {
+        if (!enabled) return;
+        Gauge.builder("nats.result.cache.entries", entries)
+                .tag("topic", topic)
+                .register(meterRegistry);
+        Gauge.builder("nats.result.cache.bytes", bytes)
+                .tag("topic", topic)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void registerWorkerQueueDepth(String topic, int lane, Supplier<Number> depth) {
+        if (enabled) Gauge.builder("nats.worker.queue.depth", depth)
+                .tag("topic", topic)
+                .tag("lane", String.valueOf(lane))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the pool's size, how many of its connections are connected, and client statistics summed over all of
+     * its connections.
+     */
+    public void registerConnectionPool(NatsConnectionPool pool) {
+        if (!enabled) return;
+        Gauge.builder("nats.connection.pool.size", pool, NatsConnectionPool::size).register(meterRegistry);
+        Gauge.builder("nats.connection.pool.connected", pool,
+                p -> p.connections().stream().filter(c -> c.getStatus() == Connection.Status.CONNECTED).count())
+                .register(meterRegistry);
+        registerPoolCounter("nats.connection.messages.in", pool, Statistics::getInMsgs);
+        registerPoolCounter("nats.connection.messages.out", pool, Statistics::getOutMsgs);
+        registerPoolCounter("nats.connection.bytes.in", pool, Statistics::getInBytes);
+        registerPoolCounter("nats.connection.bytes.out", pool, Statistics::getOutBytes);
+        registerPoolCounter("nats.connection.reconnects", pool, Statistics::getReconnects);
+        registerPoolCounter("nats.connection.dropped", pool, Statistics::getDroppedCount);
+    }
+
+    private void registerPoolCounter(String name, NatsConnectionPool pool, ToLongFunction<Statistics> stat) {
+        FunctionCounter.builder(name, pool,
+                p -> p.connections().stream().mapToLong(c -> stat.applyAsLong(c.getStatistics())).sum())
+                .register(meterRegistry);
+    }
+
+    public void registerPublishQueueDepth(String dispatcher, Supplier<Number> depth) {
+        if (enabled) Gauge.builder("nats.publish.queue.depth", depth)
+                .tag("dispatcher", dispatcher)
+                .register(meterRegistry);
+    }
+
+    public void registerOutbox(String dispatcher, Supplier<Number> messages, Supplier<Number> bytes) {
+        if (!enabled) return;
+        Gauge.builder("nats.outbox.backlog.messages", messages)
+                .tag("dispatcher", dispatcher)
+                .register(meterRegistry);
+        Gauge.builder("nats.outbox.backlog.bytes", bytes)
+                .tag("dispatcher", dispatcher)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void recordPublishBatch(String dispatcher, int size) {
+        if (enabled) getOrCreateSummary("nats.publish.batch.size", "dispatcher", dispatcher).record(size);
+    }
+
+    public void recordJetStreamFetch(String topic, int size) {
+        if (enabled) getOrCreateSummary("nats.jetstream.fetch.size", "topic", topic).record(size);
+    }
+
+    public void registerJetStreamPendingAcks(String topic, Supplier<Number> pending) {
+        if (enabled) Gauge.builder("nats.jetstream.publish.pending", pending)
+                .tag("topic", topic)
+                .register(meterRegistry);
+    }
+
+    public void recordJetStreamAckLatency(String topic, long nanos) {
+        if (enabled) getOrCreateTimer("nats.jetstream.publish.ack.latency", topic).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Round trip of a {@code NatsRequester} request, from publish to its reply arriving.
+     */
+    public void recordRequesterReply(String subject, long nanos) {
+        if (enabled) timerCache.computeIfAbsent("nats.requester.reply.duration:" + subject, key ->
+            Timer.builder("nats.requester.reply.duration")
+                   .tag("subject", subject)
+                   .publishPercentiles(distribution.getPercentiles())
+                   .publishPercentileHistogram(distribution.isPercentileHistogram())
+                   .serviceLevelObjectives(latencySlos)
+                   .register(meterRegistry)
+        ).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void incrementRequesterReplyError(String subject) {
+        if (enabled) counterCache.computeIfAbsent("nats.requester.reply.error:" + subject, key ->
+            new CounterHandle(Counter.builder("nats.requester.reply.error")
+                   .tag("subject", subject)
+                   .register(meterRegistry), striped)
+        ).increment();
+    }
+
+    /**
+     * Time the startup contract validation took, once per start.
+     */
+    public void recordContractValidation(long nanos) {
+        if (enabled) Timer.builder("nats.schema.validation.duration")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSupplierThrottled(String supplier, String reason, long nanos) {
+        if (enabled) timerCache.computeIfAbsent("nats.supplier.throttled:" + supplier + ":" + reason, key ->
+            Timer.builder("nats.supplier.throttled")
+                   .tag("supplier", supplier)
+                   .tag("reason", reason)
+                   .register(meterRegistry)
+        ).record(nanos, TimeUnit.NANOSECONDS);
     }
 }
\ No newline at end of file
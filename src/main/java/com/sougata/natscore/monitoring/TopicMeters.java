@@ -0,0 +1,230 @@
+package com.sougata.natscore.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-message meters of one topic, resolved once per binding with {@link NatsMetricsRecorder#forTopic} so the
+ * message path skips the name lookup. Each meter is registered on first use, so a topic only shows the meters that
+ * apply to it. All calls are no-ops when metrics are disabled.
+ */
+public final class TopicMeters {
+    private final NatsMetricsRecorder recorder;
+    private final String topic;
+    private final boolean enabled;
+
+    // Resolved lazily; a racing first use resolves the same cached meter, so plain volatile writes are enough.
+    private volatile CounterHandle received;
+    private volatile CounterHandle sent;
+    private volatile CounterHandle error;
+    private volatile CounterHandle replied;
+    private volatile CounterHandle nacked;
+    private volatile CounterHandle slowConsumer;
+    private volatile CounterHandle overflowDropped;
+    private volatile CounterHandle dedupHits;
+    private volatile CounterHandle dedupMisses;
+    private volatile CounterHandle dedupEvicted;
+    private volatile CounterHandle resultCacheHits;
+    private volatile CounterHandle resultCacheMisses;
+    private volatile CounterHandle resultCacheEvicted;
+    private volatile Timer handlerDuration;
+    private volatile Timer publishDuration;
+    private volatile Timer latency;
+    private volatile DistributionSummary receivedBytes;
+    private volatile DistributionSummary sentBytes;
+    private volatile Timer compressDuration;
+    private volatile Timer decompressDuration;
+    private volatile DistributionSummary compressionRatio;
+    private volatile Timer claimCheckStoreDuration;
+    private volatile Timer claimCheckFetchDuration;
+
+    TopicMeters(NatsMetricsRecorder recorder, String topic, boolean enabled) {
+        this.recorder = recorder;
+        this.topic = topic;
+        this.enabled = enabled;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    public void incrementReceived() {
+        if (!enabled) return;
+        CounterHandle h = received;
+        if (h == null) received = h = recorder.counter("nats.message.received", topic);
+        h.increment();
+    }
+
+    public void incrementSent() {
+        if (!enabled) return;
+        CounterHandle h = sent;
+        if (h == null) sent = h = recorder.counter("nats.message.sent", topic);
+        h.increment();
+    }
+
+    public void incrementError() {
+        incrementError(1);
+    }
+
+    public void incrementError(int count) {
+        if (!enabled) return;
+        CounterHandle h = error;
+        if (h == null) error = h = recorder.counter("nats.message.error", topic);
+        h.increment(count);
+    }
+
+    public void incrementReplied() {
+        if (!enabled) return;
+        CounterHandle h = replied;
+        if (h == null) replied = h = recorder.counter("nats.message.replied", topic);
+        h.increment();
+    }
+
+    public void incrementNacked() {
+        if (!enabled) return;
+        CounterHandle h = nacked;
+        if (h == null) nacked = h = recorder.counter("nats.message.nacked", topic);
+        h.increment();
+    }
+
+    public void incrementSlowConsumer() {
+        if (!enabled) return;
+        CounterHandle h = slowConsumer;
+        if (h == null) slowConsumer = h = recorder.counter("nats.subscription.slow.consumer", topic);
+        h.increment();
+    }
+
+    public void incrementOverflowDropped() {
+        incrementOverflowDropped(1);
+    }
+
+    public void incrementOverflowDropped(int count) {
+        if (!enabled) return;
+        CounterHandle h = overflowDropped;
+        if (h == null) overflowDropped = h = recorder.counter("nats.overflow.dropped", topic);
+        h.increment(count);
+    }
+
+    public void incrementDedupHit() {
+        if (!enabled) return;
+        CounterHandle h = dedupHits;
+        if (h == null) dedupHits = h = recorder.counter("nats.dedup.hits", topic);
+        h.increment();
+    }
+
+    public void incrementDedupMiss() {
+        if (!enabled) return;
+        CounterHandle h = dedupMisses;
+        if (h == null) dedupMisses = h = recorder.counter("nats.dedup.misses", topic);
+        h.increment();
+    }
+
+    public void incrementDedupEvicted() {
+        if (!enabled) return;
+        CounterHandle h = dedupEvicted;
+        if (h == null) dedupEvicted = h = recorder.counter("nats.dedup.evictions", topic);
+        h.increment();
+    }
+
+    public void incrementResultCacheHit() {
+        if (!enabled) return;
+        CounterHandle h = resultCacheHits;
+        if (h == null) resultCacheHits = h = recorder.counter("nats.result.cache.hits", topic);
+        h.increment();
+    }
+
+    public void incrementResultCacheMiss() {
+        if (!enabled) return;
+        CounterHandle h = resultCacheMisses;
+        if (h == null) resultCacheMisses = h = recorder.counter("nats.result.cache.misses", topic);
+        h.increment();
+    }
+
+    public void incrementResultCacheEvicted() {
+        if (!enabled) return;
+        CounterHandle h = resultCacheEvicted;
+        if (h == null) resultCacheEvicted = h = recorder.counter("nats.result.cache.evictions", topic);
+        h.increment();
+    }
+
+    public void recordHandlerDuration(long nanos) {
+        if (!enabled) return;
+        Timer t = handlerDuration;
+        if (t == null) handlerDuration = t = recorder.timer("nats.handler.duration", topic);
+        t.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPublishDuration(long nanos) {
+        if (!enabled) return;
+        Timer t = publishDuration;
+        if (t == null) publishDuration = t = recorder.timer("nats.publish.duration", topic);
+        t.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Negative values from clock skew are dropped.
+     */
+    public void recordEndToEndLatency(long millis) {
+        if (!enabled || millis < 0) return;
+        Timer t = latency;
+        if (t == null) latency = t = recorder.timer("nats.message.latency", topic);
+        t.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordReceivedBytes(int bytes) {
+        if (!enabled) return;
+        DistributionSummary s = receivedBytes;
+        if (s == null) receivedBytes = s = recorder.payloadSummary("nats.message.received.bytes", topic);
+        s.record(bytes);
+    }
+
+    public void recordSentBytes(int bytes) {
+        if (!enabled) return;
+        DistributionSummary s = sentBytes;
+        if (s == null) sentBytes = s = recorder.payloadSummary("nats.message.sent.bytes", topic);
+        s.record(bytes);
+    }
+
+    public void recordCompressDuration(long nanos) {
+        if (!enabled) return;
+        Timer t = compressDuration;
+        if (t == null) compressDuration = t = recorder.timer("nats.compression.compress.duration", topic);
+        t.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDecompressDuration(long nanos) {
+        if (!enabled) return;
+        Timer t = decompressDuration;
+        if (t == null) decompressDuration = t = recorder.timer("nats.compression.decompress.duration", topic);
+        t.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Uncompressed over compressed size, for payloads that were sent compressed.
+     */
+    public void recordCompressionRatio(double ratio) {
+        if (!enabled) return;
+        DistributionSummary s = compressionRatio;
+        if (s == null) compressionRatio = s = recorder.summary("nats.compression.ratio", topic);
+        s.record(ratio);
+    }
+
+    /**
+     * Time to store an offloaded payload in the Object Store; the count is the number of payloads offloaded.
+     */
+    public void recordClaimCheckStoreDuration(long nanos) {
+        if (!enabled) return;
+        Timer t = claimCheckStoreDuration;
+        if (t == null) claimCheckStoreDuration = t = recorder.timer("nats.claim.check.store.duration", topic);
+        t.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordClaimCheckFetchDuration(long nanos) {
+        if (!enabled) return;
+        Timer t = claimCheckFetchDuration;
+        if (t == null) claimCheckFetchDuration = t = recorder.timer("nats.claim.check.fetch.duration", topic);
+        t.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
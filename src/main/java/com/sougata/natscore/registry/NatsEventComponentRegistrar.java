@@ -11,6 +11,7 @@ public class NatsEventComponentRegistrar {
     public NatsEventComponentRegistrar(
             EventComponentConfig config, org.springframework.context.ApplicationContext context,
             ConsumerDispatcher consumerDispatcher,
+            ConsumerBatchDispatcher consumerBatchDispatcher,
             SupplierDispatcher supplierDispatcher,
             SupplierFanoutDispatcher supplierFanoutDispatcher,
             FunctionDispatcher functionDispatcher,
@@ -21,10 +22,21 @@ public class NatsEventComponentRegistrar {
             Object bean = context.getBean(Class.forName(entry.getHandlerClass()));
 
             switch (entry.getHandlerType()) {
-                case CONSUMER -> consumerDispatcher.register(entry.getReadTopics(), (PayloadConsumer) bean);
-                case SUPPLIER -> supplierDispatcher.register((PayloadSupplier) bean);
-                case SUPPLIER_FANOUT -> supplierFanoutDispatcher.register((PayloadSupplierFanout) bean);
-                case FUNCTION -> functionDispatcher.register(entry.getReadTopics(), (PayloadFunction) bean);
+                case CONSUMER -> {
+                    if (bean instanceof TypedPayloadConsumer<?> typed) consumerDispatcher.registerTyped(entry.getReadTopics(), typed);
+                    else if (bean instanceof PayloadSubscriber subscriber) consumerDispatcher.registerSubscriber(entry.getReadTopics(), subscriber);
+                    else consumerDispatcher.register(entry.getReadTopics(), (PayloadConsumer) bean);
+                }
+                case CONSUMER_BATCH -> consumerBatchDispatcher.register(entry.getReadTopics(), (PayloadBatchConsumer) bean);
+                case SUPPLIER -> {
+                    if (bean instanceof PayloadPublisher publisher) supplierDispatcher.registerPublisher(publisher, entry);
+                    else supplierDispatcher.register((PayloadSupplier) bean, entry);
+                }
+                case SUPPLIER_FANOUT -> supplierFanoutDispatcher.register((PayloadSupplierFanout) bean, entry);
+                case FUNCTION -> {
+                    if (bean instanceof TypedPayloadFunction<?, ?> typed) functionDispatcher.registerTyped(entry.getReadTopics(), typed);
+                    else functionDispatcher.register(entry.getReadTopics(), (PayloadFunction) bean);
+                }
                 case FUNCTION_FANOUT -> functionFanoutDispatcher.register(entry.getReadTopics(), (PayloadFunctionFanout) bean);
                 default -> throw new IllegalArgumentException("Unknown type: " + entry.getHandlerType());
             }
@@ -0,0 +1,74 @@
+package com.sougata.natscore.schema;
+
+import com.sougata.natscore.schema.model.SchemaBinding;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The message type and descriptor SHA-256 last registered for each topic, kept in a local properties file so a
+ * restart with unchanged contracts skips the register calls. Losing or corrupting the file only costs those calls.
+ */
+@Slf4j
+final class SchemaFingerprints {
+    private final Path file; // null when disabled
+    private final Properties entries = new Properties();
+
+    private SchemaFingerprints(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param file the properties file, or {@code null}/empty to keep nothing
+     */
+    static SchemaFingerprints load(String file) {
+        if (file == null || file.isBlank()) return new SchemaFingerprints(null);
+        SchemaFingerprints fingerprints = new SchemaFingerprints(Path.of(file));
+        if (Files.exists(fingerprints.file)) {
+            try (Reader reader = Files.newBufferedReader(fingerprints.file, StandardCharsets.UTF_8)) {
+                fingerprints.entries.load(reader);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("⚠️ Ignoring unreadable schema fingerprint file {}: {}", file, e.getMessage());
+                fingerprints.entries.clear();
+            }
+        }
+        return fingerprints;
+    }
+
+    boolean isRegistered(SchemaBinding binding) {
+        return fingerprintOf(binding).equals(entries.getProperty(binding.getTopic()));
+    }
+
+    void registered(SchemaBinding binding) {
+        entries.setProperty(binding.getTopic(), fingerprintOf(binding));
+    }
+
+    /**
+     * Writes the file through a temporary one, so a crash leaves the old contents.
+     */
+    void save() {
+        if (file == null) return;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                entries.store(writer, "Schemas registered by nats-core-components, by topic");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ Could not save schema fingerprint file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String fingerprintOf(SchemaBinding binding) {
+        return binding.getProtoMessageType() + " " + binding.getDescriptorSha256();
+    }
+}
@@ -11,6 +11,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -40,6 +42,23 @@ public class SchemaRegistryClient {
         }
     }
 
+    /**
+     * Registers several schemas in one request to the registry's batch endpoint.
+     */
+    public void registerSchemas(Collection<SchemaBinding> bindings) {
+        if (bindings.isEmpty()) return;
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<List<SchemaBinding>> entity = new HttpEntity<>(List.copyOf(bindings), headers);
+            restTemplate.postForEntity(registryUrl + "/api/schemas/batch", entity, String.class);
+            log.info("✅ Registered {} schema(s) in one batch", bindings.size());
+        } catch (Exception e) {
+            log.error("❌ Failed to register a batch of {} schema(s): {}", bindings.size(), e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     public Optional<SchemaBinding> fetchSchema(String topic) {
         try {
             ResponseEntity<SchemaBinding> response = restTemplate.getForEntity(registryUrl + "/api/" + topic, SchemaBinding.class);
@@ -3,7 +3,9 @@ package com.sougata.natscore.schema;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.Message;
 import com.sougata.natscore.config.EventComponentConfig;
+import com.sougata.natscore.config.SchemaRegistryConfig;
 import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
 import com.sougata.natscore.schema.model.SchemaBinding;
 import com.sougata.natscore.util.ProtobufUtils;
 import jakarta.annotation.PostConstruct;
@@ -11,12 +13,33 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Registers each topic's Protobuf contract with the schema registry at startup and fails startup when the registry
+ * holds a different one.
+ * <p>
+ * Topics are described, registered and checked concurrently, at most {@code schema.registry.max-concurrency} calls at
+ * a time. A schema already registered by an earlier start (per the local fingerprint file) is not registered again,
+ * unless the registry no longer has it; changed ones can go in a single batch call.
+ * </p>
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -24,67 +47,145 @@ public class StartupContractValidator {
 
     private final SchemaRegistryClient schemaRegistryClient;
     private final EventComponentConfig config;
+    private final SchemaRegistryConfig registryConfig;
+    private final NatsMetricsRecorder metricsRecorder;
 
     @PostConstruct
     public void validateContracts() {
+        long start = System.nanoTime();
         log.info("Starting contract validation and auto-registration if necessary...");
-        Set<String> alreadyRegistered = new HashSet<>();
 
-        Collection<TopicBinding> allBindings = config.getComponents().stream()
+        Map<String, TopicBinding> bindingsByTopic = new LinkedHashMap<>(); // the first binding of each topic is validated
+        config.getComponents().stream()
                 .filter(c -> !c.isDisabled())
                 .flatMap(c -> {
-                    var reads = c.getReadTopics() == null ? Set.<TopicBinding>of() : c.getReadTopics();
-                    var writes = c.getWriteTopics() == null ? Set.<TopicBinding>of() : c.getWriteTopics();
+                    var reads = c.getReadTopics() == null ? List.<TopicBinding>of() : c.getReadTopics();
+                    var writes = c.getWriteTopics() == null ? List.<TopicBinding>of() : c.getWriteTopics();
                     return Stream.concat(reads.stream(), writes.stream());
                 })
-                .toList();
-
-        for (TopicBinding binding : allBindings) {
-            validate(binding, alreadyRegistered);
+                .forEach(binding -> bindingsByTopic.putIfAbsent(binding.getTopicName(), binding));
+        if (bindingsByTopic.isEmpty()) {
+            log.info("✅ Contract validation complete.");
+            return;
         }
 
-        log.info("✅ Contract validation complete.");
+        SchemaFingerprints fingerprints = SchemaFingerprints.load(registryConfig.getFingerprintFile());
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(registryConfig.getMaxConcurrency(), bindingsByTopic.size())), r -> {
+            Thread t = new Thread(r);
+            t.setName("schema-validation-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<SchemaBinding> schemas = forEach(pool, bindingsByTopic.values(), this::describe).stream()
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            List<SchemaBinding> changed = schemas.stream().filter(s -> !fingerprints.isRegistered(s)).toList();
+            Set<String> changedTopics = changed.stream().map(SchemaBinding::getTopic).collect(Collectors.toSet());
+            if (registryConfig.isBatch()) {
+                schemaRegistryClient.registerSchemas(changed);
+            } else {
+                forEach(pool, changed, schema -> {
+                    schemaRegistryClient.registerSchema(schema);
+                    return schema;
+                });
+            }
+
+            int reRegistered = forEach(pool, schemas, schema -> verify(schema, !changedTopics.contains(schema.getTopic()))).stream()
+                    .mapToInt(b -> b ? 1 : 0)
+                    .sum();
+            schemas.forEach(fingerprints::registered);
+            fingerprints.save();
+
+            log.info("✅ Contract validation complete: {} schema(s), {} registered, {} unchanged.",
+                    schemas.size(), changed.size() + reRegistered, schemas.size() - changed.size() - reRegistered);
+        } finally {
+            pool.shutdownNow();
+            metricsRecorder.recordContractValidation(System.nanoTime() - start);
+        }
     }
 
-    private void validate(TopicBinding binding, Set<String> alreadyRegistered) {
+    /**
+     * @return the topic's contract as sent to the registry, or {@code null} when its message type is not Protobuf
+     */
+    private SchemaBinding describe(TopicBinding binding) {
         String topic = binding.getTopicName();
         String messageType = binding.getMessageType();
-
-        if (alreadyRegistered.contains(topic)) return;
-        alreadyRegistered.add(topic);
-
         try {
             Class<?> clazz = Class.forName(messageType);
             if (!Message.class.isAssignableFrom(clazz)) {
                 log.warn("⚠️ Not a valid Protobuf Message: {}", messageType);
-                return;
+                return null;
             }
 
             Message msg = (Message) clazz.getMethod("getDefaultInstance").invoke(null);
             Descriptors.Descriptor descriptor = msg.getDescriptorForType();
 
-            String sha = ProtobufUtils.sha256Hex(descriptor);
-            String base64 = Base64.getEncoder().encodeToString(descriptor.toProto().toByteArray());
-
-            SchemaBinding bindingToSend = new SchemaBinding();
-            bindingToSend.setTopic(topic);
-            bindingToSend.setProtoMessageType(messageType);
-            bindingToSend.setDescriptorSha256(sha);
-            bindingToSend.setDescriptorBase64(base64);
-
-            schemaRegistryClient.registerSchema(bindingToSend);
-
-            schemaRegistryClient.fetchSchema(topic).ifPresent(remote -> {
-                if (!remote.getDescriptorSha256().equals(sha)) {
-                    String error = "❌ Contract mismatch for topic: " + topic;
-                    log.error(error);
-                    throw new IllegalStateException(error);
-                }
-            });
-
+            SchemaBinding schema = new SchemaBinding();
+            schema.setTopic(topic);
+            schema.setProtoMessageType(messageType);
+            schema.setDescriptorSha256(ProtobufUtils.sha256Hex(descriptor));
+            schema.setDescriptorBase64(Base64.getEncoder().encodeToString(descriptor.toProto().toByteArray()));
+            return schema;
         } catch (Exception e) {
             log.error("❌ Validation failed for topic {}: {}", topic, e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Fails when the registry holds a different contract for the topic. A schema skipped as unchanged is registered
+     * after all when the registry does not have it (any more).
+     *
+     * @return whether the schema had to be registered
+     */
+    private boolean verify(SchemaBinding schema, boolean skipped) {
+        String topic = schema.getTopic();
+        Optional<SchemaBinding> remote = schemaRegistryClient.fetchSchema(topic);
+        boolean registered = false;
+        if (remote.isEmpty() && skipped) {
+            schemaRegistryClient.registerSchema(schema);
+            registered = true;
+            remote = schemaRegistryClient.fetchSchema(topic);
+        }
+        remote.ifPresent(r -> {
+            if (!r.getDescriptorSha256().equals(schema.getDescriptorSha256())) {
+                String error = "❌ Contract mismatch for topic: " + topic;
+                log.error(error);
+                throw new IllegalStateException(error);
+            }
+        });
+        return registered;
+    }
+
+    /**
+     * Applies {@code task} to every item on {@code pool} and waits for all of them.
+     *
+     * @return the results, in the order of {@code items}
+     * @throws RuntimeException the first failure, after the other tasks have finished
+     */
+    private static <T, R> List<R> forEach(ExecutorService pool, Collection<T> items, Function<T, R> task) {
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(pool.submit(() -> task.apply(item)));
+        }
+        List<R> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during contract validation", e);
+            }
+        }
+        if (failure != null) throw failure;
+        return results;
+    }
 }
@@ -0,0 +1,72 @@
+package com.sougata.natscore.util;
+
+import io.nats.client.Connection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Bytes queued in a connection's outgoing buffer and in its reconnect buffer (messages published while disconnected).
+ * jnats keeps both queues internal (its {@code Statistics} only count what was sent), so they are read reflectively;
+ * when that is not possible (another client version, a stand-in {@link Connection}) both report 0 and callers fall
+ * back to the connection status alone. The fields are those of the jnats version in the pom, which
+ * {@code OutgoingBuffersTest} checks.
+ */
+@Slf4j
+public final class OutgoingBuffers {
+    private static final Field WRITER;
+    private static final Field OUTGOING;
+    private static final Field RECONNECT_OUTGOING;
+    private static final Method SIZE_IN_BYTES;
+
+    static {
+        Field writer = null, outgoing = null, reconnectOutgoing = null;
+        Method sizeInBytes = null;
+        try {
+            writer = Class.forName("io.nats.client.impl.NatsConnection").getDeclaredField("writer");
+            Class<?> writerType = writer.getType();
+            outgoing = writerType.getDeclaredField("outgoing");
+            reconnectOutgoing = writerType.getDeclaredField("reconnectOutgoing");
+            sizeInBytes = outgoing.getType().getDeclaredMethod("sizeInBytes");
+            writer.setAccessible(true);
+            outgoing.setAccessible(true);
+            reconnectOutgoing.setAccessible(true);
+            sizeInBytes.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Outgoing buffer sizes are not readable with this NATS client ({}), adaptive throttling uses the connection status only", e.toString());
+            writer = null;
+        }
+        WRITER = writer;
+        OUTGOING = outgoing;
+        RECONNECT_OUTGOING = reconnectOutgoing;
+        SIZE_IN_BYTES = sizeInBytes;
+    }
+
+    private OutgoingBuffers() {}
+
+    /**
+     * @return whether the buffer sizes of a jnats connection can be read
+     */
+    static boolean readable() {
+        return WRITER != null;
+    }
+
+    public static long pendingBytes(Connection connection) {
+        return sizeOf(connection, OUTGOING);
+    }
+
+    public static long reconnectBufferedBytes(Connection connection) {
+        return sizeOf(connection, RECONNECT_OUTGOING);
+    }
+
+    private static long sizeOf(Connection connection, Field queue) {
+        if (WRITER == null || !WRITER.getDeclaringClass().isInstance(connection)) return 0;
+        try {
+            Object writer = WRITER.get(connection);
+            return writer == null ? 0 : (long) SIZE_IN_BYTES.invoke(queue.get(writer));
+        } catch (ReflectiveOperationException e) {
+            return 0;
+        }
+    }
+}
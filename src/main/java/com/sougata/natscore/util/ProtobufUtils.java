@@ -2,15 +2,41 @@ package com.sougata.natscore.util;
 
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 
 import java.security.MessageDigest;
 import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class ProtobufUtils {
+    private static final Map<String, Parser<?>> PARSER_CACHE = new ConcurrentHashMap<>();
+
     public static String sha256Hex(Descriptors.Descriptor descriptor) throws Exception {
         DescriptorProtos.DescriptorProto proto = descriptor.toProto();
         byte[] bytes = proto.toByteArray();
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
         return HexFormat.of().formatHex(digest.digest(bytes));
     }
+
+    /**
+     * Resolves the generated {@code parser()} of a protobuf message class once and caches it by class name.
+     *
+     * @throws IllegalArgumentException if the class is missing or not a generated protobuf message
+     */
+    @SuppressWarnings("unchecked")
+    public static <M extends Message> Parser<M> parserFor(String messageType) {
+        return (Parser<M>) PARSER_CACHE.computeIfAbsent(messageType, type -> {
+            try {
+                Class<?> clazz = Class.forName(type);
+                if (!Message.class.isAssignableFrom(clazz)) {
+                    throw new IllegalArgumentException("Not a valid Protobuf Message: " + type);
+                }
+                return (Parser<?>) clazz.getMethod("parser").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot resolve protobuf parser for " + type, e);
+            }
+        });
+    }
 }
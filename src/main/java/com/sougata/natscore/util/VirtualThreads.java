@@ -0,0 +1,39 @@
+package com.sougata.natscore.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads are final from Java 21 but only a preview API at this library's compile target,
+ * so executors and thread factories are looked up reflectively and callers fall back to platform threads when they are unavailable.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            log.warn("Virtual threads are not available on this JVM ({}), using platform threads instead", e.toString());
+            return Optional.empty();
+        }
+    }
+
+    public static Optional<ThreadFactory> newThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            log.warn("Virtual threads are not available on this JVM ({}), using platform threads instead", e.toString());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.sougata.natscore.client;
+
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.support.FakeConnection;
+import io.nats.client.Connection;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NatsConnectionPoolTest {
+
+    private static NatsConnectionPool pool(int size) {
+        Connection[] connections = new Connection[size];
+        for (int i = 0; i < size; i++) {
+            connections[i] = new FakeConnection().connection();
+        }
+        return NatsConnectionPool.of(connections);
+    }
+
+    private static TopicBinding binding(String topic, Integer connectionIndex) {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName(topic);
+        binding.setConnectionIndex(connectionIndex);
+        return binding;
+    }
+
+    @Test
+    void singleConnectionServesEverything() {
+        NatsConnectionPool pool = pool(1);
+
+        assertSame(pool.primary(), pool.forSubject("orders"));
+        assertSame(pool.primary(), pool.forSubscription(binding("payments", null)));
+    }
+
+    @Test
+    void aSubjectAlwaysMapsToTheSameConnection() {
+        NatsConnectionPool pool = pool(4);
+
+        for (int i = 0; i < 100; i++) {
+            String subject = "orders." + i;
+            assertSame(pool.forSubject(subject), pool.forSubject(subject));
+        }
+    }
+
+    @Test
+    void subjectsSpreadOverTheConnections() {
+        NatsConnectionPool pool = pool(4);
+        Set<Connection> used = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            used.add(pool.forSubject("orders." + i));
+        }
+
+        assertEquals(Set.copyOf(pool.connections()), used);
+    }
+
+    @Test
+    void subscriptionsFollowTheirTopicUnlessPinned() {
+        NatsConnectionPool pool = pool(3);
+
+        assertSame(pool.forSubject("orders"), pool.forSubscription(binding("orders", null)));
+        for (int i = 0; i < 3; i++) {
+            assertSame(pool.connections().get(i), pool.forSubscription(binding("orders", i)));
+        }
+    }
+
+    @Test
+    void rejectsAPinOutsideThePool() {
+        NatsConnectionPool pool = pool(2);
+
+        assertThrows(IllegalStateException.class, () -> pool.forSubscription(binding("orders", 2)));
+        assertThrows(IllegalStateException.class, () -> pool.forSubscription(binding("orders", -1)));
+    }
+
+    @Test
+    void needsAtLeastOneConnection() {
+        assertThrows(IllegalArgumentException.class, () -> NatsConnectionPool.of(List.of()));
+    }
+}
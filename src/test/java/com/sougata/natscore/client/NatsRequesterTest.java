@@ -0,0 +1,122 @@
+package com.sougata.natscore.client;
+
+import com.sougata.natscore.model.PayloadHeader;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.support.FakeConnection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NatsRequesterTest {
+
+    private final FakeConnection nats = new FakeConnection();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final NatsRequester requester = new NatsRequester(NatsConnectionPool.of(nats.connection()),
+            new NatsMetricsRecorder(registry));
+
+    @AfterEach
+    void shutdown() {
+        requester.shutdown();
+    }
+
+    private static PayloadWrapper<byte[]> request(String body) {
+        return PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(body.getBytes(StandardCharsets.UTF_8))
+                .setPayloadType("test.Quote")
+                .build();
+    }
+
+    /**
+     * What {@code FunctionDispatcher} sends back: the request's correlation id on the caller's inbox.
+     */
+    private static Message replyTo(Message request, String body) {
+        Headers headers = new Headers();
+        headers.put(PayloadHeader.PAYLOAD_TYPE.getKey(), "test.Price");
+        headers.put(PayloadHeader.CORRELATION_ID.getKey(), request.getHeaders().getFirst(PayloadHeader.CORRELATION_ID.getKey()));
+        return NatsMessage.builder().subject(request.getReplyTo()).headers(headers)
+                .data(body.getBytes(StandardCharsets.UTF_8)).build();
+    }
+
+    private static String body(PayloadWrapper<byte[]> wrapper) {
+        return new String(wrapper.getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void matchesRepliesToRequestsByCorrelationId() throws Exception {
+        CompletableFuture<PayloadWrapper<byte[]>> first = requester.request("quotes", request("a"));
+        CompletableFuture<PayloadWrapper<byte[]>> second = requester.request("quotes", request("b"));
+        nats.awaitPublished(2);
+        Message firstRequest = nats.published.get(0);
+        Message secondRequest = nats.published.get(1);
+        assertEquals(firstRequest.getReplyTo(), secondRequest.getReplyTo(), "requests share one inbox");
+
+        nats.deliver(replyTo(secondRequest, "reply-b")); // replies may arrive in any order
+        nats.deliver(replyTo(firstRequest, "reply-a"));
+
+        PayloadWrapper<byte[]> firstReply = first.get(5, TimeUnit.SECONDS);
+        assertEquals("reply-a", body(firstReply));
+        assertEquals("test.Price", firstReply.getHeader(PayloadHeader.PAYLOAD_TYPE));
+        assertEquals("reply-b", body(second.get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void repliesAreMeteredByRequestSubject() throws Exception {
+        CompletableFuture<PayloadWrapper<byte[]>> ok = requester.request("quotes", request("a"));
+        CompletableFuture<PayloadWrapper<byte[]>> bad = requester.request("quotes", request("b"));
+        nats.awaitPublished(2);
+        nats.deliver(replyTo(nats.published.get(0), "reply"));
+        Message undecodable = replyTo(nats.published.get(1), "reply");
+        undecodable.getHeaders().put("contentEncoding", "bogus");
+        nats.deliver(undecodable);
+
+        ok.get(5, TimeUnit.SECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("on topic quotes"), e.getCause().getMessage());
+        assertEquals(1, registry.find("nats.requester.reply.duration").tag("subject", "quotes").timer().count());
+        assertEquals(1, registry.find("nats.requester.reply.error").tag("subject", "quotes").counter().count());
+    }
+
+    @Test
+    void timesOutWhenNoReplyArrives() throws Exception {
+        PayloadWrapper<byte[]> request = request("a");
+        CompletableFuture<PayloadWrapper<byte[]>> future = requester.request("quotes", request, Duration.ofMillis(50));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        // The timed-out request is forgotten: a late reply is dropped and the id can be used again
+        nats.awaitPublished(1);
+        nats.deliver(replyTo(nats.published.get(0), "late"));
+        CompletableFuture<PayloadWrapper<byte[]>> retry = requester.request("quotes", request);
+        nats.awaitPublished(2);
+        assertFalse(retry.isDone());
+        nats.deliver(replyTo(nats.published.get(1), "reply"));
+        assertEquals("reply", body(retry.get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void rejectsASecondRequestWithTheSameCorrelationIdInFlight() {
+        PayloadWrapper<byte[]> request = request("a");
+        requester.request("quotes", request);
+
+        CompletableFuture<PayloadWrapper<byte[]>> duplicate = requester.request("quotes", request);
+        assertTrue(duplicate.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,175 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.ClaimCheckBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import com.sougata.natscore.support.FakeConnection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.ObjectStore;
+import io.nats.client.api.ObjectMeta;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClaimCheckTest {
+    private static final int CHUNK = 100;
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final AtomicInteger gets = new AtomicInteger();
+    private final ObjectStore store = store("payloads");
+    private final TopicMeters meters = new NatsMetricsRecorder(new SimpleMeterRegistry()).forTopic("orders");
+
+    /**
+     * An in-memory bucket that hands objects back in chunks, like the Object Store does.
+     */
+    private ObjectStore store(String bucket) {
+        return (ObjectStore) Proxy.newProxyInstance(ObjectStore.class.getClassLoader(), new Class<?>[] {ObjectStore.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getBucketName" -> bucket;
+                    case "put" -> {
+                        objects.put(((ObjectMeta) args[0]).getObjectName(), ((InputStream) args[1]).readAllBytes());
+                        yield null;
+                    }
+                    case "get" -> {
+                        gets.incrementAndGet();
+                        byte[] data = objects.get((String) args[0]);
+                        if (data == null) throw new IllegalArgumentException("No object " + args[0]);
+                        OutputStream out = (OutputStream) args[1];
+                        for (int off = 0; off < data.length; off += CHUNK) {
+                            out.write(data, off, Math.min(CHUNK, data.length - off));
+                        }
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeObjectStore";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) data[i] = (byte) (i * 31);
+        return data;
+    }
+
+    private static Message message(Headers headers, byte[] data) {
+        return NatsMessage.builder().subject("orders").headers(headers).data(data).build();
+    }
+
+    private static Headers reference(String reference, String size) {
+        Headers headers = new Headers();
+        headers.put(ClaimCheck.CLAIM_CHECK_HEADER, reference);
+        headers.put(ClaimCheck.SIZE_HEADER, size);
+        return headers;
+    }
+
+    private byte[] fetch(Message msg, int maxBytes) {
+        return ClaimCheck.fetch(msg, bucket -> store, maxBytes, meters);
+    }
+
+    @Test
+    void leavesPayloadsUpToTheThresholdInline() throws Exception {
+        ClaimCheck claimCheck = new ClaimCheck(store, 1000, meters);
+        Headers headers = new Headers();
+        byte[] data = payload(1000);
+
+        assertSame(data, claimCheck.offload(headers, data));
+        assertTrue(headers.isEmpty());
+        assertTrue(objects.isEmpty());
+    }
+
+    @Test
+    void offloadedPayloadRoundTrips() throws Exception {
+        ClaimCheck claimCheck = new ClaimCheck(store, 1000, meters);
+        Headers headers = new Headers();
+        byte[] data = payload(1001);
+
+        assertEquals(0, claimCheck.offload(headers, data).length);
+        assertTrue(headers.getFirst(ClaimCheck.CLAIM_CHECK_HEADER).startsWith("payloads/"));
+        assertEquals("1001", headers.getFirst(ClaimCheck.SIZE_HEADER));
+        assertEquals(1, objects.size());
+
+        assertArrayEquals(data, fetch(message(headers, new byte[0]), 64 * 1024));
+    }
+
+    @Test
+    void messageWithoutClaimCheckKeepsItsPayload() {
+        byte[] data = payload(10);
+        assertSame(data, fetch(message(null, data), 64 * 1024));
+        assertEquals(0, gets.get());
+    }
+
+    @Test
+    void rejectsAnnouncedSizeOverTheLimitBeforeFetching() {
+        objects.put("big", payload(2000));
+        Message msg = message(reference("payloads/big", "2000"), new byte[0]);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> fetch(msg, 1999));
+        assertTrue(e.getMessage().contains("over the limit"), e.getMessage());
+        assertEquals(0, gets.get());
+        assertArrayEquals(payload(2000), fetch(msg, 2000));
+    }
+
+    @Test
+    void rejectsAnObjectThatDoesNotMatchItsAnnouncedSize() {
+        objects.put("object", payload(500));
+
+        assertThrows(IllegalStateException.class, () -> fetch(message(reference("payloads/object", "499"), new byte[0]), 1000));
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> fetch(message(reference("payloads/object", "501"), new byte[0]), 1000));
+        assertTrue(e.getMessage().contains("has 500 bytes"), e.getMessage());
+    }
+
+    @Test
+    void rejectsMissingObjectsAndBadHeaders() {
+        assertThrows(IllegalStateException.class, () -> fetch(message(reference("payloads/expired", "10"), new byte[0]), 1000));
+        assertThrows(IllegalStateException.class, () -> fetch(message(reference("payloads", "10"), new byte[0]), 1000));
+        assertThrows(IllegalStateException.class, () -> fetch(message(reference("payloads/", "10"), new byte[0]), 1000));
+        objects.put("object", payload(10));
+        assertThrows(IllegalStateException.class, () -> fetch(message(reference("payloads/object", "ten"), new byte[0]), 1000));
+        assertThrows(IllegalStateException.class, () -> fetch(message(reference("payloads/object", "-1"), new byte[0]), 1000));
+    }
+
+    @Test
+    void dispatcherOnlyFetchesFromBucketsItsBindingsName() {
+        FakeConnection fake = new FakeConnection();
+        fake.objectStores.put("payloads", store);
+        fake.objectStores.put("other", store("other"));
+        objects.put("object", payload(10));
+        AbstractDispatcher dispatcher = new AbstractDispatcher(NatsConnectionPool.of(fake.connection()),
+                new NatsMetricsRecorder(new SimpleMeterRegistry())) {};
+
+        Message foreign = message(reference("other/object", "10"), new byte[0]);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> dispatcher.decode("test.Event", meters, foreign));
+        assertTrue(e.getMessage().contains("[other] is not configured"), e.getMessage());
+        assertEquals(0, gets.get());
+
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName("orders");
+        ClaimCheckBinding claimCheck = new ClaimCheckBinding();
+        claimCheck.setBucket("payloads");
+        binding.setClaimCheck(claimCheck);
+        dispatcher.acceptClaimChecks(binding);
+
+        Message allowed = message(reference("payloads/object", "10"), new byte[0]);
+        assertArrayEquals(payload(10), dispatcher.decode("test.Event", meters, allowed).getPayload());
+        assertThrows(IllegalStateException.class, () -> dispatcher.decode("test.Event", meters, foreign));
+    }
+}
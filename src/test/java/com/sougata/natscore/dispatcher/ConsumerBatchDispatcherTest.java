@@ -0,0 +1,145 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.contract.PayloadBatchConsumer;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsumerBatchDispatcherTest {
+
+    private static TopicBinding binding(String topic, Integer maxSize, Integer maxBytes, Long lingerMs) {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName(topic);
+        binding.setBatchMaxSize(maxSize);
+        binding.setBatchMaxBytes(maxBytes);
+        binding.setBatchLingerMs(lingerMs);
+        return binding;
+    }
+
+    private static ConsumerBatchDispatcher.Batcher batcher(TopicBinding binding, PayloadBatchConsumer handler) {
+        return new ConsumerBatchDispatcher.Batcher(binding, handler,
+                new NatsMetricsRecorder(new SimpleMeterRegistry()).forTopic(binding.getTopicName()));
+    }
+
+    private static PayloadWrapper<byte[]> message(int sequence, int size) {
+        byte[] payload = new byte[Math.max(1, size)];
+        payload[0] = (byte) sequence;
+        return PayloadWrapper.<byte[]>newBuilder().setPayload(payload).setPayloadType("test.Event").build();
+    }
+
+    @Test
+    void flushesOnBatchMaxSize() throws Exception {
+        BlockingQueue<List<PayloadWrapper<byte[]>>> batches = new LinkedBlockingQueue<>();
+        ConsumerBatchDispatcher.Batcher batcher = batcher(binding("size", 3, null, 60_000L), batches::add);
+        for (int i = 0; i < 7; i++) {
+            batcher.add(message(i, 8));
+        }
+
+        assertEquals(3, batches.poll(5, TimeUnit.SECONDS).size());
+        assertEquals(3, batches.poll(5, TimeUnit.SECONDS).size());
+        assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+
+        batcher.close(1_000);
+        List<PayloadWrapper<byte[]>> last = batches.poll(5, TimeUnit.SECONDS);
+        assertEquals(1, last.size());
+        assertEquals(6, last.get(0).getPayload()[0]);
+    }
+
+    @Test
+    void flushesOnBatchMaxBytes() throws Exception {
+        BlockingQueue<List<PayloadWrapper<byte[]>>> batches = new LinkedBlockingQueue<>();
+        ConsumerBatchDispatcher.Batcher batcher = batcher(binding("bytes", 100, 100, 60_000L), batches::add);
+        batcher.add(message(0, 40));
+        batcher.add(message(1, 40));
+        assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+
+        batcher.add(message(2, 40));
+        assertEquals(3, batches.poll(5, TimeUnit.SECONDS).size());
+        batcher.close(1_000);
+    }
+
+    @Test
+    void flushesAPartialBatchAfterLinger() throws Exception {
+        BlockingQueue<List<PayloadWrapper<byte[]>>> batches = new LinkedBlockingQueue<>();
+        ConsumerBatchDispatcher.Batcher batcher = batcher(binding("linger", 100, null, 50L), batches::add);
+        long start = System.nanoTime();
+        batcher.add(message(0, 8));
+        batcher.add(message(1, 8));
+
+        List<PayloadWrapper<byte[]>> batch = batches.poll(5, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(2, batch.size());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        batcher.close(1_000);
+    }
+
+    @Test
+    void batchesArriveInOrder() throws Exception {
+        BlockingQueue<List<PayloadWrapper<byte[]>>> batches = new LinkedBlockingQueue<>();
+        ConsumerBatchDispatcher.Batcher batcher = batcher(binding("order", 5, null, 1L), batches::add);
+        for (int i = 0; i < 100; i++) {
+            batcher.add(message(i, 8));
+            if (i % 7 == 0) Thread.sleep(2); // let some linger flushes interleave with full batches
+        }
+        batcher.close(5_000);
+
+        int expected = 0;
+        List<PayloadWrapper<byte[]>> batch;
+        while ((batch = batches.poll()) != null) {
+            for (PayloadWrapper<byte[]> message : batch) {
+                assertEquals((byte) expected++, message.getPayload()[0]);
+            }
+        }
+        assertEquals(100, expected);
+    }
+
+    @Test
+    void slowHandlerBlocksNeitherAddNorOtherTopics() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        ConsumerBatchDispatcher.Batcher slow = batcher(binding("slow", 1, null, 60_000L), batch -> {
+            slowStarted.countDown();
+            WorkerStageTest.await(release);
+        });
+        BlockingQueue<List<PayloadWrapper<byte[]>>> fastBatches = new LinkedBlockingQueue<>();
+        ConsumerBatchDispatcher.Batcher fast = batcher(binding("fast", 100, null, 20L), fastBatches::add);
+
+        slow.add(message(0, 8));
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        slow.add(message(1, 8)); // queued behind the running batch; add returns
+
+        fast.add(message(0, 8));
+        assertNotNull(fastBatches.poll(5, TimeUnit.SECONDS), "linger flush of another topic was held up");
+
+        release.countDown();
+        slow.close(1_000);
+        fast.close(1_000);
+    }
+
+    @Test
+    void handlerFailureDoesNotStopLaterBatches() throws Exception {
+        BlockingQueue<List<PayloadWrapper<byte[]>>> batches = new LinkedBlockingQueue<>();
+        ConsumerBatchDispatcher.Batcher batcher = batcher(binding("failing", 1, null, 60_000L), batch -> {
+            if (batch.get(0).getPayload()[0] == 0) throw new IllegalStateException("handler failed");
+            batches.add(batch);
+        });
+        batcher.add(message(0, 8));
+        batcher.add(message(1, 8));
+
+        assertEquals(1, batches.poll(5, TimeUnit.SECONDS).get(0).getPayload()[0]);
+        batcher.close(1_000);
+    }
+}
@@ -0,0 +1,200 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.DedupBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.dispatcher.DedupCache.Seen;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.support.FakeConnection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DedupCacheTest {
+
+    private static DedupCache cache(int maxEntries, long ttlMillis) {
+        return new DedupCache(maxEntries, ttlMillis, new NatsMetricsRecorder(new SimpleMeterRegistry()).forTopic("dedup"));
+    }
+
+    @Test
+    void addReportsDuplicates() {
+        DedupCache cache = cache(16, 60_000);
+        String uuid = UUID.randomUUID().toString();
+
+        assertEquals(Seen.NEW, cache.add(uuid));
+        assertEquals(Seen.NEW, cache.add("order-1"));
+        assertEquals(Seen.IN_FLIGHT, cache.add(uuid));
+        assertEquals(Seen.IN_FLIGHT, cache.add("order-1"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void ringWrapsAroundKeepingTheNewestIds() {
+        DedupCache cache = cache(4, 60_000);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Seen.NEW, cache.add("id-" + i));
+        }
+
+        assertEquals(4, cache.size());
+        for (int i = 6; i < 10; i++) {
+            assertEquals(Seen.IN_FLIGHT, cache.add("id-" + i), "id-" + i + " should still be remembered");
+        }
+        assertEquals(Seen.NEW, cache.add("id-5"), "id-5 should have been evicted");
+    }
+
+    @Test
+    void removedIdIsAcceptedAgain() {
+        DedupCache cache = cache(16, 60_000);
+        cache.add("a");
+        cache.remove("a");
+
+        assertEquals(0, cache.size());
+        assertEquals(Seen.NEW, cache.add("a"));
+        assertEquals(Seen.IN_FLIGHT, cache.add("a"));
+    }
+
+    @Test
+    void evictingTheOldPositionOfAReAddedIdKeepsIt() {
+        DedupCache cache = cache(3, 60_000);
+        cache.add("a");
+        cache.add("b");
+        cache.remove("a");
+        cache.add("a"); // ring: [a (removed), b, a]
+        cache.add("c"); // evicts position 0, which no longer holds a
+
+        assertEquals(Seen.IN_FLIGHT, cache.add("a"));
+        assertEquals(Seen.IN_FLIGHT, cache.add("b"));
+        assertEquals(Seen.IN_FLIGHT, cache.add("c"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void removalsKeepProbeRunsReachable() {
+        DedupCache cache = cache(1000, 60_000);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(i % 2 == 0 ? UUID.randomUUID().toString() : "id-" + i);
+            cache.add(ids.get(i));
+        }
+        for (int i = 0; i < ids.size(); i += 3) {
+            cache.remove(ids.get(i));
+        }
+
+        for (int i = 0; i < ids.size(); i++) {
+            if (i % 3 != 0) assertEquals(Seen.IN_FLIGHT, cache.add(ids.get(i)), "lost " + ids.get(i));
+        }
+        for (int i = 0; i < ids.size(); i += 3) {
+            assertEquals(Seen.NEW, cache.add(ids.get(i)), "still holds " + ids.get(i));
+        }
+    }
+
+    @Test
+    void idsExpireAfterTtl() throws InterruptedException {
+        DedupCache cache = cache(16, 50);
+        cache.add("a");
+        Thread.sleep(100);
+
+        assertEquals(Seen.NEW, cache.add("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void handledIdsAreToldApartFromInFlightOnes() {
+        DedupCache cache = cache(16, 60_000);
+        cache.add("a");
+        cache.add("b");
+        cache.markHandled("a");
+
+        assertEquals(Seen.HANDLED, cache.add("a"));
+        assertEquals(Seen.IN_FLIGHT, cache.add("b"));
+        cache.markHandled("unknown"); // no-op
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void reAddedIdStartsInFlightAgain() {
+        DedupCache cache = cache(16, 60_000);
+        cache.add("a");
+        cache.markHandled("a");
+        cache.remove("a");
+
+        assertEquals(Seen.NEW, cache.add("a"));
+        assertEquals(Seen.IN_FLIGHT, cache.add("a"));
+    }
+
+    /**
+     * {@code delivery} behind a binding's dedup stage, keyed on the default correlationId header.
+     */
+    private static AbstractDispatcher.Delivery deduplicated(AbstractDispatcher.Delivery delivery) {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName("orders");
+        binding.setDedup(new DedupBinding());
+        NatsMetricsRecorder recorder = new NatsMetricsRecorder(new SimpleMeterRegistry());
+        AbstractDispatcher dispatcher = new AbstractDispatcher(NatsConnectionPool.of(new FakeConnection().connection()), recorder) {};
+        return dispatcher.withDedup(binding, recorder.forTopic("orders"), delivery);
+    }
+
+    private static Message withId(String id) {
+        Headers headers = new Headers();
+        headers.put("correlationId", id);
+        return NatsMessage.builder().subject("orders").headers(headers).data(new byte[0]).build();
+    }
+
+    @Test
+    void duplicateOfAnInFlightMessageIsDeferredNotAcked() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        AtomicBoolean succeed = new AtomicBoolean();
+        AbstractDispatcher.Delivery delivery = deduplicated(msg -> {
+            handled.incrementAndGet();
+            started.countDown();
+            WorkerStageTest.await(release);
+            return succeed.get();
+        });
+
+        AtomicBoolean originalResult = new AtomicBoolean(true);
+        Thread original = new Thread(() -> originalResult.set(delivery.handle(withId("order-1"))));
+        original.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertFalse(delivery.handle(withId("order-1")), "a copy of a message still being handled must not be acked");
+        assertEquals(1, handled.get());
+
+        release.countDown();
+        original.join(5_000);
+        assertFalse(originalResult.get());
+
+        // The original failed, so the next copy is handled, and once that succeeds later copies are acked unhandled
+        succeed.set(true);
+        assertTrue(delivery.handle(withId("order-1")));
+        assertEquals(2, handled.get());
+        assertTrue(delivery.handle(withId("order-1")));
+        assertEquals(2, handled.get());
+    }
+
+    @Test
+    void messagesWithoutAnIdAreNotDeduplicated() {
+        AtomicInteger handled = new AtomicInteger();
+        AbstractDispatcher.Delivery delivery = deduplicated(msg -> handled.incrementAndGet() > 0);
+        Message noId = NatsMessage.builder().subject("orders").data(new byte[0]).build();
+
+        assertTrue(delivery.handle(noId));
+        assertTrue(delivery.handle(noId));
+        assertEquals(2, handled.get());
+    }
+}
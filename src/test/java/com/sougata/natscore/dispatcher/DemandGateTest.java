@@ -0,0 +1,136 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.contract.PayloadSubscriber;
+import com.sougata.natscore.model.PayloadWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DemandGateTest {
+
+    /**
+     * Records what the gate signals.
+     */
+    private static final class RecordingSubscriber implements PayloadSubscriber {
+        final List<PayloadWrapper<byte[]>> received = new CopyOnWriteArrayList<>();
+        final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        final AtomicInteger completions = new AtomicInteger();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+        }
+
+        @Override
+        public void onNext(PayloadWrapper<byte[]> item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            errors.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completions.incrementAndGet();
+        }
+    }
+
+    private final RecordingSubscriber subscriber = new RecordingSubscriber();
+    private final DemandGate gate = new DemandGate(subscriber);
+
+    private static PayloadWrapper<byte[]> payload() {
+        return PayloadWrapper.<byte[]>newBuilder().setPayload(new byte[] {1}).setPayloadType("test.Event").build();
+    }
+
+    /**
+     * Delivers on a thread of its own; the latch opens once {@code deliver} returns, and the flag holds its result.
+     */
+    private CountDownLatch deliverInBackground(AtomicBoolean result) {
+        CountDownLatch returned = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(gate.deliver(payload()));
+                returned.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return returned;
+    }
+
+    @Test
+    void deliversOnlyAsMuchAsRequested() throws Exception {
+        gate.request(2);
+        assertTrue(gate.deliver(payload()));
+        assertTrue(gate.deliver(payload()));
+
+        AtomicBoolean result = new AtomicBoolean();
+        CountDownLatch third = deliverInBackground(result);
+        assertFalse(third.await(200, TimeUnit.MILLISECONDS), "a third message waits for demand");
+        assertEquals(2, subscriber.received.size());
+
+        gate.request(1);
+        assertTrue(third.await(5, TimeUnit.SECONDS));
+        assertTrue(result.get());
+        assertEquals(3, subscriber.received.size());
+    }
+
+    @Test
+    void cancelReleasesWaitingDeliveries() throws Exception {
+        AtomicBoolean result = new AtomicBoolean(true);
+        CountDownLatch waiting = deliverInBackground(result);
+        assertFalse(waiting.await(100, TimeUnit.MILLISECONDS));
+
+        gate.cancel();
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+        assertFalse(result.get());
+        gate.request(10);
+        assertFalse(gate.deliver(payload()), "nothing is delivered after cancel");
+        assertTrue(subscriber.received.isEmpty());
+    }
+
+    @Test
+    void nonPositiveRequestCancelsWithAnError() throws Exception {
+        gate.request(0);
+
+        assertEquals(1, subscriber.errors.size());
+        assertInstanceOf(IllegalArgumentException.class, subscriber.errors.get(0));
+        assertFalse(gate.deliver(payload()));
+    }
+
+    @Test
+    void unboundedDemandIsNotCountedDown() throws Exception {
+        gate.request(Long.MAX_VALUE);
+        gate.request(Long.MAX_VALUE); // does not overflow
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(gate.deliver(payload()));
+        }
+        assertEquals(1_000, subscriber.received.size());
+    }
+
+    @Test
+    void terminatesOnceAndDeliversNothingAfter() throws Exception {
+        gate.request(5);
+        gate.terminate(null);
+        gate.terminate(new IllegalStateException("late"));
+
+        assertEquals(1, subscriber.completions.get());
+        assertTrue(subscriber.errors.isEmpty());
+        assertFalse(gate.deliver(payload()));
+        assertTrue(subscriber.received.isEmpty());
+    }
+}
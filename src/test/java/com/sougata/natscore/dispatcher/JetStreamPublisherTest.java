@@ -0,0 +1,154 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.JetStreamPublishBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.JetStream;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.Headers;
+import io.nats.client.support.NatsJetStreamConstants;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JetStreamPublisherTest {
+
+    /**
+     * One {@code publishAsync} call: the message id it carried and the ack future the test completes.
+     */
+    private record Attempt(String msgId, CompletableFuture<PublishAck> ack) {}
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BlockingQueue<Attempt> attempts = new LinkedBlockingQueue<>();
+    private final JetStream jetStream = (JetStream) Proxy.newProxyInstance(JetStream.class.getClassLoader(),
+            new Class<?>[] {JetStream.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("publishAsync")) throw new UnsupportedOperationException(method.getName());
+                Headers headers = (Headers) args[1];
+                Attempt attempt = new Attempt(headers.getFirst(NatsJetStreamConstants.MSG_ID_HDR), new CompletableFuture<>());
+                attempts.add(attempt);
+                return attempt.ack();
+            });
+
+    private JetStreamPublisher publisher(int maxPendingAcks, int maxRetries, long ackTimeoutMs) {
+        JetStreamPublishBinding config = new JetStreamPublishBinding();
+        config.setMaxPendingAcks(maxPendingAcks);
+        config.setMaxRetries(maxRetries);
+        config.setAckTimeoutMs(ackTimeoutMs);
+        config.setRetryBackoffMs(1L);
+        return new JetStreamPublisher("orders", jetStream, null, new NatsMetricsRecorder(registry), config);
+    }
+
+    private Attempt nextAttempt() throws InterruptedException {
+        Attempt attempt = attempts.poll(5, TimeUnit.SECONDS);
+        assertNotNull(attempt, "expected a publish");
+        return attempt;
+    }
+
+    private double count(String name) {
+        Counter counter = registry.find(name).tag("topic", "orders").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static void publishInBackground(JetStreamPublisher publisher, CountDownLatch published) {
+        Thread thread = new Thread(() -> {
+            try {
+                publisher.publish(new Headers(), new byte[] {1});
+                published.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Test
+    void publishBlocksWhileTheAckWindowIsFull() throws Exception {
+        JetStreamPublisher publisher = publisher(2, 0, 60_000);
+        publisher.publish(new Headers(), new byte[] {1});
+        publisher.publish(new Headers(), new byte[] {2});
+        Attempt first = nextAttempt();
+        nextAttempt();
+
+        CountDownLatch third = new CountDownLatch(1);
+        publishInBackground(publisher, third);
+        assertFalse(third.await(200, TimeUnit.MILLISECONDS), "a third publish should wait for an ack");
+
+        first.ack().complete(null);
+        assertTrue(third.await(5, TimeUnit.SECONDS));
+        assertEquals(1, count("nats.message.sent"));
+    }
+
+    @Test
+    void retriesAFailedAckWithTheSameMessageId() throws Exception {
+        JetStreamPublisher publisher = publisher(1, 3, 60_000);
+        publisher.publish(new Headers(), new byte[] {1});
+
+        Attempt first = nextAttempt();
+        first.ack().completeExceptionally(new IOException("stream unavailable"));
+        Attempt retry = nextAttempt();
+        assertEquals(first.msgId(), retry.msgId(), "the stream drops a retry whose first attempt was stored");
+
+        // The message keeps its slot in the window until the retry is acked
+        CountDownLatch next = new CountDownLatch(1);
+        publishInBackground(publisher, next);
+        assertFalse(next.await(200, TimeUnit.MILLISECONDS));
+        retry.ack().complete(null);
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, count("nats.jetstream.publish.retry"));
+        assertEquals(1, count("nats.message.sent"));
+    }
+
+    @Test
+    void retriesWhenTheAckTimesOut() throws Exception {
+        JetStreamPublisher publisher = publisher(1, 3, 50);
+        publisher.publish(new Headers(), new byte[] {1});
+
+        Attempt first = nextAttempt(); // never acked
+        Attempt retry = nextAttempt();
+        assertEquals(first.msgId(), retry.msgId());
+        retry.ack().complete(null);
+        publisher.close(5_000);
+        assertEquals(1, count("nats.message.sent"));
+    }
+
+    @Test
+    void givesUpAfterMaxRetriesAndFreesTheSlot() throws Exception {
+        JetStreamPublisher publisher = publisher(1, 2, 60_000);
+        publisher.publish(new Headers(), new byte[] {1});
+        for (int i = 0; i < 3; i++) {
+            nextAttempt().ack().completeExceptionally(new IOException("stream unavailable"));
+        }
+
+        publisher.close(5_000);
+        assertNull(attempts.poll(100, TimeUnit.MILLISECONDS), "no attempt after the last retry");
+        assertEquals(2, count("nats.jetstream.publish.retry"));
+        assertEquals(1, count("nats.message.error"));
+        assertEquals(0, count("nats.message.sent"));
+    }
+
+    @Test
+    void messagesGetDistinctIds() throws Exception {
+        JetStreamPublisher publisher = publisher(10, 0, 60_000);
+        publisher.publish(new Headers(), new byte[] {1});
+        publisher.publish(new Headers(), new byte[] {2});
+
+        List<Attempt> published = List.of(nextAttempt(), nextAttempt());
+        assertFalse(published.get(0).msgId().equals(published.get(1).msgId()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.JetStreamBinding;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.JetStreamAckPolicy;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JetStreamPullerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> acks = new CopyOnWriteArrayList<>(); // "ack 3", "nak 4", ...
+    private final AtomicInteger unsubscribes = new AtomicInteger();
+
+    private static TopicBinding binding() {
+        JetStreamBinding js = new JetStreamBinding();
+        js.setDurable("orders-worker");
+        js.setAckPolicy(JetStreamAckPolicy.ALL);
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName("orders");
+        binding.setJetStream(js);
+        return binding;
+    }
+
+    private JetStreamPuller puller(AbstractDispatcher.Delivery delivery) {
+        JetStreamSubscription subscription = (JetStreamSubscription) Proxy.newProxyInstance(
+                JetStreamSubscription.class.getClassLoader(), new Class<?>[] {JetStreamSubscription.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "unsubscribe" -> {
+                        unsubscribes.incrementAndGet();
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        return new JetStreamPuller(binding(), subscription, delivery, new NatsMetricsRecorder(registry));
+    }
+
+    /**
+     * A JetStream message that records its acks and naks, identified by {@code sequence}.
+     */
+    private Message message(int sequence) {
+        return (Message) Proxy.newProxyInstance(Message.class.getClassLoader(), new Class<?>[] {Message.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "ack", "nak" -> {
+                        acks.add(method.getName() + " " + sequence);
+                        yield null;
+                    }
+                    case "getSubject" -> "orders";
+                    case "toString" -> "message " + sequence;
+                    case "hashCode" -> sequence;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private List<Message> batch(int size) {
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < size; i++) batch.add(message(i));
+        return batch;
+    }
+
+    private double nacked() {
+        var counter = registry.find("nats.message.nacked").tag("topic", "orders").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void acksOnlyTheLastMessageOfASuccessfulBatch() {
+        List<Integer> handled = new ArrayList<>();
+        puller(msg -> handled.add(msg.hashCode())).handleInOrder(batch(5));
+
+        assertEquals(List.of(0, 1, 2, 3, 4), handled);
+        assertEquals(List.of("ack 4"), acks);
+        assertEquals(0, nacked());
+    }
+
+    @Test
+    void acksUpToTheLastSuccessAndNaksFromTheFirstFailure() {
+        List<Integer> handled = new ArrayList<>();
+        puller(msg -> {
+            handled.add(msg.hashCode());
+            return msg.hashCode() != 2;
+        }).handleInOrder(batch(5));
+
+        assertEquals(List.of(0, 1, 2), handled, "messages after the failure are not handled");
+        assertEquals(List.of("ack 1", "nak 2", "nak 3", "nak 4"), acks);
+        assertEquals(3, nacked());
+    }
+
+    @Test
+    void naksTheWholeBatchWhenTheFirstMessageFails() {
+        puller(msg -> false).handleInOrder(batch(3));
+
+        assertEquals(List.of("nak 0", "nak 1", "nak 2"), acks);
+        assertEquals(3, nacked());
+    }
+
+    @Test
+    void stopUnsubscribes() {
+        puller(msg -> true).stop(100);
+
+        assertEquals(1, unsubscribes.get());
+    }
+}
@@ -0,0 +1,119 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.enums.OverflowPolicy;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.MessageHandler;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OverflowStageTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TopicMeters meters = new NatsMetricsRecorder(registry).forTopic("orders");
+
+    @TempDir
+    Path directory;
+
+    private static Message message(int sequence) {
+        return NatsMessage.builder().subject("orders").data(new byte[] {(byte) sequence}).build();
+    }
+
+    private OverflowStage stage(OverflowPolicy policy, int capacity, MessageHandler downstream, long shutdownTimeoutMs) throws IOException {
+        SpillQueue spill = policy == OverflowPolicy.SPILL ? new SpillQueue(directory, "orders", 4096, Long.MAX_VALUE) : null;
+        return new OverflowStage("orders", policy, capacity, spill, downstream, meters, shutdownTimeoutMs);
+    }
+
+    private double dropped() {
+        Counter counter = registry.find("nats.overflow.dropped").tag("topic", "orders").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void spilledMessagesReachTheHandlerInOrder() throws Exception {
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        OverflowStage stage = stage(OverflowPolicy.SPILL, 2, msg -> {
+            WorkerStageTest.await(release);
+            handled.add((int) msg.getData()[0]);
+        }, 5_000);
+        for (int i = 0; i < 50; i++) {
+            stage.submit(message(i)); // all but a few go to disk while the handler is held up
+        }
+
+        release.countDown();
+        stage.shutdown();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, handled.get(i));
+        }
+        assertEquals(0, dropped());
+    }
+
+    @Test
+    void dropNewestCountsWhatItDrops() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        OverflowStage stage = stage(OverflowPolicy.DROP_NEWEST, 2, msg -> {
+            started.countDown();
+            WorkerStageTest.await(release);
+        }, 5_000);
+        stage.submit(message(0));
+        started.await();
+        for (int i = 1; i <= 5; i++) {
+            stage.submit(message(i)); // two fit behind the one being handled
+        }
+
+        assertEquals(3, dropped());
+        release.countDown();
+        stage.shutdown();
+    }
+
+    @Test
+    void shutdownDropsAndCountsWhatTheHandlerDidNotReachInTime() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        OverflowStage stage = stage(OverflowPolicy.SPILL, 2, msg -> {
+            started.countDown();
+            Thread.sleep(60_000); // stuck until interrupted
+        }, 100);
+        for (int i = 0; i < 10; i++) {
+            stage.submit(message(i));
+        }
+        started.await();
+
+        stage.shutdown();
+        assertEquals(9, dropped(), "everything but the message being handled");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count(), "spill files are deleted");
+        }
+    }
+
+    @Test
+    void shutdownWaitsForTheHandlerWithinTheTimeout() throws Exception {
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        OverflowStage stage = stage(OverflowPolicy.BLOCK, 100, msg -> {
+            Thread.sleep(5);
+            handled.add((int) msg.getData()[0]);
+        }, 5_000);
+        for (int i = 0; i < 20; i++) {
+            stage.submit(message(i));
+        }
+
+        stage.shutdown();
+        assertEquals(20, handled.size());
+        assertEquals(0, dropped());
+    }
+}
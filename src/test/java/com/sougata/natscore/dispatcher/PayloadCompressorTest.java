@@ -0,0 +1,122 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.CompressionCodec;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadCompressorTest {
+    private static final int MAX_BYTES = 1024 * 1024;
+
+    private final TopicMeters meters = new NatsMetricsRecorder(new SimpleMeterRegistry()).forTopic("orders");
+
+    private PayloadCompressor compressor(Integer minBytes) {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName("orders");
+        binding.setCompression(CompressionCodec.DEFLATE);
+        binding.setCompressionMinBytes(minBytes);
+        return PayloadCompressor.forBinding(binding, meters);
+    }
+
+    private static byte[] text(int size) {
+        return "the quick brown fox jumps over the lazy dog ".repeat(size / 44 + 1).substring(0, size)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Message received(Headers headers, byte[] data) {
+        return NatsMessage.builder().subject("orders").headers(headers).data(data).build();
+    }
+
+    @Test
+    void roundTrips() {
+        byte[] payload = text(10_000);
+        Headers headers = new Headers();
+        byte[] sent = compressor(null).compress(headers, payload);
+
+        assertTrue(sent.length < payload.length);
+        assertEquals("deflate", headers.getFirst(PayloadCompressor.ENCODING_HEADER));
+        assertEquals("10000", headers.getFirst(PayloadCompressor.UNCOMPRESSED_SIZE_HEADER));
+        assertArrayEquals(payload, PayloadCompressor.decompress(received(headers, sent), sent, MAX_BYTES, meters));
+    }
+
+    @Test
+    void leavesSmallAndIncompressiblePayloadsAlone() {
+        byte[] small = text(100);
+        Headers headers = new Headers();
+        assertSame(small, compressor(null).compress(headers, small));
+
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        assertSame(random, compressor(null).compress(headers, random));
+        assertNull(headers.getFirst(PayloadCompressor.ENCODING_HEADER));
+        assertSame(random, PayloadCompressor.decompress(received(headers, random), random, MAX_BYTES, meters));
+    }
+
+    @Test
+    void noCompressorWithoutACodec() {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName("orders");
+
+        assertNull(PayloadCompressor.forBinding(binding, meters));
+    }
+
+    @Test
+    void rejectsAnAnnouncedSizeOverTheLimit() {
+        byte[] payload = text(10_000);
+        Headers headers = new Headers();
+        byte[] sent = compressor(null).compress(headers, payload);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> PayloadCompressor.decompress(received(headers, sent), sent, 9_999, meters));
+        assertTrue(e.getMessage().contains("over the limit"), e.getMessage());
+    }
+
+    @Test
+    void rejectsAnAnnouncedSizeDeflateCannotReach() {
+        byte[] sent = compressor(null).compress(new Headers(), text(10_000));
+        Headers forged = new Headers();
+        forged.put(PayloadCompressor.ENCODING_HEADER, "deflate");
+        forged.put(PayloadCompressor.UNCOMPRESSED_SIZE_HEADER, String.valueOf(sent.length * 1033L));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> PayloadCompressor.decompress(received(forged, sent), sent, Integer.MAX_VALUE, meters));
+        assertTrue(e.getMessage().contains("over the limit"), e.getMessage());
+    }
+
+    @Test
+    void rejectsAPayloadThatDoesNotMatchItsSize() {
+        Headers headers = new Headers();
+        byte[] sent = compressor(null).compress(headers, text(10_000));
+        headers.put(PayloadCompressor.UNCOMPRESSED_SIZE_HEADER, "9000");
+
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decompress(received(headers, sent), sent, MAX_BYTES, meters));
+        headers.put(PayloadCompressor.UNCOMPRESSED_SIZE_HEADER, "-1");
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decompress(received(headers, sent), sent, MAX_BYTES, meters));
+        headers.put(PayloadCompressor.UNCOMPRESSED_SIZE_HEADER, "lots");
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decompress(received(headers, sent), sent, MAX_BYTES, meters));
+    }
+
+    @Test
+    void rejectsAnUnknownEncoding() {
+        Headers headers = new Headers();
+        headers.put(PayloadCompressor.ENCODING_HEADER, "br");
+        byte[] data = {1, 2, 3};
+
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.decompress(received(headers, data), data, MAX_BYTES, meters));
+    }
+}
@@ -0,0 +1,137 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.OutboxConfig;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.support.FakeConnection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Connection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PublishOutboxTest {
+    private static final String NAME = "TestDispatcher";
+
+    @TempDir
+    Path directory;
+
+    private static FakeConnection fake(Connection.Status status) {
+        FakeConnection fake = new FakeConnection();
+        fake.status = status;
+        return fake;
+    }
+
+    private PublishOutbox open(FakeConnection fake) throws IOException {
+        OutboxConfig config = new OutboxConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentBytes(4096);
+        return new PublishOutbox(NAME, NatsConnectionPool.of(fake.connection()),
+                new NatsMetricsRecorder(new SimpleMeterRegistry()), config);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve(NAME))) {
+            List<Path> segments = files.filter(file -> file.toString().endsWith(".log")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    @Test
+    void publishesWhileDisconnectedAreReplayedInOrder() throws Exception {
+        FakeConnection fake = fake(Connection.Status.DISCONNECTED);
+        PublishOutbox outbox = open(fake);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(outbox.publish(fake.connection(), "orders." + i, null, new byte[] {(byte) i}));
+        }
+
+        fake.status = Connection.Status.CONNECTED;
+        fake.awaitPublished(3);
+        outbox.close(1_000);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("orders." + i, fake.published.get(i).getSubject());
+        }
+    }
+
+    @Test
+    void restartResumesAfterWhatWasReplayed() throws Exception {
+        FakeConnection fake = fake(Connection.Status.DISCONNECTED);
+        PublishOutbox outbox = open(fake);
+        outbox.publish(fake.connection(), "orders.0", null, new byte[] {0});
+        outbox.publish(fake.connection(), "orders.1", null, new byte[] {1});
+        fake.status = Connection.Status.CONNECTED;
+        fake.awaitPublished(2);
+        outbox.close(1_000);
+
+        FakeConnection restarted = fake(Connection.Status.CONNECTED);
+        PublishOutbox reopened = open(restarted);
+        Thread.sleep(200);
+        reopened.close(1_000);
+
+        assertEquals(0, restarted.published.size());
+    }
+
+    @Test
+    void recoveryStopsAtATruncatedRecord() throws Exception {
+        FakeConnection fake = fake(Connection.Status.DISCONNECTED);
+        PublishOutbox outbox = open(fake);
+        for (int i = 0; i < 3; i++) {
+            outbox.publish(fake.connection(), "orders." + i, null, new byte[64]);
+        }
+        outbox.close(1_000);
+
+        // Cut the last record in half, as a crash in the middle of writing it would leave it
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            int last = 0;
+            int length;
+            while ((length = log.getInt(position)) > 0) {
+                last = position;
+                position += 2 * Integer.BYTES + length;
+            }
+            channel.truncate(last + 2 * Integer.BYTES + log.getInt(last) / 2);
+        }
+
+        FakeConnection restarted = fake(Connection.Status.CONNECTED);
+        PublishOutbox reopened = open(restarted);
+        restarted.awaitPublished(2);
+        assertEquals("orders.0", restarted.published.get(0).getSubject());
+        assertEquals("orders.1", restarted.published.get(1).getSubject());
+
+        // The log stays writable after the recovered records
+        restarted.status = Connection.Status.DISCONNECTED;
+        reopened.publish(restarted.connection(), "orders.3", null, new byte[] {3});
+        restarted.status = Connection.Status.CONNECTED;
+        restarted.awaitPublished(3);
+        reopened.close(1_000);
+        assertEquals("orders.3", restarted.published.get(2).getSubject());
+    }
+
+    @Test
+    void secondOutboxOnTheSameDirectoryFails() throws Exception {
+        FakeConnection fake = fake(Connection.Status.CONNECTED);
+        PublishOutbox outbox = open(fake);
+        try {
+            assertThrows(IllegalStateException.class, () -> open(fake));
+        } finally {
+            outbox.close(1_000);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.PublishPipelineConfig;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.monitoring.TopicMeters;
+import com.sougata.natscore.support.FakeConnection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PublishPipelineTest {
+    private final NatsMetricsRecorder metricsRecorder = new NatsMetricsRecorder(new SimpleMeterRegistry());
+    private final TopicMeters meters = metricsRecorder.forTopic("orders");
+    private final FakeConnection fake = new FakeConnection();
+
+    private PublishPipeline pipeline(int maxBatchMessages, long maxDelayMicros) {
+        PublishPipelineConfig config = new PublishPipelineConfig();
+        config.setAsync(true);
+        config.setQueueCapacity(64);
+        config.setMaxBatchMessages(maxBatchMessages);
+        config.setMaxDelayMicros(maxDelayMicros);
+        return new PublishPipeline("TestDispatcher", metricsRecorder, config, null);
+    }
+
+    private static byte[] payload(int sequence) {
+        return new byte[] {(byte) (sequence >> 8), (byte) sequence};
+    }
+
+    private static int sequence(byte[] payload) {
+        return ((payload[0] & 0xff) << 8) | (payload[1] & 0xff);
+    }
+
+    @Test
+    void publishesInEnqueueOrder() throws Exception {
+        PublishPipeline pipeline = pipeline(16, 0);
+        for (int i = 0; i < 1000; i++) {
+            pipeline.enqueue(fake.connection(), meters, null, payload(i));
+        }
+        pipeline.close(5_000);
+
+        fake.awaitPublished(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, sequence(fake.published.get(i).getData()));
+            assertEquals("orders", fake.published.get(i).getSubject());
+        }
+    }
+
+    @Test
+    void flushesOncePerBatch() throws Exception {
+        PublishPipeline pipeline = pipeline(10, 2_000_000); // batches end on size well before the delay
+        for (int i = 0; i < 30; i++) {
+            pipeline.enqueue(fake.connection(), meters, null, payload(i));
+        }
+        fake.awaitPublished(30);
+        pipeline.close(5_000);
+
+        assertEquals(3, fake.flushes.get());
+    }
+
+    @Test
+    void closePublishesWhatIsQueuedAndRefusesMore() throws Exception {
+        fake.onPublish = msg -> WorkerStageTest.sleep(1); // let the queue build up
+        PublishPipeline pipeline = pipeline(8, 0);
+        for (int i = 0; i < 200; i++) {
+            pipeline.enqueue(fake.connection(), meters, null, payload(i));
+        }
+        pipeline.close(10_000);
+
+        assertEquals(200, fake.published.size());
+        assertThrows(IllegalStateException.class, () -> pipeline.enqueue(fake.connection(), meters, null, payload(0)));
+    }
+
+    @Test
+    void failedPublishDoesNotStopTheWriter() throws Exception {
+        fake.onPublish = msg -> {
+            if (sequence(msg.getData()) == 1) throw new IllegalStateException("refused");
+        };
+        PublishPipeline pipeline = pipeline(8, 0);
+        for (int i = 0; i < 3; i++) {
+            pipeline.enqueue(fake.connection(), meters, null, payload(i));
+        }
+        pipeline.close(5_000);
+
+        assertEquals(2, fake.published.size());
+        assertEquals(2, sequence(fake.published.get(1).getData()));
+    }
+}
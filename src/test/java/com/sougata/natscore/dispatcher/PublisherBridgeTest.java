@@ -0,0 +1,130 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.model.PayloadWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublisherBridgeTest {
+
+    /**
+     * Counts what the bridge requested, like a publisher would.
+     */
+    private static final class CountingSubscription implements Flow.Subscription {
+        final AtomicLong requested = new AtomicLong();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.set(true);
+        }
+    }
+
+    private static PayloadWrapper<byte[]> payload(int sequence) {
+        return PayloadWrapper.<byte[]>newBuilder().setPayload(new byte[] {(byte) sequence}).setPayloadType("test.Event").build();
+    }
+
+    @Test
+    void requestsThePrefetchUpFront() {
+        PublisherBridge bridge = new PublisherBridge("test", 8);
+        CountingSubscription subscription = new CountingSubscription();
+        bridge.onSubscribe(subscription);
+
+        assertEquals(8, subscription.requested.get());
+    }
+
+    @Test
+    void refusesASecondSubscription() {
+        PublisherBridge bridge = new PublisherBridge("test", 8);
+        bridge.onSubscribe(new CountingSubscription());
+        CountingSubscription second = new CountingSubscription();
+        bridge.onSubscribe(second);
+
+        assertTrue(second.cancelled.get());
+        assertEquals(0, second.requested.get());
+    }
+
+    @Test
+    void replenishesInHalfPrefetchChunksAsItemsArePublished() throws Exception {
+        PublisherBridge bridge = new PublisherBridge("test", 8);
+        CountingSubscription subscription = new CountingSubscription();
+        bridge.onSubscribe(subscription);
+
+        int sent = 0;
+        int taken = 0;
+        for (int round = 0; round < 10; round++) {
+            // The publisher sends everything it was asked for; the bridge holds no more than the prefetch
+            while (sent < subscription.requested.get()) {
+                bridge.onNext(payload(sent++));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals((byte) taken, bridge.next().getPayload()[0]);
+                taken++;
+                bridge.published();
+                assertTrue(subscription.requested.get() - taken <= 8, "demand outstanding beyond the prefetch");
+            }
+        }
+        assertEquals(30, taken);
+        assertEquals(8 + 7 * 4, subscription.requested.get(), "8 up front, then 4 for every 4 published");
+    }
+
+    @Test
+    void drainsBufferedItemsAfterCompletion() throws Exception {
+        PublisherBridge bridge = new PublisherBridge("test", 4);
+        bridge.onSubscribe(new CountingSubscription());
+        bridge.onNext(payload(0));
+        bridge.onNext(payload(1));
+        bridge.onComplete();
+
+        assertEquals(0, bridge.next().getPayload()[0]);
+        assertEquals(1, bridge.next().getPayload()[0]);
+        assertNull(bridge.next());
+    }
+
+    @Test
+    void endsAfterAnError() throws Exception {
+        PublisherBridge bridge = new PublisherBridge("test", 4);
+        bridge.onSubscribe(new CountingSubscription());
+        bridge.onError(new IllegalStateException("publisher failed"));
+
+        assertNull(bridge.next());
+    }
+
+    @Test
+    void dropsItemsBeyondTheRequestedDemand() throws Exception {
+        PublisherBridge bridge = new PublisherBridge("test", 2);
+        bridge.onSubscribe(new CountingSubscription());
+        for (int i = 0; i < 3; i++) {
+            bridge.onNext(payload(i));
+        }
+        bridge.onComplete();
+
+        assertEquals(0, bridge.next().getPayload()[0]);
+        assertEquals(1, bridge.next().getPayload()[0]);
+        assertNull(bridge.next());
+    }
+
+    @Test
+    void cancelStopsThePublisher() throws Exception {
+        PublisherBridge bridge = new PublisherBridge("test", 4);
+        CountingSubscription subscription = new CountingSubscription();
+        bridge.onSubscribe(subscription);
+        bridge.cancel();
+
+        assertTrue(subscription.cancelled.get());
+        assertNull(bridge.next());
+        assertFalse(subscription.requested.get() > 4);
+    }
+}
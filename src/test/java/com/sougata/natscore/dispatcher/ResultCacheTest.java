@@ -0,0 +1,131 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.model.PayloadHeader;
+import com.sougata.natscore.model.PayloadWrapper;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResultCacheTest {
+
+    private static ResultCache cache(int maxEntries, long ttlMillis, long maxBytes) {
+        return new ResultCache("test.Request", maxEntries, ttlMillis, maxBytes,
+                new NatsMetricsRecorder(new SimpleMeterRegistry()).forTopic("results"));
+    }
+
+    private static ResultCache.Key key(ResultCache cache, String request) {
+        return cache.keyOf(request.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PayloadWrapper<byte[]> response(int size, String correlationId) {
+        return PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(new byte[size])
+                .setPayloadType("test.Response")
+                .setCorrelationId(correlationId)
+                .build();
+    }
+
+    @Test
+    void hitCarriesTheNewRequestsCorrelationId() {
+        ResultCache cache = cache(100, 60_000, Long.MAX_VALUE);
+        ResultCache.Key key = key(cache, "request");
+        assertNull(cache.get(key, "first"));
+        cache.put(key, "first", response(8, "first"));
+
+        PayloadWrapper<byte[]> hit = cache.get(key, "second");
+        assertNotNull(hit);
+        assertEquals("second", hit.getHeader(PayloadHeader.CORRELATION_ID));
+        assertArrayEquals(new byte[8], hit.getPayload());
+    }
+
+    @Test
+    void hitOfAResponseWithItsOwnIdGetsAFreshOne() {
+        ResultCache cache = cache(100, 60_000, Long.MAX_VALUE);
+        ResultCache.Key key = key(cache, "request");
+        cache.put(key, "first", response(8, "unrelated"));
+
+        PayloadWrapper<byte[]> hit = cache.get(key, "second");
+        assertNotEquals("second", hit.getHeader(PayloadHeader.CORRELATION_ID));
+        assertNotEquals("unrelated", hit.getHeader(PayloadHeader.CORRELATION_ID));
+    }
+
+    @Test
+    void keysDependOnPayloadAndMessageType() {
+        ResultCache cache = cache(100, 60_000, Long.MAX_VALUE);
+        ResultCache other = new ResultCache("test.Other", 100, 60_000, Long.MAX_VALUE,
+                new NatsMetricsRecorder(new SimpleMeterRegistry()).forTopic("results"));
+
+        assertEquals(key(cache, "request"), key(cache, "request"));
+        assertNotEquals(key(cache, "request"), key(cache, "request!"));
+        assertNotEquals(key(cache, "request"), key(other, "request"));
+    }
+
+    @Test
+    void responsesExpireAfterTtl() throws InterruptedException {
+        ResultCache cache = cache(100, 50, Long.MAX_VALUE);
+        ResultCache.Key key = key(cache, "request");
+        cache.put(key, "first", response(8, "first"));
+        assertNotNull(cache.get(key, "second"));
+
+        Thread.sleep(100);
+        assertNull(cache.get(key, "third"));
+    }
+
+    @Test
+    void byteBudgetEvictsTheLeastRecentlyUsed() {
+        ResultCache cache = cache(100, 60_000, 100);
+        ResultCache.Key first = key(cache, "first");
+        ResultCache.Key second = key(cache, "second");
+        ResultCache.Key third = key(cache, "third");
+        cache.put(first, null, response(40, null));
+        cache.put(second, null, response(40, null));
+        cache.put(third, null, response(40, null));
+
+        assertNull(cache.get(first, "x"));
+        assertNotNull(cache.get(second, "x"));
+        assertNotNull(cache.get(third, "x"));
+    }
+
+    @Test
+    void responseOverTheByteBudgetIsNotCached() {
+        ResultCache cache = cache(100, 60_000, 100);
+        ResultCache.Key key = key(cache, "request");
+        cache.put(key, null, response(101, null));
+
+        assertNull(cache.get(key, "x"));
+    }
+
+    @Test
+    void oneOffRequestsDoNotDisplaceFrequentOnes() {
+        ResultCache cache = cache(100, 60_000, Long.MAX_VALUE); // window of 1, main space of 99
+        for (int i = 0; i < 99; i++) {
+            ResultCache.Key key = key(cache, "hot-" + i);
+            cache.get(key, "x");
+            cache.put(key, null, response(8, null));
+        }
+        cache.put(key(cache, "pusher"), null, response(8, null)); // moves the last hot response out of the window
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 99; i++) {
+                assertNotNull(cache.get(key(cache, "hot-" + i), "x"), "hot-" + i);
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            ResultCache.Key key = key(cache, "cold-" + i);
+            cache.get(key, "x");
+            cache.put(key, null, response(8, null));
+        }
+
+        for (int i = 0; i < 99; i++) {
+            assertNotNull(cache.get(key(cache, "hot-" + i), "x"), "hot-" + i + " was evicted");
+        }
+    }
+}
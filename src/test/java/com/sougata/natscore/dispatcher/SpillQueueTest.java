@@ -0,0 +1,114 @@
+package com.sougata.natscore.dispatcher;
+
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillQueueTest {
+    private static final int SEGMENT_BYTES = 512;
+
+    @TempDir
+    Path directory;
+
+    private static Message message(int i, int size) {
+        byte[] data = new byte[size];
+        data[0] = (byte) i;
+        return NatsMessage.builder().subject("spill." + i).data(data).build();
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void messagesComeBackInOrderAcrossSegments() throws IOException {
+        try (SpillQueue queue = new SpillQueue(directory, "test", SEGMENT_BYTES, Long.MAX_VALUE)) {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(queue.offer(message(i, 100)));
+            }
+            assertTrue(segmentFiles() > 1, "expected the queue to roll over to new segments");
+            assertEquals(20, queue.size());
+
+            for (int i = 0; i < 20; i++) {
+                Message msg = queue.poll();
+                assertEquals("spill." + i, msg.getSubject());
+                assertEquals((byte) i, msg.getData()[0]);
+            }
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+            assertEquals(0, queue.bytes());
+        }
+    }
+
+    @Test
+    void drainedSegmentsAreRecycled() throws IOException {
+        try (SpillQueue queue = new SpillQueue(directory, "test", SEGMENT_BYTES, Long.MAX_VALUE)) {
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 20; i++) {
+                    queue.offer(message(i, 100));
+                }
+                for (int i = 0; i < 20; i++) {
+                    assertEquals("spill." + i, queue.poll().getSubject());
+                }
+                assertNull(queue.poll());
+            }
+            long afterFirstRounds = segmentFiles();
+
+            for (int i = 0; i < 20; i++) {
+                queue.offer(message(i, 100));
+            }
+            assertEquals(afterFirstRounds, segmentFiles(), "a drained queue should reuse its segments");
+        }
+    }
+
+    @Test
+    void oversizedMessageGetsASegmentOfItsOwn() throws IOException {
+        try (SpillQueue queue = new SpillQueue(directory, "test", SEGMENT_BYTES, Long.MAX_VALUE)) {
+            queue.offer(message(0, 100));
+            queue.offer(message(1, 4 * SEGMENT_BYTES));
+            queue.offer(message(2, 100));
+
+            assertEquals("spill.0", queue.poll().getSubject());
+            Message large = queue.poll();
+            assertEquals("spill.1", large.getSubject());
+            assertArrayEquals(message(1, 4 * SEGMENT_BYTES).getData(), large.getData());
+            assertEquals("spill.2", queue.poll().getSubject());
+        }
+    }
+
+    @Test
+    void offerFailsPastMaxBytes() throws IOException {
+        try (SpillQueue queue = new SpillQueue(directory, "test", SEGMENT_BYTES, 300)) {
+            assertTrue(queue.offer(message(0, 100)));
+            assertTrue(queue.offer(message(1, 100)));
+            assertFalse(queue.offer(message(2, 100)));
+            assertEquals(2, queue.size());
+        }
+    }
+
+    @Test
+    void closeDeletesTheSegmentFiles() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, "test", SEGMENT_BYTES, Long.MAX_VALUE);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(message(i, 100));
+        }
+        queue.close();
+
+        assertEquals(0, segmentFiles());
+        assertTrue(queue.isEmpty());
+    }
+}
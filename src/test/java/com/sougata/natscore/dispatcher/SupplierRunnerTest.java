@@ -0,0 +1,99 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.SupplierExecutorConfig;
+import com.sougata.natscore.config.SupplierSchedule;
+import com.sougata.natscore.enums.SupplierMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SupplierRunnerTest {
+    private static final CronExpression EVERY_MINUTE = CronExpression.parse("0 * * * * *");
+    private static final ZonedDateTime NOON = ZonedDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private final SupplierRunner runner = new SupplierRunner("test", new SupplierExecutorConfig());
+
+    @AfterEach
+    void shutdown() {
+        runner.shutdown();
+    }
+
+    private static EventComponentEntry scheduled(SupplierMode mode, Long periodMs, String cron) {
+        SupplierSchedule schedule = new SupplierSchedule();
+        schedule.setMode(mode);
+        schedule.setPeriodMs(periodMs);
+        schedule.setCron(cron);
+        EventComponentEntry entry = new EventComponentEntry();
+        entry.setSchedule(schedule);
+        return entry;
+    }
+
+    @Test
+    void firstCronTriggerFollowsNow() {
+        assertEquals(NOON.plusMinutes(1), SupplierRunner.nextTrigger(EVERY_MINUTE, null, NOON.plusSeconds(5)));
+    }
+
+    @Test
+    void cronTriggerAfterAnEarlyWakeUpIsTheFollowingOne() {
+        // The executor fired the noon trigger 3 ms early; noon itself must not come round again
+        ZonedDateTime early = NOON.minusNanos(3_000_000);
+        assertEquals(NOON.plusMinutes(1), SupplierRunner.nextTrigger(EVERY_MINUTE, NOON, early));
+    }
+
+    @Test
+    void cronTriggerAfterALateRunSkipsMissedOnes() {
+        // A run that overran two triggers resumes from now, not by replaying them
+        ZonedDateTime late = NOON.plusMinutes(2).plusSeconds(10);
+        assertEquals(NOON.plusMinutes(3), SupplierRunner.nextTrigger(EVERY_MINUTE, NOON, late));
+    }
+
+    @Test
+    void cronWithoutFurtherTriggersEnds() {
+        CronExpression once = CronExpression.parse("0 0 12 1 5 *"); // noon on 1 May, every year
+        assertEquals(NOON.plusYears(1), SupplierRunner.nextTrigger(once, NOON, NOON.minusNanos(1)));
+        assertNull(SupplierRunner.nextTrigger(CronExpression.parse("0 0 0 30 2 *"), null, NOON)); // 30 February
+    }
+
+    @Test
+    void cronFiresOncePerTrigger() throws Exception {
+        List<Long> fired = new CopyOnWriteArrayList<>();
+        runner.start("EverySecond", scheduled(SupplierMode.CRON, null, "* * * * * *"), () -> {
+            fired.add(System.currentTimeMillis() / 1000);
+            return true;
+        });
+        Thread.sleep(2_500);
+
+        assertTrue(fired.size() >= 2 && fired.size() <= 3, "fired " + fired.size() + " times in 2.5 s");
+        assertEquals(fired.size(), fired.stream().distinct().count(), "a second fired twice: " + fired);
+    }
+
+    @Test
+    void fixedRateSkipsATriggerWhileTheLastCallRuns() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch calls = new CountDownLatch(3);
+        runner.start("Slow", scheduled(SupplierMode.FIXED_RATE, 10L, null), () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            WorkerStageTest.sleep(30);
+            running.decrementAndGet();
+            calls.countDown();
+            return true;
+        });
+
+        assertTrue(calls.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+}
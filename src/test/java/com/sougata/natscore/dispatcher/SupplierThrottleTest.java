@@ -0,0 +1,153 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.client.NatsConnectionPool;
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.SupplierRateLimit;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.support.FakeConnection;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Connection;
+import io.nats.client.Options;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SupplierThrottleTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static EventComponentEntry entry(SupplierRateLimit limit, String writeTopic) {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName(writeTopic);
+        EventComponentEntry entry = new EventComponentEntry();
+        entry.setRateLimit(limit);
+        entry.setWriteTopics(List.of(binding));
+        return entry;
+    }
+
+    private SupplierThrottle throttle(SupplierRateLimit limit, NatsConnectionPool pool, String writeTopic) {
+        return SupplierThrottle.forSupplier("TestSupplier", entry(limit, writeTopic), pool, new NatsMetricsRecorder(registry));
+    }
+
+    private Timer throttled(String reason) {
+        return registry.find("nats.supplier.throttled").tag("supplier", "TestSupplier").tag("reason", reason).timer();
+    }
+
+    @Test
+    void bucketLetsASecondsWorthThroughThenPaces() {
+        SupplierThrottle.Bucket bucket = new SupplierThrottle.Bucket(100);
+        long now = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, bucket.take(1, now), "burst up to the per-second rate");
+        }
+        long wait = bucket.take(1, now);
+        assertTrue(wait >= 10 * MS && wait <= 10 * MS + 1, "one message at 100/s is 10 ms, got " + wait);
+    }
+
+    @Test
+    void bucketGoesIntoDebtForALargeCostAndRefillsOverTime() {
+        SupplierThrottle.Bucket bucket = new SupplierThrottle.Bucket(100);
+        long now = System.nanoTime();
+        long wait = bucket.take(250, now);
+        assertTrue(Math.abs(wait - 1_500 * MS) <= 1, "150 tokens of debt at 100/s is 1.5 s, got " + wait);
+
+        assertEquals(0, bucket.take(0, now + wait), "the debt is paid back after the wait");
+    }
+
+    @Test
+    void bucketCapsItsRefillAtOneSecond() {
+        SupplierThrottle.Bucket bucket = new SupplierThrottle.Bucket(100);
+        long now = System.nanoTime();
+        bucket.take(100, now);
+
+        long later = now + TimeUnit.SECONDS.toNanos(10);
+        assertEquals(0, bucket.take(100, later));
+        assertTrue(bucket.take(1, later) > 0, "an idle supplier can't save up more than one second's burst");
+    }
+
+    @Test
+    void noThrottleWithoutALimit() {
+        NatsConnectionPool pool = NatsConnectionPool.of(new FakeConnection().connection());
+
+        assertNull(throttle(new SupplierRateLimit(), pool, "orders"));
+        assertNull(SupplierThrottle.forSupplier("TestSupplier", null, pool, new NatsMetricsRecorder(registry)));
+    }
+
+    @Test
+    void acquirePacesMessagesAndRecordsTheWait() throws Exception {
+        SupplierRateLimit limit = new SupplierRateLimit();
+        limit.setMessagesPerSecond(200.0);
+        SupplierThrottle throttle = throttle(limit, NatsConnectionPool.of(new FakeConnection().connection()), "orders");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 220; i++) {
+            throttle.acquire(8);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(elapsed >= 80 * MS, "20 messages past the burst at 200/s take about 100 ms, took " + elapsed / MS);
+        assertNotNull(throttled("rate"));
+    }
+
+    @Test
+    void acquirePacesBytes() throws Exception {
+        SupplierRateLimit limit = new SupplierRateLimit();
+        limit.setBytesPerSecond(100_000L);
+        SupplierThrottle throttle = throttle(limit, NatsConnectionPool.of(new FakeConnection().connection()), "orders");
+
+        long start = System.nanoTime();
+        throttle.acquire(120_000);
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(elapsed >= 180 * MS, "20 KB of debt at 100 KB/s is 200 ms, took " + elapsed / MS);
+    }
+
+    @Test
+    void adaptiveWaitsOnlyForItsOwnTopicsConnection() throws Exception {
+        FakeConnection first = new FakeConnection();
+        FakeConnection second = new FakeConnection();
+        for (FakeConnection nats : List.of(first, second)) {
+            nats.options = new Options.Builder().reconnectBufferSize(0).build(); // no room while disconnected
+        }
+        NatsConnectionPool pool = NatsConnectionPool.of(first.connection(), second.connection());
+        String topic = "orders";
+        FakeConnection own = pool.forSubject(topic) == first.connection() ? first : second;
+        FakeConnection other = own == first ? second : first;
+        SupplierRateLimit limit = new SupplierRateLimit();
+        limit.setAdaptive(true);
+        limit.setMaxPauseMs(5L);
+        SupplierThrottle throttle = throttle(limit, pool, topic);
+
+        other.status = Connection.Status.RECONNECTING;
+        throttle.acquire(8); // returns at once
+        assertNull(throttled("backpressure"));
+
+        own.status = Connection.Status.RECONNECTING;
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread supplier = new Thread(() -> {
+            try {
+                throttle.acquire(8);
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        supplier.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS), "waits while its connection can't buffer");
+
+        own.status = Connection.Status.CONNECTED;
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertNotNull(throttled("backpressure"));
+    }
+}
@@ -0,0 +1,201 @@
+package com.sougata.natscore.dispatcher;
+
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.enums.OrderingMode;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkerStageTest {
+
+    private static TopicBinding binding(int concurrency, Integer queueCapacity) {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName("orders");
+        binding.setConcurrency(concurrency);
+        binding.setQueueCapacity(queueCapacity);
+        return binding;
+    }
+
+    private static WorkerStage stage(TopicBinding binding) {
+        return WorkerStage.forBinding(binding, new NatsMetricsRecorder(new SimpleMeterRegistry()));
+    }
+
+    private static TopicBinding keyedBinding(int lanes) {
+        TopicBinding binding = binding(lanes, null);
+        binding.setOrdering(OrderingMode.KEYED);
+        binding.setOrderingKeyHeader("accountId");
+        return binding;
+    }
+
+    private static Message message() {
+        return NatsMessage.builder().subject("orders").data(new byte[0]).build();
+    }
+
+    private static Message keyed(String key) {
+        Headers headers = new Headers();
+        headers.put("accountId", key);
+        return NatsMessage.builder().subject("orders").headers(headers).data(new byte[0]).build();
+    }
+
+    @Test
+    void concurrencyOfOneKeepsTheDispatcherThread() {
+        assertNull(stage(binding(1, null)));
+    }
+
+    @Test
+    void runsAtMostConcurrencyMessagesAtOnce() throws Exception {
+        WorkerStage stage = stage(binding(3, 100));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(30);
+        for (int i = 0; i < 30; i++) {
+            stage.submit(message(), () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, maxRunning.get());
+        stage.shutdown(1_000);
+    }
+
+    @Test
+    void submitBlocksOnceWorkersAndQueueAreFull() throws Exception {
+        WorkerStage stage = stage(binding(2, 2));
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) { // 2 running + 2 queued
+            stage.submit(message(), () -> await(release));
+        }
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread dispatcher = new Thread(() -> {
+            try {
+                stage.submit(message(), () -> {});
+                submitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.start();
+
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS), "the fifth message should wait for a free slot");
+        release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        stage.shutdown(1_000);
+    }
+
+    @Test
+    void failingTaskReleasesItsSlot() throws Exception {
+        WorkerStage stage = stage(binding(2, 0));
+        for (int i = 0; i < 10; i++) {
+            stage.submit(message(), () -> {
+                throw new IllegalStateException("handler failed");
+            });
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        stage.submit(message(), done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        stage.shutdown(1_000);
+    }
+
+    @Test
+    void keyedLanesKeepEachKeysOrder() throws Exception {
+        WorkerStage stage = stage(keyedBinding(4));
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(8 * 50);
+        for (int i = 0; i < 50; i++) {
+            for (int k = 0; k < 8; k++) {
+                String key = "account-" + k;
+                int sequence = i;
+                stage.submit(keyed(key), () -> {
+                    if (ThreadLocalRandom.current().nextInt(10) == 0) sleep(1);
+                    seen.computeIfAbsent(key, x -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int k = 0; k < 8; k++) {
+            List<Integer> sequences = seen.get("account-" + k);
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i, sequences.get(i), "account-" + k + " out of order");
+            }
+        }
+        stage.shutdown(1_000);
+    }
+
+    @Test
+    void keyedLanesRunDifferentKeysInParallel() throws Exception {
+        WorkerStage stage = stage(keyedBinding(8));
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        String first = "account-0";
+        stage.submit(keyed(first), () -> {
+            blocked.countDown();
+            await(release);
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        // A key hashing to another lane is handled while the first lane is busy
+        String other = null;
+        for (int k = 1; other == null; k++) {
+            String candidate = "account-" + k;
+            if (laneOf(candidate, 8) != laneOf(first, 8)) other = candidate;
+        }
+        CountDownLatch otherDone = new CountDownLatch(1);
+        stage.submit(keyed(other), otherDone::countDown);
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+
+        // The same key waits behind the busy message
+        CountDownLatch sameDone = new CountDownLatch(1);
+        stage.submit(keyed(first), sameDone::countDown);
+        assertFalse(sameDone.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(sameDone.await(5, TimeUnit.SECONDS));
+        stage.shutdown(1_000);
+    }
+
+    private static int laneOf(String key, int lanes) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), lanes);
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
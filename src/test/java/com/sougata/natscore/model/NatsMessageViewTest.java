@@ -0,0 +1,111 @@
+package com.sougata.natscore.model;
+
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NatsMessageViewTest {
+
+    private static Message message(String correlationId, String creationTs) {
+        Headers headers = new Headers();
+        headers.put(PayloadHeader.PAYLOAD_TYPE.getKey(), "sender.Type");
+        if (correlationId != null) headers.put(PayloadHeader.CORRELATION_ID.getKey(), correlationId);
+        if (creationTs != null) headers.put(PayloadHeader.CREATION_TS.getKey(), creationTs);
+        return NatsMessage.builder().subject("orders").headers(headers).data(new byte[] {1, 2, 3}).build();
+    }
+
+    @Test
+    void wrapsThePayloadWithoutCopying() {
+        Message msg = message("id", "42");
+        NatsMessageView view = NatsMessageView.of(msg, "test.Event");
+
+        assertSame(msg.getData(), view.getPayload());
+        assertTrue(view.asReadOnlyByteBuffer().isReadOnly());
+        assertEquals(3, view.asReadOnlyByteBuffer().remaining());
+    }
+
+    @Test
+    void readsHeadersFromTheMessageAndTypesByBinding() {
+        NatsMessageView view = NatsMessageView.of(message("id", "42"), "test.Event");
+
+        assertEquals("test.Event", view.getHeader(PayloadHeader.PAYLOAD_TYPE));
+        assertEquals("id", view.getHeader(PayloadHeader.CORRELATION_ID));
+        assertEquals("42", view.getHeader(PayloadHeader.CREATION_TS));
+        assertThrows(IllegalStateException.class, () -> NatsMessageView.of(message("id", "42"), " "));
+    }
+
+    @Test
+    void generatesMissingHeadersOnceAndKeepsThem() {
+        NatsMessageView view = NatsMessageView.of(message(null, null), "test.Event");
+
+        String correlationId = view.getHeader(PayloadHeader.CORRELATION_ID);
+        String creationTs = view.getHeader(PayloadHeader.CREATION_TS);
+        assertNotNull(correlationId);
+        assertNotNull(creationTs);
+        assertEquals(correlationId, view.getHeader(PayloadHeader.CORRELATION_ID));
+        assertEquals(correlationId, view.getPayloadHeaders().get(PayloadHeader.CORRELATION_ID));
+        assertEquals(creationTs, view.getPayloadHeaders().get(PayloadHeader.CREATION_TS));
+    }
+
+    @Test
+    void concurrentReadersSeeOneGeneratedCorrelationId() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            NatsMessageView view = NatsMessageView.of(message(null, null), "test.Event");
+            Set<String> seen = ConcurrentHashMap.newKeySet();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 8; i++) {
+                boolean viaMap = i % 2 == 0;
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    seen.add(viaMap
+                            ? view.getPayloadHeaders().get(PayloadHeader.CORRELATION_ID)
+                            : view.getHeader(PayloadHeader.CORRELATION_ID));
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(1, seen.size());
+        }
+    }
+
+    @Test
+    void headerMapIsMutableAndBacksGetHeader() {
+        NatsMessageView view = NatsMessageView.of(message("id", "42"), "test.Event");
+        Map<PayloadHeader, String> headers = view.getPayloadHeaders();
+
+        headers.put(PayloadHeader.CORRELATION_ID, "changed");
+        assertSame(headers, view.getPayloadHeaders());
+        assertEquals("changed", view.getHeader(PayloadHeader.CORRELATION_ID));
+    }
+
+    @Test
+    void toBuilderCopiesTheViewsHeaders() {
+        NatsMessageView view = NatsMessageView.of(message("id", "42"), "test.Event");
+        PayloadWrapper<byte[]> copy = view.toBuilder().setPayload(new byte[0]).build();
+
+        assertEquals("id", copy.getHeader(PayloadHeader.CORRELATION_ID));
+        assertEquals("42", copy.getHeader(PayloadHeader.CREATION_TS));
+        assertEquals("test.Event", copy.getHeader(PayloadHeader.PAYLOAD_TYPE));
+    }
+}
@@ -0,0 +1,67 @@
+package com.sougata.natscore.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PayloadWrapperTest {
+
+    @Test
+    void buildFillsCorrelationIdAndCreationTs() {
+        PayloadWrapper<byte[]> wrapper = PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(new byte[0])
+                .setPayloadType("test.Event")
+                .build();
+
+        assertNotNull(wrapper.getHeader(PayloadHeader.CORRELATION_ID));
+        assertNotNull(wrapper.getHeader(PayloadHeader.CREATION_TS));
+        assertThrows(IllegalStateException.class, () -> PayloadWrapper.<byte[]>newBuilder().setPayload(new byte[0]).build());
+    }
+
+    @Test
+    void changingABuiltWrappersHeadersDoesNotReachTheBuilder() {
+        PayloadWrapper.Builder<byte[]> builder = PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(new byte[0])
+                .setPayloadType("test.Event")
+                .setCorrelationId("first");
+        PayloadWrapper<byte[]> first = builder.build();
+
+        first.getPayloadHeaders().put(PayloadHeader.CORRELATION_ID, "changed");
+        assertEquals("changed", first.getHeader(PayloadHeader.CORRELATION_ID));
+
+        PayloadWrapper<byte[]> second = builder.build();
+        assertEquals("first", second.getHeader(PayloadHeader.CORRELATION_ID));
+        assertEquals("first", second.getPayloadHeaders().get(PayloadHeader.CORRELATION_ID));
+    }
+
+    @Test
+    void changingTheBuilderAfterBuildDoesNotReachTheWrapper() {
+        PayloadWrapper.Builder<byte[]> builder = PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(new byte[0])
+                .setPayloadType("test.Event")
+                .setCorrelationId("first");
+        PayloadWrapper<byte[]> first = builder.build();
+
+        builder.setCorrelationId("second");
+        assertEquals("first", first.getHeader(PayloadHeader.CORRELATION_ID));
+        assertEquals("second", builder.build().getHeader(PayloadHeader.CORRELATION_ID));
+    }
+
+    @Test
+    void toBuilderKeepsTheHeaders() {
+        PayloadWrapper<byte[]> original = PayloadWrapper.<byte[]>newBuilder()
+                .setPayload(new byte[] {1})
+                .setPayloadType("test.Event")
+                .setCorrelationId("id")
+                .setCreationTimestamp("42")
+                .build();
+
+        PayloadWrapper<byte[]> copy = original.toBuilder().setPayloadType("test.Other").build();
+        assertEquals("id", copy.getHeader(PayloadHeader.CORRELATION_ID));
+        assertEquals("42", copy.getHeader(PayloadHeader.CREATION_TS));
+        assertEquals("test.Other", copy.getHeader(PayloadHeader.PAYLOAD_TYPE));
+        assertEquals("test.Event", original.getHeader(PayloadHeader.PAYLOAD_TYPE));
+    }
+}
@@ -0,0 +1,203 @@
+package com.sougata.natscore.schema;
+
+import com.sougata.natscore.config.EventComponentConfig;
+import com.sougata.natscore.config.EventComponentEntry;
+import com.sougata.natscore.config.SchemaRegistryConfig;
+import com.sougata.natscore.config.TopicBinding;
+import com.sougata.natscore.monitoring.NatsMetricsRecorder;
+import com.sougata.natscore.schema.model.SchemaBinding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartupContractValidatorTest {
+    private static final String STRING_VALUE = "com.google.protobuf.StringValue";
+    private static final String TIMESTAMP = "com.google.protobuf.Timestamp";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * An in-memory registry that counts its calls and the most it saw in flight at once. It keeps the contract it
+     * already holds for a topic when another is registered, so a changed contract shows up as a mismatch.
+     */
+    private static final class FakeRegistry extends SchemaRegistryClient {
+        final Map<String, SchemaBinding> schemas = new ConcurrentHashMap<>();
+        final AtomicInteger registered = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger fetches = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile long callMillis;
+
+        FakeRegistry() {
+            super(null);
+        }
+
+        @Override
+        public void registerSchema(SchemaBinding binding) {
+            call(() -> {
+                registered.incrementAndGet();
+                schemas.putIfAbsent(binding.getTopic(), binding);
+            });
+        }
+
+        @Override
+        public void registerSchemas(Collection<SchemaBinding> bindings) {
+            if (bindings.isEmpty()) return;
+            call(() -> {
+                batches.incrementAndGet();
+                bindings.forEach(b -> schemas.putIfAbsent(b.getTopic(), b));
+            });
+        }
+
+        @Override
+        public Optional<SchemaBinding> fetchSchema(String topic) {
+            call(fetches::incrementAndGet);
+            return Optional.ofNullable(schemas.get(topic));
+        }
+
+        private void call(Runnable body) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                if (callMillis > 0) Thread.sleep(callMillis);
+                body.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static TopicBinding binding(String topic, String messageType) {
+        TopicBinding binding = new TopicBinding();
+        binding.setTopicName(topic);
+        binding.setMessageType(messageType);
+        return binding;
+    }
+
+    private static EventComponentConfig components(List<TopicBinding> reads, List<TopicBinding> writes) {
+        EventComponentEntry entry = new EventComponentEntry();
+        entry.setReadTopics(reads);
+        entry.setWriteTopics(writes);
+        return new EventComponentConfig(new ArrayList<>(List.of(entry)));
+    }
+
+    private SchemaRegistryConfig registryConfig() {
+        SchemaRegistryConfig registryConfig = new SchemaRegistryConfig();
+        registryConfig.setFingerprintFile(dir.resolve("fingerprints.properties").toString());
+        return registryConfig;
+    }
+
+    private static void validate(FakeRegistry registry, EventComponentConfig config, SchemaRegistryConfig registryConfig) {
+        validate(registry, config, registryConfig, new NatsMetricsRecorder(new SimpleMeterRegistry()));
+    }
+
+    private static void validate(FakeRegistry registry, EventComponentConfig config, SchemaRegistryConfig registryConfig,
+                                 NatsMetricsRecorder recorder) {
+        new StartupContractValidator(registry, config, registryConfig, recorder).validateContracts();
+    }
+
+    @Test
+    void registersOnFirstStartAndSkipsUnchangedSchemasAfter() {
+        FakeRegistry registry = new FakeRegistry();
+        EventComponentConfig config = components(List.of(binding("quotes", STRING_VALUE)), List.of(binding("ticks", TIMESTAMP)));
+
+        validate(registry, config, registryConfig());
+        assertEquals(2, registry.registered.get());
+        assertEquals(STRING_VALUE, registry.schemas.get("quotes").getProtoMessageType());
+
+        validate(registry, config, registryConfig());
+        assertEquals(2, registry.registered.get(), "unchanged schemas were registered again");
+        assertEquals(4, registry.fetches.get(), "every start still checks the registry");
+    }
+
+    @Test
+    void registersAChangedSchemaAgain() {
+        FakeRegistry registry = new FakeRegistry();
+        validate(registry, components(List.of(binding("quotes", STRING_VALUE)), null), registryConfig());
+
+        registry.schemas.clear(); // the old contract was retired in the registry
+        validate(registry, components(List.of(binding("quotes", TIMESTAMP)), null), registryConfig());
+        assertEquals(2, registry.registered.get());
+        assertEquals(TIMESTAMP, registry.schemas.get("quotes").getProtoMessageType());
+    }
+
+    @Test
+    void reRegistersAnUnchangedSchemaTheRegistryLost() {
+        FakeRegistry registry = new FakeRegistry();
+        EventComponentConfig config = components(List.of(binding("quotes", STRING_VALUE)), null);
+        validate(registry, config, registryConfig());
+
+        registry.schemas.clear();
+        validate(registry, config, registryConfig());
+        assertEquals(2, registry.registered.get());
+        assertTrue(registry.schemas.containsKey("quotes"));
+    }
+
+    @Test
+    void failsOnAContractMismatch() {
+        FakeRegistry registry = new FakeRegistry();
+        registry.schemas.put("quotes", new SchemaBinding("quotes", STRING_VALUE, "another-sha", null));
+        SchemaRegistryConfig registryConfig = registryConfig();
+        registryConfig.setFingerprintFile("");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> validate(registry, components(List.of(binding("quotes", STRING_VALUE)), null), registryConfig));
+        assertTrue(e.getMessage().contains("Contract mismatch for topic: quotes"), e.getMessage());
+    }
+
+    @Test
+    void batchModeRegistersChangedSchemasInOneCall() {
+        FakeRegistry registry = new FakeRegistry();
+        SchemaRegistryConfig registryConfig = registryConfig();
+        registryConfig.setBatch(true);
+
+        validate(registry, components(List.of(binding("quotes", STRING_VALUE), binding("ticks", TIMESTAMP)), null), registryConfig);
+        assertEquals(1, registry.batches.get());
+        assertEquals(0, registry.registered.get());
+        assertEquals(2, registry.schemas.size());
+    }
+
+    @Test
+    void boundsRegistryCallsInFlight() {
+        FakeRegistry registry = new FakeRegistry();
+        registry.callMillis = 20;
+        List<TopicBinding> reads = new ArrayList<>();
+        for (int i = 0; i < 12; i++) reads.add(binding("topic-" + i, STRING_VALUE));
+        SchemaRegistryConfig registryConfig = registryConfig();
+        registryConfig.setMaxConcurrency(3);
+
+        validate(registry, components(reads, null), registryConfig);
+        assertEquals(12, registry.registered.get());
+        assertEquals(3, registry.maxInFlight.get());
+    }
+
+    @Test
+    void skipsNonProtobufTypesAndDuplicateTopicsAndRecordsTheDuration() {
+        FakeRegistry registry = new FakeRegistry();
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        EventComponentConfig config = components(
+                List.of(binding("quotes", STRING_VALUE), binding("names", "java.lang.String")),
+                List.of(binding("quotes", TIMESTAMP)));
+
+        validate(registry, config, registryConfig(), new NatsMetricsRecorder(meters));
+        assertEquals(1, registry.registered.get());
+        assertEquals(STRING_VALUE, registry.schemas.get("quotes").getProtoMessageType());
+        assertEquals(1, meters.get("nats.schema.validation.duration").timer().count());
+    }
+}
@@ -0,0 +1,133 @@
+package com.sougata.natscore.support;
+
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import io.nats.client.MessageHandler;
+import io.nats.client.ObjectStore;
+import io.nats.client.Options;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A {@link Connection} stand-in that reports {@link #status} and {@link #options}, records what is published through
+ * it and counts {@code flushBuffer} calls. Dispatchers created on it can subscribe to subjects, and {@link #deliver}
+ * hands a message to those subscribed to its subject. {@code objectStore} returns the bucket's entry in
+ * {@link #objectStores}. Anything else it is asked throws {@link UnsupportedOperationException}.
+ */
+public final class FakeConnection implements InvocationHandler {
+    public volatile Connection.Status status = Connection.Status.CONNECTED;
+    public volatile Options options = new Options.Builder().build();
+    public volatile Consumer<Message> onPublish = msg -> {}; // runs on the publishing thread, before the message is recorded
+    public final List<Message> published = new CopyOnWriteArrayList<>();
+    public final AtomicInteger flushes = new AtomicInteger();
+    public final Map<String, ObjectStore> objectStores = new ConcurrentHashMap<>();
+    private final AtomicInteger inboxes = new AtomicInteger();
+    private final Map<String, List<MessageHandler>> subscriptions = new ConcurrentHashMap<>();
+    private final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, this);
+
+    public Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Waits up to five seconds for {@code count} messages, then checks that exactly that many were published.
+     */
+    public void awaitPublished(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (published.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, published.size());
+    }
+
+    /**
+     * Hands {@code msg} to every dispatcher subscribed to its subject, on the calling thread.
+     */
+    public void deliver(Message msg) throws InterruptedException {
+        for (MessageHandler handler : subscriptions.getOrDefault(msg.getSubject(), List.of())) {
+            handler.onMessage(msg);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+        return switch (method.getName()) {
+            case "getStatus" -> status;
+            case "getOptions" -> options;
+            case "getMaxPayload" -> 1024L * 1024;
+            case "publish" -> {
+                record(args);
+                yield null;
+            }
+            case "createInbox" -> "_INBOX.fake." + inboxes.incrementAndGet();
+            case "createDispatcher" -> dispatcher((MessageHandler) args[0]);
+            case "objectStore" -> {
+                ObjectStore store = objectStores.get((String) args[0]);
+                if (store == null) throw new IOException("No bucket " + args[0]);
+                yield store;
+            }
+            case "flushBuffer" -> {
+                flushes.incrementAndGet();
+                yield null;
+            }
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "FakeConnection";
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+    }
+
+    private Dispatcher dispatcher(MessageHandler handler) {
+        return (Dispatcher) Proxy.newProxyInstance(Dispatcher.class.getClassLoader(), new Class<?>[] {Dispatcher.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "subscribe" -> {
+                        subscriptions.computeIfAbsent((String) args[0], s -> new CopyOnWriteArrayList<>()).add(handler);
+                        yield proxy;
+                    }
+                    case "drain" -> {
+                        subscriptions.values().forEach(handlers -> handlers.remove(handler));
+                        yield CompletableFuture.completedFuture(true);
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeDispatcher";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private void record(Object[] args) {
+        if (status != Connection.Status.CONNECTED) throw new IllegalStateException("Not connected");
+        Message msg;
+        if (args.length == 1) {
+            msg = (Message) args[0];
+        } else {
+            String subject = (String) args[0];
+            String replyTo = null;
+            Headers headers = null;
+            byte[] data = (byte[]) args[args.length - 1];
+            for (int i = 1; i < args.length - 1; i++) {
+                if (args[i] instanceof String s) replyTo = s;
+                if (args[i] instanceof Headers h) headers = h;
+            }
+            msg = NatsMessage.builder().subject(subject).replyTo(replyTo).headers(headers).data(data).build();
+        }
+        onPublish.accept(msg);
+        published.add(msg);
+    }
+}
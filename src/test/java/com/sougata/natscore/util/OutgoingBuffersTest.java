@@ -0,0 +1,24 @@
+package com.sougata.natscore.util;
+
+import com.sougata.natscore.support.FakeConnection;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutgoingBuffersTest {
+
+    @Test
+    void readsTheBuffersOfThePinnedClientVersion() {
+        assertTrue(OutgoingBuffers.readable(),
+                "jnats no longer has NatsConnection.writer.outgoing/reconnectOutgoing; update OutgoingBuffers for this version");
+    }
+
+    @Test
+    void otherConnectionsReportEmptyBuffers() {
+        FakeConnection nats = new FakeConnection();
+
+        assertEquals(0, OutgoingBuffers.pendingBytes(nats.connection()));
+        assertEquals(0, OutgoingBuffers.reconnectBufferedBytes(nats.connection()));
+    }
+}